@@ -11,7 +11,8 @@ import jakarta.interceptor.InterceptorBinding;
 /**
  * Anotação para indicar que um método ou classe suporta paginação.
  * Quando usado, o PaginationInterceptor irá processar os headers de paginação
- * e modificar os parâmetros do método.
+ * e modificar os parâmetros do método. O header de cursor, quando presente, é repassado
+ * ao parâmetro {@code cursor} do método, para a paginação por chave (keyset).
  */
 @InterceptorBinding
 @Target({ElementType.METHOD, ElementType.TYPE})
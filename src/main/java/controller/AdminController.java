@@ -24,6 +24,7 @@ import model.FormaPagamento;
 import model.Leilao;
 import model.Usuario;
 import service.NotificacaoService;
+import service.UsuarioService;
 import util.RedirectUtil;
 import security.RequiresAuth;
 import security.RequiresRole;
@@ -37,6 +38,9 @@ public class AdminController extends BaseController {
     @Inject
     NotificacaoService notificacaoService;
     
+    @Inject
+    UsuarioService usuarioService;
+    
     @CheckedTemplate(basePath = "Admin", requireTypeSafeExpressions = false)
     public static class Templates {
         public static native TemplateInstance dashboard(Map<String, Object> stats);
@@ -95,7 +99,7 @@ public class AdminController extends BaseController {
                                   @FormParam("telefone") String telefone,
                                   @FormParam("tipoUsuario") @NotNull Usuario.TipoUsuario tipoUsuario,
                                   @FormParam("status") @NotNull Usuario.Status status,
-                                  @FormParam("areaIds") List<Long> areaIds) {
+                                  @FormParam("areasAtuacao") List<Long> areaIds) {
         
         if (validationFailed()) {
             flash("mensagem", "Por favor, corrija os erros no formulário");
@@ -143,7 +147,7 @@ public class AdminController extends BaseController {
             }
         }
         
-        usuario.persist();
+        usuarioService.salvar(usuario);
         
         flash("mensagem", "Usuário atualizado com sucesso!");
         flash("tipo", "success");
@@ -182,7 +186,7 @@ public class AdminController extends BaseController {
         }
         
         usuario.status = Usuario.Status.ATIVO;
-        usuario.persist();
+        usuarioService.salvar(usuario);
         
         flash("mensagem", "Usuário ativado com sucesso!");
         flash("tipo", "success");
@@ -201,7 +205,7 @@ public class AdminController extends BaseController {
         }
         
         usuario.status = Usuario.Status.SUSPENSO;
-        usuario.persist();
+        usuarioService.salvar(usuario);
         
         flash("mensagem", "Usuário suspenso com sucesso!");
         flash("tipo", "success");
@@ -2,16 +2,19 @@ package controller;
 
 import java.util.List;
 import annotation.Pageable;
+import dto.PaginatedResponse;
+import exception.BusinessException;
 import model.Avaliacao;
 import model.Leilao;
 import model.Usuario;
 import model.Lance;
-import util.PaginationUtil;
+import service.AvaliacaoService;
 import util.RedirectUtil;
 
 import io.quarkus.qute.CheckedTemplate;
 import io.quarkus.qute.TemplateInstance;
 import io.smallrye.mutiny.Uni;
+import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
@@ -30,10 +33,15 @@ public class AvaliacaoController extends BaseController {
     @CheckedTemplate(basePath = "Avaliacao", requireTypeSafeExpressions = false)
     public static class Templates {
         public static native TemplateInstance avaliar(Leilao leilao, Usuario avaliado);
-        public static native TemplateInstance minhas(List<Avaliacao> avaliacoes);
-        public static native TemplateInstance recebidas(List<Avaliacao> avaliacoes);
+        public static native TemplateInstance minhas(List<Avaliacao> avaliacoes, String proximo);
+        public static native TemplateInstance recebidas(List<Avaliacao> avaliacoes, String proximo);
     }
     
+    @Inject
+    AvaliacaoService avaliacaoService;
+    
+    private static final int TAMANHO_PAGINA = 10;
+    
     // Formulário para avaliar um usuário
     @Path("/avaliar/{leilaoId}/{avaliado}")
     public TemplateInstance avaliar(@PathParam("leilaoId") Long leilaoId, @PathParam("avaliado") Long avaliadoId) {
@@ -70,14 +78,14 @@ public class AvaliacaoController extends BaseController {
         
         // Caso 1: Comprador avaliando o fornecedor vencedor
         if (usuario.equals(leilao.criador)) {
-            Lance lanceVencedor = Lance.menorLanceDoLeilao(leilao);
+            Lance lanceVencedor = leilao.lanceVencedor;
             if (lanceVencedor != null && lanceVencedor.fornecedor.equals(avaliado)) {
                 relacionado = true;
             }
         }
         // Caso 2: Fornecedor vencedor avaliando o comprador
         else if (usuario.tipoUsuario == Usuario.TipoUsuario.FORNECEDOR) {
-            Lance lanceVencedor = Lance.menorLanceDoLeilao(leilao);
+            Lance lanceVencedor = leilao.lanceVencedor;
             if (lanceVencedor != null && lanceVencedor.fornecedor.equals(usuario) && avaliado.equals(leilao.criador)) {
                 relacionado = true;
             }
@@ -203,7 +211,7 @@ public class AvaliacaoController extends BaseController {
         return RedirectUtil.redirectToPathAsObject("/avaliacoes/recebidas");
     }
     
-    // Visualizar avaliações feitas pelo usuário logado
+    // Visualizar avaliações feitas pelo usuário logado, paginadas por cursor
     @Path("/minhas")
     @Pageable
     public TemplateInstance minhasAvaliacoes() {
@@ -214,51 +222,18 @@ public class AvaliacaoController extends BaseController {
             return RedirectUtil.redirectTemplate("/usuarios/login");
         }
         
-        List<Avaliacao> todasAvaliacoes = Avaliacao.listarPorAvaliador(usuario);
-        PaginationUtil.PagedResult<Avaliacao> avaliacoes = applyPagination(todasAvaliacoes);
-        
-        // Quarkus Qute espera apenas um argumento se o template for definido assim
-        return Templates.minhas(avaliacoes.getContent());
-    }
-    
-    /**
-     * Aplica a paginação em uma lista de avaliações
-     * 
-     * @param lista Lista completa de avaliações
-     * @return Resultado paginado
-     */
-    protected <T> PaginationUtil.PagedResult<T> applyPagination(List<T> lista) {
-        // Valores padrão para paginação
-        int page = 0;
-        int size = 10;
-        
-        // Em uma implementação real, obteríamos os parâmetros da requisição
-        // No Renarde, o método getRequest() está disponível na classe Controller
-        String pageParam = getRequestParameter("page");
-        String sizeParam = getRequestParameter("size");
-        
-        if (pageParam != null && !pageParam.isEmpty()) {
-            try {
-                page = Integer.parseInt(pageParam);
-            } catch (NumberFormatException e) {
-                // Ignora e usa o valor padrão
-            }
-        }
-        
-        if (sizeParam != null && !sizeParam.isEmpty()) {
-            try {
-                size = Integer.parseInt(sizeParam);
-            } catch (NumberFormatException e) {
-                // Ignora e usa o valor padrão
-            }
+        PaginatedResponse<Avaliacao> pagina;
+        try {
+            pagina = avaliacaoService.listarFeitasPorCursor(usuario, getRequestParameter("cursor"), TAMANHO_PAGINA);
+        } catch (BusinessException e) {
+            flashErro(e.getMessage());
+            return RedirectUtil.redirectTemplate("/avaliacoes/minhas");
         }
         
-        // Aplica a paginação usando o método correto
-        return PaginationUtil.PagedResult.of(lista, page, size, 5);  // 5 é o número máximo de links de página
+        return Templates.minhas(pagina.getItems(), pagina.getNextCursor());
     }
     
-
-    // Visualizar avaliações recebidas pelo usuário logado
+    // Visualizar avaliações recebidas pelo usuário logado, paginadas por cursor
     @Path("/recebidas")
     @Pageable
     public TemplateInstance avaliacoesRecebidas() {
@@ -269,11 +244,15 @@ public class AvaliacaoController extends BaseController {
             return RedirectUtil.redirectTemplate("/usuarios/login");
         }
         
-        List<Avaliacao> todasAvaliacoes = Avaliacao.listarPorAvaliado(usuario);
-        PaginationUtil.PagedResult<Avaliacao> avaliacoes = applyPagination(todasAvaliacoes);
+        PaginatedResponse<Avaliacao> pagina;
+        try {
+            pagina = avaliacaoService.listarRecebidasPorCursor(usuario, getRequestParameter("cursor"), TAMANHO_PAGINA);
+        } catch (BusinessException e) {
+            flashErro(e.getMessage());
+            return RedirectUtil.redirectTemplate("/avaliacoes/recebidas");
+        }
         
-        // Quarkus Qute espera apenas um argumento se o template for definido assim
-        return Templates.recebidas(avaliacoes.getContent());
+        return Templates.recebidas(pagina.getItems(), pagina.getNextCursor());
     }
 
     @POST
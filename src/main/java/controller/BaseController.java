@@ -58,6 +58,17 @@ public abstract class BaseController extends Controller {
         return ctx.request().getParam(name);
     }
     
+    /**
+     * Obtém todos os valores de um parâmetro da query string da requisição atual
+     * 
+     * @param name Nome do parâmetro
+     * @return Valores do parâmetro (lista vazia se não existir)
+     */
+    protected List<String> getRequestParameters(String name) {
+        io.vertx.ext.web.RoutingContext ctx = io.quarkus.arc.Arc.container().instance(io.vertx.ext.web.RoutingContext.class).get();
+        return ctx.queryParam(name);
+    }
+    
     /**
      * Adiciona uma mensagem de erro no flash.
      * 
@@ -1,6 +1,5 @@
 package controller;
 
-import java.util.Date;
 import java.util.List;
 
 
@@ -21,6 +20,7 @@ import jakarta.ws.rs.core.MediaType;
 import model.Usuario;
 import model.Leilao;
 import model.Convite;
+import service.ConviteService;
 import service.NotificacaoService;
 import util.RedirectUtil;
 
@@ -30,6 +30,9 @@ public class ConviteController extends BaseController {
     @Inject
     NotificacaoService notificacaoService;
     
+    @Inject
+    ConviteService conviteService;
+    
     
     @CheckedTemplate(basePath = "Convite", requireTypeSafeExpressions = false)
     public static class Templates {
@@ -127,13 +130,7 @@ public class ConviteController extends BaseController {
                 // Verificar se já existe convite para este fornecedor neste leilão
                 if (!Convite.existeConvite(leilao, fornecedor)) {
                     // Criar novo convite
-                    Convite convite = new Convite();
-                    convite.leilao = leilao;
-                    convite.fornecedor = fornecedor;
-                    convite.dataEnvio = new Date();
-                    convite.status = Convite.Status.PENDENTE;
-                    
-                    convite.persist();
+                    Convite convite = conviteService.enviar(leilao, fornecedor);
                     convitesEnviados++;
                     
                     // Enviar notificação por email
@@ -229,9 +226,7 @@ public class ConviteController extends BaseController {
         }
         
         // Atualizar status do convite
-        convite.status = Convite.Status.ACEITO;
-        convite.dataResposta = new Date();
-        convite.persist();
+        conviteService.responder(convite, Convite.Status.ACEITO);
         
         // Notificar o comprador
         notificacaoService.notificarConviteAceito(convite);
@@ -275,9 +270,7 @@ public class ConviteController extends BaseController {
         }
         
         // Atualizar status do convite
-        convite.status = Convite.Status.RECUSADO;
-        convite.dataResposta = new Date();
-        convite.persist();
+        conviteService.responder(convite, Convite.Status.RECUSADO);
         
         // Notificar o comprador
         notificacaoService.notificarConviteRecusado(convite);
@@ -1,11 +1,12 @@
 package controller;
 
 import java.math.BigDecimal;
-import java.util.Date;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 
 
@@ -13,21 +14,35 @@ import io.quarkus.qute.CheckedTemplate;
 import io.quarkus.qute.TemplateInstance;
 import util.RedirectUtil;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.ForbiddenException;
 import jakarta.ws.rs.FormParam;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
 import io.quarkus.panache.common.Sort;
 
 import model.Leilao;
 import model.Usuario;
 import model.Lance;
+import dto.EventoLanceDTO;
+import dto.RankingLancesDTO;
+import exception.BusinessException;
+import service.AcessoWebSocketService;
+import service.EventosLancesService;
+import service.LancesAutomaticosService;
+import service.LanceService;
+import service.LeilaoService;
 import service.NotificacaoService;
 import security.RequiresAuth;
 import security.RequiresRole;
@@ -39,16 +54,30 @@ public class LanceController extends BaseController {
     @Inject
     NotificacaoService notificacaoService;
     
+    @Inject
+    LanceService lanceService;
+    
+    @Inject
+    LeilaoService leilaoService;
+    
+    @Inject
+    EventosLancesService eventosLancesService;
+    
+    @Inject
+    AcessoWebSocketService acessoWebSocketService;
+    
+    @Inject
+    LancesAutomaticosService lancesAutomaticosService;
+    
     @CheckedTemplate(basePath = "Lance", requireTypeSafeExpressions = false)
     public static class Templates {
-        public static native TemplateInstance historico(Leilao leilao);
-        public static native TemplateInstance listar(Leilao leilao);
+        public static native TemplateInstance historico(Leilao leilao, RankingLancesDTO ranking);
+        public static native TemplateInstance listar(Leilao leilao, RankingLancesDTO ranking);
     }
     
     // Ação para dar um novo lance
     @POST
     @Path("/dar")
-    @Transactional
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     @RequiresAuth
     @RequiresRole(Usuario.TipoUsuario.FORNECEDOR)
@@ -76,7 +105,7 @@ public class LanceController extends BaseController {
         // Verificar se o fornecedor pode participar deste leilão
         boolean podeParticipar = leilao.status == Leilao.Status.ABERTO &&
                                 (leilao.tipoLeilao == Leilao.TipoLeilao.ABERTO || 
-                                 leilao.isConvidado(usuario));
+                                 leilaoService.isConvidado(leilao, usuario));
         
         if (!podeParticipar) {
             flash("mensagem", "Você não pode participar deste leilão");
@@ -107,36 +136,101 @@ public class LanceController extends BaseController {
             return RedirectUtil.redirectToPath("/leiloes/" + leilaoId);
         }
         
-        // Obter o menor lance atual, se houver
-        Lance menorLanceAtual = Lance.menorLanceDoLeilao(leilao);
+        // Registrar o lance; a verificação da melhor oferta é feita pelo sequenciador do leilão
+        try {
+            lanceService.criarLance(leilao, usuario, valor, condicoesEntrega, prazoEntrega, prazoPagamento);
+        } catch (BusinessException e) {
+            flash("mensagem", e.getMessage());
+            flash("tipo", "danger");
+            return RedirectUtil.redirectToPath("/leiloes/" + leilaoId);
+        }
         
-        // Verificar se o novo lance é menor que o atual menor lance
-        if (menorLanceAtual != null && valor.compareTo(menorLanceAtual.valor) >= 0) {
-            flash("mensagem", "Seu lance deve ser menor que o lance atual de " + menorLanceAtual.valor);
+        flash("mensagem", "Lance registrado com sucesso!");
+        flash("tipo", "success");
+        return RedirectUtil.redirectToPath("/leiloes/" + leilaoId);
+    }
+    
+    // Registrar (ou substituir) o lance automático do fornecedor em um leilão
+    @POST
+    @Path("/automatico")
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    @RequiresAuth
+    @RequiresRole(Usuario.TipoUsuario.FORNECEDOR)
+    public Uni<String> registrarAutomatico(
+            @FormParam("leilaoId") @NotNull Long leilaoId,
+            @FormParam("valorMinimo") @NotBlank String valorMinimoStr,
+            @FormParam("decremento") @NotBlank String decrementoStr,
+            @FormParam("condicoesEntrega") String condicoesEntrega,
+            @FormParam("prazoEntrega") Integer prazoEntrega,
+            @FormParam("prazoPagamento") Integer prazoPagamento) {
+        
+        Leilao leilao = Leilao.findById(leilaoId);
+        if (leilao == null) {
+            flash("mensagem", "Leilão não encontrado");
+            flash("tipo", "danger");
+            return RedirectUtil.redirectToPath("/leiloes");
+        }
+        
+        if (leilao.status != Leilao.Status.ABERTO) {
+            flash("mensagem", "Este leilão não está aberto para lances");
             flash("tipo", "danger");
             return RedirectUtil.redirectToPath("/leiloes/" + leilaoId);
         }
         
-        // Criar o novo lance
-        Lance lance = new Lance();
-        lance.leilao = leilao;
-        lance.fornecedor = usuario;
-        lance.valor = valor;
-        lance.condicoesEntrega = condicoesEntrega;
-        lance.prazoEntrega = prazoEntrega;
-        lance.prazoPagamento = prazoPagamento;
-        lance.dataCriacao = new Date();
+        if (validationFailed()) {
+            flash("mensagem", "Por favor, corrija os erros no formulário");
+            flash("tipo", "danger");
+            return RedirectUtil.redirectToPath("/leiloes/" + leilaoId);
+        }
         
-        lance.persist();
+        BigDecimal valorMinimo;
+        BigDecimal decremento;
+        try {
+            valorMinimo = new BigDecimal(valorMinimoStr.replace(",", "."));
+            decremento = new BigDecimal(decrementoStr.replace(",", "."));
+        } catch (NumberFormatException e) {
+            flash("mensagem", "Valor inválido");
+            flash("tipo", "danger");
+            return RedirectUtil.redirectToPath("/leiloes/" + leilaoId);
+        }
         
-        // Notificar o comprador sobre o novo lance
-        notificacaoService.notificarNovoLance(lance);
+        try {
+            lancesAutomaticosService.registrar(leilao, usuarioLogado(), valorMinimo, decremento,
+                condicoesEntrega, prazoEntrega, prazoPagamento);
+        } catch (BusinessException e) {
+            flash("mensagem", e.getMessage());
+            flash("tipo", "danger");
+            return RedirectUtil.redirectToPath("/leiloes/" + leilaoId);
+        }
         
-        flash("mensagem", "Lance registrado com sucesso!");
+        flash("mensagem", "Lance automático registrado com sucesso!");
         flash("tipo", "success");
         return RedirectUtil.redirectToPath("/leiloes/" + leilaoId);
     }
     
+    // Desativar o lance automático do fornecedor em um leilão
+    @POST
+    @Path("/automatico/cancelar/{leilaoId}")
+    @RequiresAuth
+    @RequiresRole(Usuario.TipoUsuario.FORNECEDOR)
+    public Uni<String> cancelarAutomatico(@PathParam("leilaoId") Long leilaoId) {
+        Leilao leilao = Leilao.findById(leilaoId);
+        if (leilao == null) {
+            flash("mensagem", "Leilão não encontrado");
+            flash("tipo", "danger");
+            return RedirectUtil.redirectToPath("/leiloes");
+        }
+        
+        if (lancesAutomaticosService.cancelar(leilao, usuarioLogado())) {
+            flash("mensagem", "Lance automático desativado");
+            flash("tipo", "success");
+        } else {
+            flash("mensagem", "Você não possui lance automático ativo neste leilão");
+            flash("tipo", "warning");
+        }
+        return RedirectUtil.redirectToPath("/leiloes/" + leilaoId);
+    }
+    
     // Visualizar histórico de lances de um leilão
     @Path("/historico/{leilaoId}")
     @RequiresAuth
@@ -152,19 +246,64 @@ public class LanceController extends BaseController {
         
         // Verificar se o usuário pode ver os lances
         if (!usuario.equals(leilao.criador) && 
-            (leilao.tipoLeilao == Leilao.TipoLeilao.FECHADO && !leilao.isConvidado(usuario))) {
+            (leilao.tipoLeilao == Leilao.TipoLeilao.FECHADO && !leilaoService.isConvidado(leilao, usuario))) {
             flash("mensagem", "Você não tem permissão para ver os lances deste leilão");
             flash("tipo", "danger");
             return null;
         }
         
-        return Templates.historico(leilao);
+        return Templates.historico(leilao, lanceService.ranking(leilao, leilao.lances));
+    }
+    
+    // Transmissão ao vivo (SSE) dos lances de um leilão
+    @GET
+    @Path("/eventos/{leilaoId}")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RequiresAuth
+    public Multi<OutboundSseEvent> eventos(@PathParam("leilaoId") Long leilaoId,
+                                           @HeaderParam("Last-Event-ID") Long ultimoEventoId,
+                                           @Context Sse sse) {
+        Leilao leilao = Leilao.findById(leilaoId);
+        if (leilao == null) {
+            throw new NotFoundException("Leilão não encontrado");
+        }
+        
+        Usuario usuario = usuarioLogado();
+        
+        // Mesma regra de visibilidade do histórico de lances
+        if (!usuario.equals(leilao.criador) && 
+            (leilao.tipoLeilao == Leilao.TipoLeilao.FECHADO && !leilaoService.isConvidado(leilao, usuario))) {
+            throw new ForbiddenException("Você não tem permissão para ver os lances deste leilão");
+        }
+        
+        // Só leilões abertos têm transmissão; a resposta de erro impede a reconexão automática do cliente
+        if (leilao.status != Leilao.Status.ABERTO) {
+            throw new NotFoundException("Leilão não está aberto para lances");
+        }
+        
+        Long fornecedorId = usuario.tipoUsuario == Usuario.TipoUsuario.FORNECEDOR ? usuario.id : null;
+        return eventosLancesService.assinar(leilao, fornecedorId, ultimoEventoId)
+            .map(evento -> sse.newEventBuilder()
+                .id(String.valueOf(evento.id()))
+                .name("lance")
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(EventoLanceDTO.class, evento)
+                .build());
+    }
+    
+    // Bilhete de acesso ao canal WebSocket de lances (/ws/lances/{bilhete})
+    @GET
+    @Path("/bilhete")
+    @Produces(MediaType.APPLICATION_JSON)
+    @RequiresAuth
+    @RequiresRole(Usuario.TipoUsuario.FORNECEDOR)
+    public Map<String, String> bilhete() {
+        return Map.of("bilhete", acessoWebSocketService.emitirBilhete(usuarioLogado()));
     }
     
     // Registrar um novo lance
     @POST
     @Path("/registrar/{leilaoId}")
-    @Transactional
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     @RequiresAuth
     @RequiresRole(Usuario.TipoUsuario.FORNECEDOR)
@@ -182,7 +321,7 @@ public class LanceController extends BaseController {
         Usuario fornecedor = usuarioLogado();
         
         // Verificar se o fornecedor pode participar do leilão
-        if (leilao.tipoLeilao == Leilao.TipoLeilao.FECHADO && !leilao.isConvidado(fornecedor)) {
+        if (leilao.tipoLeilao == Leilao.TipoLeilao.FECHADO && !leilaoService.isConvidado(leilao, fornecedor)) {
             flash("mensagem", "Você não está convidado para participar deste leilão");
             flash("tipo", "danger");
             return;
@@ -212,24 +351,15 @@ public class LanceController extends BaseController {
             return;
         }
         
-        // Verificar se o valor é menor que o lance anterior
-        Lance ultimoLance = Lance.find("leilao = ?1 order by dataHora desc", leilao).firstResult();
-        if (ultimoLance != null && valor.compareTo(ultimoLance.valor) >= 0) {
-            flash("mensagem", "O valor do lance deve ser menor que o lance anterior");
+        // Criar e gravar o lance (verifica a melhor oferta no livro e notifica o comprador)
+        try {
+            lanceService.criarLance(leilao, fornecedor, valor, null, null, null);
+        } catch (BusinessException e) {
+            flash("mensagem", e.getMessage());
             flash("tipo", "danger");
             return;
         }
         
-        // Criar e salvar o lance
-        Lance lance = new Lance();
-        lance.leilao = leilao;
-        lance.fornecedor = fornecedor;
-        lance.valor = valor;
-        lance.persist();
-        
-        // Notificar o comprador sobre o novo lance
-        notificacaoService.notificarNovoLance(lance);
-        
         flash("mensagem", "Lance registrado com sucesso!");
         flash("tipo", "success");
     }
@@ -249,12 +379,12 @@ public class LanceController extends BaseController {
         
         // Verificar se o usuário pode ver os lances
         if (!usuario.equals(leilao.criador) && 
-            (leilao.tipoLeilao == Leilao.TipoLeilao.FECHADO && !leilao.isConvidado(usuario))) {
+            (leilao.tipoLeilao == Leilao.TipoLeilao.FECHADO && !leilaoService.isConvidado(leilao, usuario))) {
             flash("mensagem", "Você não tem permissão para ver os lances deste leilão");
             flash("tipo", "danger");
             return null;
         }
         
-        return Templates.listar(leilao);
+        return Templates.listar(leilao, lanceService.ranking(leilao, leilao.lances));
     }
 }
@@ -7,6 +7,9 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
 
 import io.quarkus.qute.CheckedTemplate;
 import io.quarkus.qute.TemplateInstance;
@@ -26,6 +29,8 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.core.MediaType;
 
+import model.AreaAtuacao;
+import model.Categoria;
 import model.Leilao;
 import model.Usuario;
 import model.Lance;
@@ -33,8 +38,14 @@ import model.FormaPagamento;
 import model.Convite;
 import service.NotificacaoService;
 import service.LeilaoService;
+import service.LanceService;
+import service.IndiceFacetasLeiloesService;
+import service.ConviteService;
+import annotation.Pageable;
 import security.RequiresAuth;
 import security.RequiresRole;
+import dto.FacetasLeiloesDTO;
+import dto.RankingLancesDTO;
 import dto.PaginatedResponse;
 
 import org.eclipse.microprofile.openapi.annotations.Operation;
@@ -56,24 +67,106 @@ public class LeilaoController extends BaseController {
     @Inject
     LeilaoService leilaoService;
     
+    @Inject
+    LanceService lanceService;
+    
+    @Inject
+    IndiceFacetasLeiloesService indiceFacetas;
+    
+    @Inject
+    ConviteService conviteService;
+    
+    private static final int TAMANHO_PAGINA_FACETAS = 30;
+    
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm");
     
     @CheckedTemplate(basePath = "Leilao", requireTypeSafeExpressions = false)
     public static class Templates {
-        public static native TemplateInstance index(List<Leilao> leiloes);
-        public static native TemplateInstance criar();
+        public static native TemplateInstance index(List<Leilao> leiloes, FacetasLeiloesDTO facetas,
+                                                    FacetasLeiloesDTO.Filtro filtro, List<Categoria> categorias,
+                                                    List<FormaPagamento> formasPagamento, int pagina,
+                                                    int totalPaginas, String consulta);
+        public static native TemplateInstance criar(List<AreaAtuacao> areasAtuacao);
         public static native TemplateInstance editar(Leilao leilao);
-        public static native TemplateInstance visualizar(Leilao leilao, List<Lance> lances, boolean podeConvidar, boolean podeParticiplar);
+        public static native TemplateInstance visualizar(Leilao leilao, List<Lance> lances, RankingLancesDTO ranking,
+                                                         boolean podeConvidar, boolean podeParticiplar);
         public static native TemplateInstance meusLeiloes(List<Leilao> leiloes);
-        public static native TemplateInstance disponiveis(List<Leilao> leiloes);
+        public static native TemplateInstance disponiveis(List<Leilao> leiloes, String busca);
         public static native TemplateInstance convidar(Leilao leilao, List<Usuario> fornecedores);
     }
     
-    // Página inicial com leilões em destaque
+    // Listagem de leilões filtrada por facetas (por padrão, apenas os abertos), com as contagens de cada faceta
     @Path("")
     public TemplateInstance index() {
-        List<Leilao> leiloes = Leilao.listarLeiloesAbertos();
-        return Templates.index(leiloes);
+        Set<Leilao.Status> status = enums(Leilao.Status.class, getRequestParameters("status"));
+        status.remove(Leilao.Status.RASCUNHO);
+        if (status.isEmpty()) {
+            status.add(Leilao.Status.ABERTO);
+        }
+        FacetasLeiloesDTO.Filtro filtro = new FacetasLeiloesDTO.Filtro(
+            ids(getRequestParameters("categoria")),
+            ids(getRequestParameters("formaPagamento")),
+            status,
+            enums(Leilao.TipoLeilao.class, getRequestParameters("tipo")),
+            enums(FacetasLeiloesDTO.FaixaValor.class, getRequestParameters("faixa")),
+            enums(FacetasLeiloesDTO.JanelaFechamento.class, getRequestParameters("janela")));
+        
+        int pagina = 1;
+        try {
+            String paginaParam = getRequestParameter("pagina");
+            if (paginaParam != null) {
+                pagina = Math.max(1, Integer.parseInt(paginaParam));
+            }
+        } catch (NumberFormatException e) {
+            // Ignora e usa a primeira página
+        }
+        
+        FacetasLeiloesDTO facetas = indiceFacetas.filtrar(filtro, pagina, TAMANHO_PAGINA_FACETAS);
+        if (facetas == null) {
+            // Índice de facetas desativado (IDs fora do intervalo dos bitmaps): leilões abertos, sem contagens
+            facetas = leilaoService.listarAbertosSemFacetas(pagina, TAMANHO_PAGINA_FACETAS);
+        }
+        List<Leilao> leiloes = leilaoService.listarPorIds(facetas.leilaoIds());
+        int totalPaginas = Math.max(1, (facetas.total() + TAMANHO_PAGINA_FACETAS - 1) / TAMANHO_PAGINA_FACETAS);
+        
+        return Templates.index(leiloes, facetas, filtro, Categoria.listarOrdenado(), FormaPagamento.listarOrdenado(),
+            pagina, totalPaginas, consulta(filtro));
+    }
+    
+    private static Set<Long> ids(List<String> valores) {
+        Set<Long> ids = new HashSet<>();
+        for (String valor : valores) {
+            try {
+                ids.add(Long.valueOf(valor));
+            } catch (NumberFormatException e) {
+                // Ignora valores inválidos
+            }
+        }
+        return ids;
+    }
+    
+    private static <E extends Enum<E>> Set<E> enums(Class<E> tipo, List<String> valores) {
+        Set<E> selecionados = EnumSet.noneOf(tipo);
+        for (String valor : valores) {
+            try {
+                selecionados.add(Enum.valueOf(tipo, valor));
+            } catch (IllegalArgumentException e) {
+                // Ignora valores inválidos
+            }
+        }
+        return selecionados;
+    }
+    
+    // Query string do filtro, usada nos links de paginação
+    private static String consulta(FacetasLeiloesDTO.Filtro filtro) {
+        StringBuilder consulta = new StringBuilder();
+        filtro.categorias().forEach(id -> consulta.append("&categoria=").append(id));
+        filtro.formasPagamento().forEach(id -> consulta.append("&formaPagamento=").append(id));
+        filtro.status().forEach(s -> consulta.append("&status=").append(s.name()));
+        filtro.tiposLeilao().forEach(t -> consulta.append("&tipo=").append(t.name()));
+        filtro.faixasValor().forEach(f -> consulta.append("&faixa=").append(f.name()));
+        filtro.janelasFechamento().forEach(j -> consulta.append("&janela=").append(j.name()));
+        return consulta.toString();
     }
     
     // Formulário para criar um novo leilão
@@ -81,7 +174,7 @@ public class LeilaoController extends BaseController {
     @RequiresAuth
     @RequiresRole(Usuario.TipoUsuario.COMPRADOR)
     public TemplateInstance criar() {
-        return Templates.criar();
+        return Templates.criar(AreaAtuacao.listarOrdenado());
     }
     
     // Ação para salvar um novo leilão
@@ -101,7 +194,8 @@ public class LeilaoController extends BaseController {
             @FormParam("formaPagamento") @NotNull(message = "A forma de pagamento é obrigatória") Long formaPagamentoId,
             @FormParam("quantidade") Integer quantidade,
             @FormParam("unidadeMedida") String unidadeMedida,
-            @FormParam("valorReferencia") String valorReferenciaStr) {
+            @FormParam("valorReferencia") String valorReferenciaStr,
+            @FormParam("areasAtuacao") List<Long> areaIds) {
         
         if (validationFailed()) {
             flash("mensagem", "Por favor, corrija os erros no formulário");
@@ -145,6 +239,16 @@ public class LeilaoController extends BaseController {
         leilao.unidadeMedida = unidadeMedida;
         leilao.criador = usuarioLogado();
         
+        // Áreas de atuação, usadas para divulgar o leilão aos fornecedores
+        if (areaIds != null) {
+            for (Long areaId : areaIds) {
+                AreaAtuacao area = AreaAtuacao.findById(areaId);
+                if (area != null) {
+                    leilao.areasAtuacao.add(area);
+                }
+            }
+        }
+        
         if (valorReferenciaStr != null && !valorReferenciaStr.isEmpty()) {
             try {
                 leilao.valorReferencia = new BigDecimal(valorReferenciaStr.replace(",", "."));
@@ -163,7 +267,7 @@ public class LeilaoController extends BaseController {
             return Uni.createFrom().item("convidar/" + leilao.id);
         } else {
             // Se for leilão aberto, já publicar
-            leilao.publicar();
+            leilaoService.efetivarPublicacao(leilao);
             return Uni.createFrom().item("visualizar/" + leilao.id);
         }
     }
@@ -186,7 +290,7 @@ public class LeilaoController extends BaseController {
             podeVisualizar = false;
         } else if (leilao.tipoLeilao == Leilao.TipoLeilao.FECHADO && 
                   !leilao.criador.equals(usuario) && 
-                  !leilao.isConvidado(usuario)) {
+                  !leilaoService.isConvidado(leilao, usuario)) {
             podeVisualizar = false;
         }
         
@@ -207,9 +311,9 @@ public class LeilaoController extends BaseController {
         boolean podeParticipar = usuario != null && 
                                 usuario.tipoUsuario == Usuario.TipoUsuario.FORNECEDOR &&
                                 leilao.status == Leilao.Status.ABERTO &&
-                                (leilao.tipoLeilao == Leilao.TipoLeilao.ABERTO || leilao.isConvidado(usuario));
+                                (leilao.tipoLeilao == Leilao.TipoLeilao.ABERTO || leilaoService.isConvidado(leilao, usuario));
         
-        return Templates.visualizar(leilao, lances, podeConvidar, podeParticipar);
+        return Templates.visualizar(leilao, lances, lanceService.ranking(leilao, lances), podeConvidar, podeParticipar);
     }
     
     // Página para convidar fornecedores para um leilão fechado
@@ -269,8 +373,7 @@ public class LeilaoController extends BaseController {
                 if (fornecedor != null && fornecedor.tipoUsuario == Usuario.TipoUsuario.FORNECEDOR) {
                     // Verificar se já existe um convite para este fornecedor
                     if (!Convite.existeConvite(leilao, fornecedor)) {
-                        Convite convite = new Convite(leilao, fornecedor);
-                        convite.persist();
+                        Convite convite = conviteService.enviar(leilao, fornecedor);
                         
                         // Enviar email de convite
                         notificacaoService.notificarConvite(convite);
@@ -287,7 +390,7 @@ public class LeilaoController extends BaseController {
         
         // Publicar o leilão se solicitado
         if (publicar != null && !publicar.isEmpty()) {
-            leilao.publicar();
+            leilaoService.efetivarPublicacao(leilao);
         }
         
         visualizar(leilaoId);
@@ -302,13 +405,15 @@ public class LeilaoController extends BaseController {
         return Templates.meusLeiloes(leiloes);
     }
     
-    // Listar leilões disponíveis para participação (para fornecedores)
+    // Listar leilões disponíveis para participação (para fornecedores), com busca textual opcional
     @Path("/disponiveis")
     @RequiresAuth
     @RequiresRole(Usuario.TipoUsuario.FORNECEDOR)
-    public TemplateInstance disponiveis() {
-        List<Leilao> leiloes = Leilao.listarLeiloesPorFornecedor(usuarioLogado());
-        return Templates.disponiveis(leiloes);
+    public TemplateInstance disponiveis(@QueryParam("q") String busca) {
+        List<Leilao> leiloes = busca == null || busca.isBlank()
+            ? leilaoService.listarDisponiveisPara(usuarioLogado())
+            : leilaoService.buscarDisponiveisPara(usuarioLogado(), busca, 50);
+        return Templates.disponiveis(leiloes, busca);
     }
     
     // Cancelar um leilão
@@ -356,7 +461,7 @@ public class LeilaoController extends BaseController {
             return;
         }
         
-        leilao.cancelar(motivo);
+        leilaoService.efetivarCancelamento(leilao, motivo);
         
         // Aplicar penalidade ao comprador
         usuario.atualizarPontuacao(-1.0);
@@ -367,9 +472,11 @@ public class LeilaoController extends BaseController {
     }
     
     @GET
+    @Pageable
     @Operation(
         summary = "Lista leilões paginados",
-        description = "Retorna uma lista paginada de leilões"
+        description = "Retorna uma lista paginada de leilões. Com o parâmetro cursor (ou o header X-Cursor), "
+            + "usa a paginação por cursor: a resposta traz o cursor da página seguinte e um total estimado"
     )
     @APIResponse(
         responseCode = "200",
@@ -379,8 +486,12 @@ public class LeilaoController extends BaseController {
     )
     public PaginatedResponse<Leilao> listarLeiloes(
         @Parameter(description = "Número da página (começa em 1)") @QueryParam("page") @DefaultValue("1") int page,
-        @Parameter(description = "Tamanho da página") @QueryParam("size") @DefaultValue("10") int size
+        @Parameter(description = "Tamanho da página") @QueryParam("size") @DefaultValue("10") int size,
+        @Parameter(description = "Cursor da página (vazio para a primeira página por cursor)") @QueryParam("cursor") String cursor
     ) {
+        if (cursor != null) {
+            return leilaoService.listarLeiloesPorCursor(cursor, paginationService.getEffectivePageSize(size));
+        }
         return leilaoService.listarLeiloesPaginados(page, size);
     }
     
@@ -1,24 +1,36 @@
 package controller;
 
-import java.util.List;
+import java.util.Date;
 
 import io.quarkus.qute.CheckedTemplate;
 import io.quarkus.qute.TemplateInstance;
+import io.smallrye.mutiny.Multi;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.FormParam;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
 
-import model.Notificacao;
+import dto.EventoNotificacaoDTO;
+import dto.PaginaNotificacoesDTO;
+import exception.BusinessException;
 import model.Usuario;
+import security.RequiresAuth;
+import service.CacheNotificacoesService;
+import service.EventosNotificacoesService;
 import service.NotificacaoService;
 import util.RedirectUtil;
-import dto.NotificacaoDTO;
 
 /**
  * Controlador para gerenciar as notificações do usuário.
@@ -29,18 +41,27 @@ public class NotificacaoController extends BaseController {
     @Inject
     NotificacaoService notificacaoService;
     
+    @Inject
+    EventosNotificacoesService eventosNotificacoesService;
+    
+    private static final int TAMANHO_PAGINA = 20;
+    
+    private static final String FILTRO_NAO_LIDAS = "nao-lidas";
+    
     @CheckedTemplate(basePath = "Notificacao", requireTypeSafeExpressions = false)
     public static class Templates {
-        public static native TemplateInstance listar(List<Notificacao> notificacoes, long naoLidas);
+        public static native TemplateInstance listar(PaginaNotificacoesDTO pagina, long naoLidas, boolean apenasNaoLidas);
     }
     
     /**
-     * Exibe a lista de notificações do usuário logado.
+     * Exibe a primeira página das notificações do usuário logado; as seguintes são carregadas
+     * pela página, durante a rolagem, a partir de {@code /notificacoes/pagina}.
      * 
-     * @return Template com a lista de notificações
+     * @param filtro "nao-lidas" para exibir apenas as notificações não lidas
+     * @return Template com a primeira página de notificações
      */
     @GET
-    public TemplateInstance listar() {
+    public TemplateInstance listar(@QueryParam("filtro") String filtro) {
         Usuario usuario = usuarioLogado();
         if (usuario == null) {
             flash("mensagem", "Você precisa estar logado para acessar suas notificações");
@@ -48,10 +69,38 @@ public class NotificacaoController extends BaseController {
             return RedirectUtil.redirectTemplate("/usuarios/login");
         }
         
-        List<Notificacao> notificacoes = notificacaoService.buscarNotificacoes(usuario);
-        long naoLidas = notificacoes.stream().filter(n -> !n.lida).count();
+        boolean apenasNaoLidas = FILTRO_NAO_LIDAS.equals(filtro);
+        PaginaNotificacoesDTO pagina = notificacaoService.buscarPagina(usuario, null, TAMANHO_PAGINA, apenasNaoLidas);
+        long naoLidas = notificacaoService.resumoNaoLidas(usuario).naoLidas();
         
-        return Templates.listar(notificacoes, naoLidas);
+        return Templates.listar(pagina, naoLidas, apenasNaoLidas);
+    }
+    
+    /**
+     * Retorna a página de notificações do usuário logado seguinte a um cursor.
+     * Endpoint usado pela lista de notificações para a rolagem contínua.
+     * 
+     * @param cursor Cursor retornado pela página anterior
+     * @param filtro "nao-lidas" para buscar apenas as notificações não lidas
+     * @return Página de notificações e cursor da página seguinte
+     */
+    @GET
+    @Path("/pagina")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response pagina(@QueryParam("cursor") String cursor, @QueryParam("filtro") String filtro) {
+        Usuario usuario = usuarioLogado();
+        if (usuario == null) {
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+        }
+        
+        try {
+            return Response.ok(notificacaoService.buscarPagina(usuario, cursor, TAMANHO_PAGINA,
+                FILTRO_NAO_LIDAS.equals(filtro))).build();
+        } catch (BusinessException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(java.util.Map.of("error", e.getMessage()))
+                    .build();
+        }
     }
     
     /**
@@ -79,29 +128,68 @@ public class NotificacaoController extends BaseController {
     }
     
     /**
-     * Marca todas as notificações do usuário como lidas.
+     * Marca como lidas todas as notificações do usuário até a mais recente exibida na página.
      * 
-     * @return Redirecionamento para a lista de notificações
+     * @param ate ID da notificação mais recente exibida
+     * @param dataEnvio Data de envio dessa notificação, em milissegundos
+     * @return Número de notificações marcadas como lidas
      */
     @POST
     @Path("/marcar-todas-lidas")
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     @Transactional
-    public Response marcarTodasComoLidas() {
+    public Response marcarTodasComoLidas(@FormParam("ate") Long ate, @FormParam("dataEnvio") Long dataEnvio) {
         Usuario usuario = usuarioLogado();
         if (usuario == null) {
             return Response.status(Response.Status.UNAUTHORIZED).build();
         }
+        if (ate == null || dataEnvio == null) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(java.util.Map.of("error", "Notificação mais recente não informada"))
+                    .build();
+        }
         
-        int quantidade = notificacaoService.marcarTodasComoLidas(usuario);
+        int quantidade = notificacaoService.marcarTodasComoLidas(usuario, ate, new Date(dataEnvio));
         
         return Response.ok()
                 .entity(java.util.Map.of("success", true, "count", quantidade))
                 .build();
     }
     
+    /**
+     * Transmissão ao vivo (SSE) das notificações do usuário logado.
+     * Cada evento traz o número de notificações não lidas e as mais recentes; os eventos sem
+     * notificações ({@code atualizar}) indicam que o cliente deve consultar {@code /recentes}.
+     * O ID do último evento recebido pode vir no cabeçalho Last-Event-ID (reconexão automática
+     * do EventSource) ou no parâmetro {@code ultimo} (nova conexão aberta por outra aba).
+     * 
+     * @param ultimoEventoId ID do último evento recebido, informado pelo navegador ao reconectar
+     * @param ultimo ID do último evento recebido, informado pela página
+     * @return Fluxo de eventos de notificações
+     */
+    @GET
+    @Path("/eventos")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RequiresAuth
+    public Multi<OutboundSseEvent> eventos(@HeaderParam("Last-Event-ID") Long ultimoEventoId,
+                                           @QueryParam("ultimo") Long ultimo,
+                                           @Context Sse sse) {
+        Usuario usuario = usuarioLogado();
+        CacheNotificacoesService.Resumo atual = notificacaoService.resumoNaoLidas(usuario);
+        
+        return eventosNotificacoesService.assinar(usuario.id, ultimoEventoId != null ? ultimoEventoId : ultimo, atual)
+            .map(evento -> sse.newEventBuilder()
+                .id(String.valueOf(evento.id()))
+                .name(evento.completo() ? "resumo" : "atualizar")
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(EventoNotificacaoDTO.class, evento)
+                .build());
+    }
+    
     /**
      * Retorna o número de notificações não lidas do usuário logado.
-     * Endpoint usado para atualizar o contador no navbar.
+     * Endpoint usado para carregar o contador no navbar quando a transmissão ao vivo
+     * não está disponível.
      * 
      * @return Número de notificações não lidas
      */
@@ -114,14 +202,15 @@ public class NotificacaoController extends BaseController {
             return Response.status(Response.Status.UNAUTHORIZED).build();
         }
         
-        List<Notificacao> naoLidas = notificacaoService.buscarNotificacoesNaoLidas(usuario);
+        long naoLidas = notificacaoService.resumoNaoLidas(usuario).naoLidas();
         
-        return Response.ok(java.util.Map.of("count", naoLidas.size())).build();
+        return Response.ok(java.util.Map.of("count", naoLidas)).build();
     }
     
     /**
      * Retorna as últimas notificações não lidas do usuário logado.
-     * Endpoint usado para exibir notificações no dropdown do navbar.
+     * Endpoint usado para carregar o dropdown do navbar quando a transmissão ao vivo não está
+     * disponível ou pede para recarregar o resumo.
      * 
      * @return Lista das últimas notificações não lidas
      */
@@ -134,12 +223,10 @@ public class NotificacaoController extends BaseController {
             return Response.status(Response.Status.UNAUTHORIZED).build();
         }
         
-        List<Notificacao> naoLidas = notificacaoService.buscarNotificacoesNaoLidas(usuario);
-        List<NotificacaoDTO> dtos = NotificacaoDTO.converterLista(
-                naoLidas.stream().limit(5).toList());
+        CacheNotificacoesService.Resumo resumo = notificacaoService.resumoNaoLidas(usuario);
         
         return Response.ok(java.util.Map.of(
-                "notificacoes", dtos, 
-                "total", naoLidas.size())).build();
+                "notificacoes", resumo.recentes(), 
+                "total", resumo.naoLidas())).build();
     }
 }
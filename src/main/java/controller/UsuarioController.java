@@ -150,7 +150,7 @@ public class UsuarioController extends BaseController {
                 }
             }
             
-            usuario.persist();
+            usuarioService.salvar(usuario);
             
             // Enviar email de boas vindas
             usuarioService.enviarEmailBoasVindas(usuario);
@@ -317,7 +317,7 @@ public class UsuarioController extends BaseController {
         
         usuario.ultimaAtualizacao = new Date();
         
-        usuario.persist();
+        usuarioService.salvar(usuario);
         
         flash("mensagem", "Perfil atualizado com sucesso!");
         flash("tipo", "success");
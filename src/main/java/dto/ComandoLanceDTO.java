@@ -0,0 +1,27 @@
+package dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Comando de lance recebido pelo canal WebSocket.
+ * O campo {@code id} é definido pelo cliente e devolvido na resposta, permitindo
+ * enviar vários comandos sem aguardar as respostas anteriores.
+ */
+public record ComandoLanceDTO(
+    String id,
+    Acao acao,
+    Long leilaoId,
+    Long lanceId,
+    BigDecimal valor,
+    String condicoesEntrega,
+    Integer prazoEntrega,
+    Integer prazoPagamento,
+    String motivo
+) {
+    
+    public enum Acao {
+        DAR,        // Novo lance (leilaoId, valor)
+        ATUALIZAR,  // Atualiza um lance (lanceId, valor)
+        CANCELAR    // Cancela um lance (lanceId, motivo)
+    }
+}
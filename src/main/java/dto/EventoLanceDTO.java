@@ -0,0 +1,38 @@
+package dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Evento de lances de um leilão enviado aos assinantes da transmissão ao vivo.
+ * Traz um resumo compacto do estado do livro de ofertas após a alteração. O ranking traz apenas
+ * posições e valores, sem identificar os fornecedores; cada fornecedor recebe a sua própria posição
+ * em {@code minhaPosicao}.
+ */
+public record EventoLanceDTO(
+    long id,
+    Long leilaoId,
+    BigDecimal melhorOferta,
+    int totalLances,
+    int totalFornecedores,
+    List<Posicao> ranking,
+    Integer minhaPosicao,
+    long data
+) {
+    
+    /**
+     * Posição no ranking do leilão.
+     */
+    public record Posicao(int posicao, BigDecimal valor) {
+    }
+    
+    /**
+     * Cópia do evento com a posição atual do fornecedor que o recebe.
+     * 
+     * @param posicao Posição do fornecedor no ranking, ou null se ele não tiver ofertas ativas
+     * @return Evento para o fornecedor
+     */
+    public EventoLanceDTO comPosicao(Integer posicao) {
+        return new EventoLanceDTO(id, leilaoId, melhorOferta, totalLances, totalFornecedores, ranking, posicao, data);
+    }
+}
@@ -0,0 +1,22 @@
+package dto;
+
+import java.util.List;
+
+/**
+ * Evento de notificações de um usuário enviado aos assinantes da transmissão ao vivo.
+ * Traz o resumo atual das notificações não lidas; quando o resumo não está disponível,
+ * {@code recentes} é nulo e o cliente deve recarregá-lo pelo endpoint de notificações recentes.
+ */
+public record EventoNotificacaoDTO(
+    long id,
+    long naoLidas,
+    List<NotificacaoDTO> recentes
+) {
+    
+    /**
+     * Indica se o evento traz o resumo das notificações.
+     */
+    public boolean completo() {
+        return recentes != null;
+    }
+}
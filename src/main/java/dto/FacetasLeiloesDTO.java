@@ -0,0 +1,122 @@
+package dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import model.Leilao;
+
+/**
+ * Resultado da listagem de leilões filtrada por facetas.
+ * Traz os IDs da página de leilões que atendem a todos os filtros e, para cada faceta, o número
+ * de leilões de cada valor considerando os filtros das demais facetas (assim, marcar um valor
+ * adicional da mesma faceta nunca mostra zero para os valores ainda não marcados).
+ */
+public record FacetasLeiloesDTO(
+    List<Long> leilaoIds,
+    int total,
+    Map<Long, Integer> categorias,
+    Map<Long, Integer> formasPagamento,
+    Map<Leilao.Status, Integer> status,
+    Map<Leilao.TipoLeilao, Integer> tiposLeilao,
+    Map<FaixaValor, Integer> faixasValor,
+    Map<JanelaFechamento, Integer> janelasFechamento
+) {
+    
+    /**
+     * Faixa do valor de referência do leilão.
+     */
+    public enum FaixaValor {
+        ATE_10_MIL("Até R$ 10 mil", new BigDecimal("10000")),
+        ATE_100_MIL("De R$ 10 mil a R$ 100 mil", new BigDecimal("100000")),
+        ATE_1_MILHAO("De R$ 100 mil a R$ 1 milhão", new BigDecimal("1000000")),
+        ACIMA_1_MILHAO("Acima de R$ 1 milhão", null),
+        SEM_REFERENCIA("Sem valor de referência", null);
+        
+        private final String descricao;
+        
+        // Limite superior (exclusivo) da faixa
+        private final BigDecimal limite;
+        
+        FaixaValor(String descricao, BigDecimal limite) {
+            this.descricao = descricao;
+            this.limite = limite;
+        }
+        
+        public String getDescricao() {
+            return descricao;
+        }
+        
+        /**
+         * Faixa de um valor de referência.
+         * 
+         * @param valor Valor de referência, ou nulo
+         * @return Faixa do valor
+         */
+        public static FaixaValor de(BigDecimal valor) {
+            if (valor == null) {
+                return SEM_REFERENCIA;
+            }
+            for (FaixaValor faixa : values()) {
+                if (faixa.limite != null && valor.compareTo(faixa.limite) < 0) {
+                    return faixa;
+                }
+            }
+            return ACIMA_1_MILHAO;
+        }
+    }
+    
+    /**
+     * Janela do prazo de fechamento do leilão em relação ao dia atual.
+     */
+    public enum JanelaFechamento {
+        PRAZO_ENCERRADO("Prazo encerrado"),
+        HOJE("Fecha hoje"),
+        PROXIMOS_7_DIAS("Fecha em até 7 dias"),
+        PROXIMOS_30_DIAS("Fecha em até 30 dias"),
+        MAIS_DE_30_DIAS("Fecha em mais de 30 dias");
+        
+        private final String descricao;
+        
+        JanelaFechamento(String descricao) {
+            this.descricao = descricao;
+        }
+        
+        public String getDescricao() {
+            return descricao;
+        }
+        
+        /**
+         * Janela de um dia de fechamento.
+         * 
+         * @param dias Dias entre hoje e o fechamento (negativo se já passou)
+         * @return Janela do fechamento
+         */
+        public static JanelaFechamento de(long dias) {
+            if (dias < 0) {
+                return PRAZO_ENCERRADO;
+            } else if (dias == 0) {
+                return HOJE;
+            } else if (dias <= 7) {
+                return PROXIMOS_7_DIAS;
+            } else if (dias <= 30) {
+                return PROXIMOS_30_DIAS;
+            }
+            return MAIS_DE_30_DIAS;
+        }
+    }
+    
+    /**
+     * Valores marcados em cada faceta. Uma faceta sem valores marcados não filtra.
+     */
+    public record Filtro(
+        Set<Long> categorias,
+        Set<Long> formasPagamento,
+        Set<Leilao.Status> status,
+        Set<Leilao.TipoLeilao> tiposLeilao,
+        Set<FaixaValor> faixasValor,
+        Set<JanelaFechamento> janelasFechamento
+    ) {
+    }
+}
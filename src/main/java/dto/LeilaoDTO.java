@@ -37,19 +37,11 @@ public record LeilaoDTO(
      * @param leilao A entidade a ser convertida.
      */
     public static LeilaoDTO fromEntity(Leilao leilao) {
-        // Obter o número de lances e o menor lance
-        int quantidadeLances = 0;
-        BigDecimal menorLanceValor = null;
+        // Número de lances contado no banco, sem carregar a lista de lances
+        int quantidadeLances = leilao.id != null ? (int) Lance.contarLancesPorLeilao(leilao) : 0;
         
-        if (leilao.lances != null) {
-            quantidadeLances = leilao.lances.size();
-            
-            // Obter o menor lance
-            Lance menorLance = leilao.getMenorLance();
-            if (menorLance != null) {
-                menorLanceValor = menorLance.valor;
-            }
-        }
+        // Melhor oferta gravada a partir do livro de ofertas; o vencedor, nos leilões concluídos
+        BigDecimal menorLanceValor = leilao.valorVencedor != null ? leilao.valorVencedor : leilao.melhorOferta;
         
         // Obter lista de anexos
         List<String> anexos = null;
@@ -0,0 +1,24 @@
+package dto;
+
+import java.util.List;
+
+/**
+ * Página da caixa de notificações de um usuário, paginada por cursor.
+ * O cursor {@code proximo} identifica a última notificação da página (data de envio e ID) e deve
+ * ser informado para obter a página seguinte; é nulo quando não há mais notificações.
+ * Quando {@code anteriores} é true, a página seguinte sai da janela recente da caixa e só deve ser
+ * buscada a pedido do usuário.
+ */
+public record PaginaNotificacoesDTO(
+    List<NotificacaoDTO> notificacoes,
+    String proximo,
+    boolean anteriores
+) {
+    
+    /**
+     * Indica se há uma página seguinte.
+     */
+    public boolean temMais() {
+        return proximo != null;
+    }
+}
@@ -1,6 +1,9 @@
 package dto;
 
 import java.util.List;
+import java.util.function.Function;
+
+import util.PageCursor;
 
 public class PaginatedResponse<T> {
     private List<T> items;
@@ -8,6 +11,9 @@ public class PaginatedResponse<T> {
     private int totalPages;
     private long totalItems;
     private int pageSize;
+    private String nextCursor;
+    private boolean cursorMode;
+    private boolean totalEstimated;
     
     public PaginatedResponse(List<T> items, int currentPage, int totalPages, long totalItems, int pageSize) {
         this.items = items;
@@ -17,6 +23,33 @@ public class PaginatedResponse<T> {
         this.pageSize = pageSize;
     }
     
+    /**
+     * Cria uma resposta da paginação por cursor (keyset).
+     * A consulta deve buscar um item a mais que o tamanho da página: se ele vier, há página seguinte,
+     * e o cursor dela é formado pelas chaves de ordenação do último item da página.
+     * 
+     * @param <T> Tipo dos itens
+     * @param rows Itens buscados (até {@code pageSize + 1})
+     * @param pageSize Tamanho da página
+     * @param cursorOf Chaves de ordenação de um item
+     * @param totalItems Total de itens (estimado ou exato)
+     * @param totalEstimated Se o total é uma estimativa
+     * @return Resposta paginada
+     */
+    public static <T> PaginatedResponse<T> ofCursor(List<T> rows, int pageSize, Function<T, PageCursor> cursorOf,
+                                                    long totalItems, boolean totalEstimated) {
+        List<T> items = rows.size() > pageSize ? rows.subList(0, pageSize) : rows;
+        int totalPages = pageSize > 0 ? (int) Math.ceil((double) totalItems / pageSize) : 0;
+        
+        PaginatedResponse<T> response = new PaginatedResponse<>(items, 0, totalPages, totalItems, pageSize);
+        response.cursorMode = true;
+        response.totalEstimated = totalEstimated;
+        if (rows.size() > pageSize && !items.isEmpty()) {
+            response.nextCursor = cursorOf.apply(items.get(items.size() - 1)).encode();
+        }
+        return response;
+    }
+    
     public List<T> getItems() {
         return items;
     }
@@ -37,11 +70,32 @@ public class PaginatedResponse<T> {
         return pageSize;
     }
     
+    /**
+     * Cursor da página seguinte (apenas na paginação por cursor), ou null na última página.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public boolean isCursorMode() {
+        return cursorMode;
+    }
+    
+    /**
+     * Indica se o total de itens é uma estimativa (estatísticas do banco ou contagem em cache).
+     */
+    public boolean isTotalEstimated() {
+        return totalEstimated;
+    }
+    
     public boolean hasNext() {
+        if (cursorMode) {
+            return nextCursor != null;
+        }
         return currentPage < totalPages;
     }
     
     public boolean hasPrevious() {
         return currentPage > 1;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package dto;
+
+import java.util.Map;
+
+/**
+ * Ranking dos lances de um leilão, calculado uma única vez por página: posição de cada lance
+ * (1 é o menor valor) e os totais de lances e de fornecedores válidos.
+ */
+public record RankingLancesDTO(
+    Map<Long, Integer> posicoes,
+    int totalLances,
+    int totalFornecedores
+) {
+    
+    /**
+     * Posição de um lance no ranking.
+     * 
+     * @param lanceId ID do lance
+     * @return Posição do lance (1 é a melhor posição), ou 1 se o lance não estiver no ranking
+     */
+    public int posicao(Long lanceId) {
+        return posicoes.getOrDefault(lanceId, 1);
+    }
+}
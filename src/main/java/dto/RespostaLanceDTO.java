@@ -0,0 +1,27 @@
+package dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Resposta a um comando de lance recebido pelo canal WebSocket.
+ */
+public record RespostaLanceDTO(
+    String id,
+    boolean aceito,
+    String mensagem,
+    Long lanceId,
+    Integer posicao,
+    BigDecimal melhorOferta
+) {
+    
+    /**
+     * Cria uma resposta de comando recusado.
+     * 
+     * @param id ID do comando
+     * @param mensagem Motivo da recusa
+     * @return Resposta de recusa
+     */
+    public static RespostaLanceDTO recusado(String id, String mensagem) {
+        return new RespostaLanceDTO(id, false, mensagem, null, null, null);
+    }
+}
@@ -74,6 +74,7 @@ public class PaginationInterceptor {
         
         String pageHeader = paginationService.getPageHeaderName();
         String sizeHeader = paginationService.getSizeHeaderName();
+        String cursorHeader = paginationService.getCursorHeaderName();
         
         if (headers.getRequestHeaders().containsKey(pageHeader)) {
             paginationParams.put("page", headers.getRequestHeader(pageHeader).get(0));
@@ -83,6 +84,12 @@ public class PaginationInterceptor {
             paginationParams.put("size", headers.getRequestHeader(sizeHeader).get(0));
         }
         
+        // Cursor da paginação por chave; presente e vazio indica a primeira página
+        if (headers.getRequestHeaders().containsKey(cursorHeader)) {
+            String cursor = headers.getHeaderString(cursorHeader);
+            paginationParams.put("cursor", cursor != null ? cursor : "");
+        }
+        
         return paginationParams;
     }
     
@@ -114,6 +121,10 @@ public class PaginationInterceptor {
                 size = Math.min(size, paginationService.getMaxPageSize());
                 modifiedParams[i] = size;
             }
+            else if (paramName.equals("cursor") && paginationParams.containsKey("cursor")
+                    && param.getType() == String.class) {
+                modifiedParams[i] = paginationParams.get("cursor");
+            }
         }
         
         context.setParameters(modifiedParams);
@@ -0,0 +1,74 @@
+package model;
+
+import java.util.Date;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+
+/**
+ * Email na fila de envio.
+ * É gravado na mesma transação da operação que o originou e enviado de forma assíncrona;
+ * é removido da fila depois de enviado.
+ */
+@Entity
+@Table(name = "fila_emails")
+public class EmailPendente extends PanacheEntity {
+    
+    /**
+     * Prioridade de envio, da mais alta para a mais baixa (gravada pela ordem).
+     */
+    public enum Prioridade {
+        ALTA,    // Recuperação e alteração de senha
+        NORMAL,  // Avisos individuais
+        BAIXA    // Envios em massa, como convites
+    }
+    
+    public enum Status {
+        PENDENTE,
+        FALHOU   // Tentativas esgotadas
+    }
+    
+    @Column(nullable = false)
+    public String destinatario;
+    
+    @Column(nullable = false)
+    public String assunto;
+    
+    @Column(nullable = false, columnDefinition = "TEXT")
+    public String corpo;
+    
+    @Column(nullable = false)
+    public Prioridade prioridade;
+    
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    public Status status = Status.PENDENTE;
+    
+    @Column(nullable = false)
+    public int tentativas;
+    
+    /**
+     * Momento a partir do qual o email pode ser (re)enviado.
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "proxima_tentativa", nullable = false)
+    public Date proximaTentativa;
+    
+    @Column(name = "ultimo_erro", length = 1000)
+    public String ultimoErro;
+    
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "data_criacao", nullable = false)
+    public Date dataCriacao;
+    
+    public EmailPendente() {
+        this.dataCriacao = new Date();
+        this.proximaTentativa = this.dataCriacao;
+    }
+}
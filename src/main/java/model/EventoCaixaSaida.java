@@ -0,0 +1,90 @@
+package model;
+
+import java.util.Date;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+
+/**
+ * Evento da caixa de saída (outbox).
+ * É gravado na mesma transação da operação que o originou e expandido de forma assíncrona
+ * em uma notificação por destinatário.
+ */
+@Entity
+@Table(name = "caixa_saida")
+public class EventoCaixaSaida extends PanacheEntity {
+    
+    public enum Tipo {
+        LEILAO_PUBLICADO_ABERTO,   // Todos os fornecedores
+        LEILAO_PUBLICADO_FECHADO,  // Fornecedores convidados
+        PERGUNTA_COMPRADOR         // Fornecedores com lance ou convite aceito no leilão
+    }
+    
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    public Tipo tipo;
+    
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "leilao_id", nullable = false)
+    public Leilao leilao;
+    
+    @Column(nullable = false)
+    public String titulo;
+    
+    @Column(nullable = false, length = 1000)
+    public String mensagem;
+    
+    @Column
+    public String link;
+    
+    /**
+     * ID do último destinatário já notificado.
+     */
+    @Column(name = "ultimo_destinatario", nullable = false)
+    public long ultimoDestinatario;
+    
+    @Column(name = "total_enviados", nullable = false)
+    public int totalEnviados;
+    
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "data_criacao", nullable = false)
+    public Date dataCriacao;
+    
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "data_processamento")
+    public Date dataProcessamento;
+    
+    /**
+     * Número de tentativas de expansão que falharam.
+     */
+    @Column(nullable = false)
+    public int tentativas;
+    
+    /**
+     * Data a partir da qual o evento volta a ser processado após uma falha.
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "proxima_tentativa")
+    public Date proximaTentativa;
+    
+    @Column(name = "ultimo_erro", length = 1000)
+    public String ultimoErro;
+    
+    /**
+     * Indica que as tentativas se esgotaram e o evento não é mais processado.
+     */
+    @Column(nullable = false)
+    public boolean falhou;
+    
+    public EventoCaixaSaida() {
+        this.dataCriacao = new Date();
+    }
+}
@@ -94,7 +94,7 @@ public class Lance extends PanacheEntity {
     
     // Métodos estáticos para consultas frequentes
     public static Lance menorLanceDoLeilao(Leilao leilao) {
-        return find("leilao = ?1 ORDER BY valor ASC", leilao).firstResult();
+        return find("leilao = ?1 AND status <> ?2 ORDER BY valor ASC, dataCriacao ASC", leilao, Status.CANCELADO).firstResult();
     }
     
     public static Lance ultimoLanceDoFornecedor(Leilao leilao, Usuario fornecedor) {
@@ -154,21 +154,4 @@ public class Lance extends PanacheEntity {
         this.vencedor = true;
         this.persist();
     }
-
-    /**
-     * Retorna a posição deste lance no ranking do leilão.
-     * A posição é determinada pelo valor do lance, onde o menor valor tem a melhor posição.
-     * 
-     * @return Posição no ranking (1 é a melhor posição)
-     */
-    public int getPosicaoRanking() {
-        if (leilao == null || leilao.lances == null || leilao.lances.isEmpty()) {
-            return 1;
-        }
-        
-        // Conta quantos lances não cancelados têm valor menor que este
-        return (int) leilao.lances.stream()
-            .filter(l -> l.status != Status.CANCELADO && l.valor.compareTo(this.valor) < 0)
-            .count() + 1;
-    }
 }
@@ -0,0 +1,75 @@
+package model;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+/**
+ * Lance automático (proxy) de um fornecedor em um leilão.
+ * Sempre que o fornecedor é superado, o sistema dá um novo lance por ele, reduzindo o valor
+ * pelo decremento informado, até o valor mínimo aceito pelo fornecedor.
+ */
+@Entity
+@Table(name = "lances_automaticos")
+public class LanceAutomatico extends PanacheEntity {
+    
+    @ManyToOne
+    @JoinColumn(name = "leilao_id", nullable = false)
+    @NotNull(message = "O leilão é obrigatório")
+    public Leilao leilao;
+    
+    @ManyToOne
+    @JoinColumn(name = "fornecedor_id", nullable = false)
+    @NotNull(message = "O fornecedor é obrigatório")
+    public Usuario fornecedor;
+    
+    @Column(name = "valor_minimo", nullable = false)
+    @NotNull(message = "O valor mínimo é obrigatório")
+    @Positive(message = "O valor mínimo deve ser maior que zero")
+    public BigDecimal valorMinimo;
+    
+    @Column(nullable = false)
+    @NotNull(message = "O decremento é obrigatório")
+    @Positive(message = "O decremento deve ser maior que zero")
+    public BigDecimal decremento;
+    
+    @Column(name = "condicoes_entrega")
+    public String condicoesEntrega;
+    
+    @Column(name = "prazo_entrega")
+    public Integer prazoEntrega;
+    
+    @Column(name = "prazo_pagamento")
+    public Integer prazoPagamento;
+    
+    @Column(nullable = false)
+    public boolean ativo = true;
+    
+    @Column(name = "data_criacao", nullable = false)
+    public Date dataCriacao;
+    
+    @Column(name = "data_atualizacao")
+    public Date dataAtualizacao;
+    
+    public LanceAutomatico() {
+        this.dataCriacao = new Date();
+    }
+    
+    // Métodos estáticos para consultas frequentes
+    public static List<LanceAutomatico> listarAtivosPorLeilao(Long leilaoId) {
+        return list("leilao.id = ?1 AND ativo = true ORDER BY id", leilaoId);
+    }
+    
+    public static LanceAutomatico buscarAtivo(Leilao leilao, Usuario fornecedor) {
+        return find("leilao = ?1 AND fornecedor = ?2 AND ativo = true", leilao, fornecedor).firstResult();
+    }
+}
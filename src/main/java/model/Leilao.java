@@ -6,7 +6,6 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -23,6 +22,8 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
+import jakarta.persistence.JoinTable;
+import jakarta.persistence.ManyToMany;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
@@ -36,12 +37,12 @@ import lombok.Setter;
 @Getter
 @Setter
 public class Leilao extends PanacheEntity {
-
+    
     public Date dataCancelamento;
     @ManyToOne
     @JoinColumn(name = "lance_vencedor_id")
     public Lance lanceVencedor;
-
+    
     public enum TipoLeilao {
         ABERTO,  // Qualquer fornecedor cadastrado pode participar
         FECHADO  // Apenas fornecedores convidados podem participar
@@ -123,11 +124,20 @@ public class Leilao extends PanacheEntity {
     public FormaPagamento formaPagamento;
     
     public Integer quantidade;
-
+    
     @ManyToOne
     @JoinColumn(name = "categoria_id")
     public Categoria categoria;
-
+    
+    // Áreas de atuação do leilão; leilões abertos são divulgados aos fornecedores dessas áreas
+    @ManyToMany
+    @JoinTable(
+        name = "leilao_areas",
+        joinColumns = @JoinColumn(name = "leilao_id"),
+        inverseJoinColumns = @JoinColumn(name = "area_id")
+    )
+    public List<AreaAtuacao> areasAtuacao = new ArrayList<>();
+    
     @Column(name = "unidade_medida")
     public String unidadeMedida;
     
@@ -223,44 +233,38 @@ public class Leilao extends PanacheEntity {
         }
     }
     
+    /**
+     * Retorna o menor lance válido do leilão, consultado no banco sem carregar a lista de lances.
+     * 
+     * @return Menor lance, ou null se não houver lances válidos
+     */
     public Lance getMenorLance() {
-        if (lances == null || lances.isEmpty()) {
-            return null;
-        }
-        return lances.stream()
-            .filter(l -> l.status != Lance.Status.CANCELADO)
-            .min(Comparator.comparing(Lance::getValor))
-            .orElse(null);
+        return Lance.find("leilao = ?1 AND status <> ?2 ORDER BY valor ASC, dataCriacao ASC",
+            this, Lance.Status.CANCELADO).firstResult();
     }
     
     /**
-     * Retorna o total de lances no leilão.
+     * Retorna o total de lances válidos no leilão, contado no banco.
      * 
      * @return Número total de lances
      */
     public int getTotalLances() {
-        if (lances == null || lances.isEmpty()) {
-            return 0;
-        }
-        return (int) lances.stream()
-            .filter(l -> l.status != Lance.Status.CANCELADO)
-            .count();
+        return (int) Lance.count("leilao = ?1 AND status <> ?2", this, Lance.Status.CANCELADO);
     }
     
     /**
-     * Retorna o total de fornecedores únicos que deram lances no leilão.
+     * Retorna o total de fornecedores únicos com lances válidos no leilão, contado no banco.
      * 
      * @return Número total de fornecedores
      */
     public int getTotalFornecedores() {
-        if (lances == null || lances.isEmpty()) {
-            return 0;
-        }
-        return (int) lances.stream()
-            .filter(l -> l.status != Lance.Status.CANCELADO)
-            .map(l -> l.fornecedor)
-            .distinct()
-            .count();
+        return getEntityManager()
+            .createQuery("SELECT COUNT(DISTINCT l.fornecedor.id) FROM Lance l WHERE l.leilao = ?1 AND l.status <> ?2",
+                Long.class)
+            .setParameter(1, this)
+            .setParameter(2, Lance.Status.CANCELADO)
+            .getSingleResult()
+            .intValue();
     }
     
     public boolean isConvidado(Usuario fornecedor) {
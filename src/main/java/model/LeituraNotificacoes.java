@@ -0,0 +1,52 @@
+package model;
+
+import java.util.Date;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+
+/**
+ * Marca de leitura das notificações de um usuário.
+ * Todas as notificações com data de envio até {@link #lidasAte} são consideradas lidas; depois da
+ * marca, a leitura é registrada individualmente em {@link Notificacao#lida}. A marca compara pela
+ * data de envio, e não pelo ID: os IDs são reservados antes da confirmação, e uma notificação
+ * confirmada depois da marca poderia ter ID menor que ela.
+ */
+@Entity
+@Table(name = "notificacoes_leitura")
+public class LeituraNotificacoes extends PanacheEntityBase {
+    
+    @Id
+    @Column(name = "usuario_id")
+    public Long usuarioId;
+    
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "lidas_ate", nullable = false)
+    public Date lidasAte;
+    
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "data_leitura", nullable = false)
+    public Date dataLeitura;
+    
+    /**
+     * Condição JPQL das notificações não lidas do usuário informado em ?1.
+     * Sem marca de leitura, a subconsulta é vazia e a comparação com ALL é verdadeira.
+     */
+    public static final String NAO_LIDAS = "usuario.id = ?1 AND lida = false AND dataEnvio > ALL "
+        + "(SELECT l.lidasAte FROM LeituraNotificacoes l WHERE l.usuarioId = ?1)";
+    
+    /**
+     * Indica se uma notificação está coberta pela marca de leitura.
+     * 
+     * @param notificacao Notificação do usuário
+     * @return true se a notificação foi enviada até a marca
+     */
+    public boolean cobre(Notificacao notificacao) {
+        return !notificacao.dataEnvio.after(lidasAte);
+    }
+}
@@ -47,7 +47,9 @@ public class Notificacao extends PanacheEntity {
     public Date dataEnvio;
     
     /**
-     * Indica se a notificação foi lida.
+     * Indica se a notificação foi lida individualmente.
+     * Notificações até a marca de leitura do usuário ({@link LeituraNotificacoes}) são lidas
+     * mesmo com este campo falso.
      */
     @Column(nullable = false)
     public boolean lida;
@@ -65,6 +67,18 @@ public class Notificacao extends PanacheEntity {
     @Column
     public TipoNotificacao tipo = TipoNotificacao.SISTEMA;
     
+    /**
+     * Leilão a que a notificação se refere, usado para agrupar avisos do mesmo leilão.
+     */
+    @ManyToOne
+    public Leilao leilao;
+    
+    /**
+     * Número de ocorrências agrupadas na notificação.
+     */
+    @Column(nullable = false)
+    public int ocorrencias = 1;
+    
     /**
      * Enumeration com os tipos de notificação.
      */
@@ -92,6 +106,11 @@ public class Notificacao extends PanacheEntity {
         /**
          * Notificação de usuário.
          */
-        USUARIO
+        USUARIO,
+        
+        /**
+         * Aviso de lance superado, agrupado por fornecedor e leilão.
+         */
+        LANCE_SUPERADO
     }
 }
@@ -0,0 +1,120 @@
+package resource;
+
+import java.util.logging.Logger;
+
+import io.quarkus.websockets.next.CloseReason;
+import io.quarkus.websockets.next.InboundProcessingMode;
+import io.quarkus.websockets.next.OnOpen;
+import io.quarkus.websockets.next.OnTextMessage;
+import io.quarkus.websockets.next.UserData;
+import io.quarkus.websockets.next.WebSocket;
+import io.quarkus.websockets.next.WebSocketConnection;
+import jakarta.inject.Inject;
+
+import dto.ComandoLanceDTO;
+import dto.RespostaLanceDTO;
+import exception.BusinessException;
+import model.Lance;
+import model.Leilao;
+import model.Usuario;
+import service.AcessoWebSocketService;
+import service.LanceService;
+import service.LivroOfertas;
+import service.LivroOfertasService;
+
+/**
+ * Canal WebSocket para envio de lances.
+ * O fornecedor abre a conexão com um bilhete obtido em {@code /lances/bilhete} e envia comandos
+ * para dar, atualizar e cancelar lances, recebendo para cada um a confirmação ou a recusa com
+ * sua nova posição no ranking. Os comandos de uma conexão são processados em paralelo; a
+ * resposta traz o ID do comando para que o cliente associe cada resposta ao seu pedido.
+ */
+@WebSocket(path = "/ws/lances/{bilhete}", inboundProcessingMode = InboundProcessingMode.CONCURRENT)
+public class LancesWebSocket {
+    
+    private static final Logger LOGGER = Logger.getLogger(LancesWebSocket.class.getName());
+    
+    // Código de fechamento "policy violation" (RFC 6455)
+    private static final int CODIGO_ACESSO_NEGADO = 1008;
+    
+    private static final UserData.TypedKey<Long> FORNECEDOR_ID = UserData.TypedKey.forLong("fornecedorId");
+    
+    @Inject
+    WebSocketConnection connection;
+    
+    @Inject
+    AcessoWebSocketService acessoWebSocketService;
+    
+    @Inject
+    LanceService lanceService;
+    
+    @Inject
+    LivroOfertasService livroOfertasService;
+    
+    @OnOpen
+    public void aoAbrir() {
+        Long usuarioId = acessoWebSocketService.consumirBilhete(connection.pathParam("bilhete"));
+        Usuario usuario = usuarioId != null ? Usuario.findById(usuarioId) : null;
+        
+        if (usuario == null || usuario.tipoUsuario != Usuario.TipoUsuario.FORNECEDOR) {
+            LOGGER.warning("Conexão WebSocket recusada: bilhete inválido ou usuário não é fornecedor");
+            connection.closeAndAwait(new CloseReason(CODIGO_ACESSO_NEGADO, "Acesso negado"));
+            return;
+        }
+        
+        connection.userData().put(FORNECEDOR_ID, usuario.id);
+    }
+    
+    @OnTextMessage
+    public RespostaLanceDTO aoReceber(ComandoLanceDTO comando) {
+        Long fornecedorId = connection.userData().get(FORNECEDOR_ID);
+        if (fornecedorId == null) {
+            return RespostaLanceDTO.recusado(comando.id(), "Acesso negado");
+        }
+        
+        try {
+            Usuario fornecedor = Usuario.findById(fornecedorId);
+            if (comando.acao() == null) {
+                throw new BusinessException("Ação do comando não informada");
+            }
+            
+            Lance lance = switch (comando.acao()) {
+                case DAR -> {
+                    Leilao leilao = comando.leilaoId() != null ? Leilao.findById(comando.leilaoId()) : null;
+                    if (leilao == null) {
+                        throw new BusinessException("Leilão não encontrado");
+                    }
+                    if (comando.valor() == null) {
+                        throw new BusinessException("O valor do lance é obrigatório");
+                    }
+                    yield lanceService.criarLance(leilao, fornecedor, comando.valor(),
+                        comando.condicoesEntrega(), comando.prazoEntrega(), comando.prazoPagamento());
+                }
+                case ATUALIZAR -> {
+                    if (comando.lanceId() == null || comando.valor() == null) {
+                        throw new BusinessException("Lance e valor são obrigatórios");
+                    }
+                    yield lanceService.atualizarLance(comando.lanceId(), comando.valor(),
+                        comando.condicoesEntrega(), comando.prazoEntrega(), comando.prazoPagamento(), fornecedor);
+                }
+                case CANCELAR -> {
+                    if (comando.lanceId() == null) {
+                        throw new BusinessException("Lance não informado");
+                    }
+                    yield lanceService.cancelarLance(comando.lanceId(), comando.motivo(), fornecedor);
+                }
+            };
+            
+            // Posição e melhor oferta após o comando, direto do livro de ofertas
+            LivroOfertas livro = livroOfertasService.obter(lance.leilao);
+            Integer posicao = livro != null ? livro.posicaoFornecedor(fornecedorId) : null;
+            return new RespostaLanceDTO(comando.id(), true, "Comando processado com sucesso", lance.id,
+                posicao, livro != null ? livro.valorMelhorOferta() : null);
+        } catch (BusinessException e) {
+            return RespostaLanceDTO.recusado(comando.id(), e.getMessage());
+        } catch (Exception e) {
+            LOGGER.severe("Erro ao processar comando de lance: " + e.getMessage());
+            return RespostaLanceDTO.recusado(comando.id(), "Erro ao processar comando");
+        }
+    }
+}
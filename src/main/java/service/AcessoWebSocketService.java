@@ -0,0 +1,73 @@
+package service;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import model.Usuario;
+
+/**
+ * Serviço que emite bilhetes de acesso para conexões WebSocket.
+ * A autenticação da aplicação fica na sessão HTTP, que não está disponível no WebSocket;
+ * por isso o usuário logado obtém um bilhete de uso único e curta duração, que é
+ * apresentado na abertura da conexão.
+ */
+@ApplicationScoped
+public class AcessoWebSocketService {
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.websocket.bilhete.validade-segundos", defaultValue = "30")
+    long validadeSegundos;
+    
+    private record Bilhete(Long usuarioId, long expiracao) {
+    }
+    
+    private final SecureRandom random = new SecureRandom();
+    
+    private final Map<String, Bilhete> bilhetes = new ConcurrentHashMap<>();
+    
+    /**
+     * Emite um bilhete de acesso para o usuário.
+     * 
+     * @param usuario Usuário logado
+     * @return Bilhete de acesso
+     */
+    public String emitirBilhete(Usuario usuario) {
+        removerExpirados();
+        
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        String codigo = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        
+        bilhetes.put(codigo, new Bilhete(usuario.id, System.currentTimeMillis() + validadeSegundos * 1000));
+        return codigo;
+    }
+    
+    /**
+     * Consome um bilhete de acesso. Cada bilhete só pode ser usado uma vez.
+     * 
+     * @param codigo Bilhete apresentado
+     * @return ID do usuário ou null se o bilhete for inválido ou estiver expirado
+     */
+    public Long consumirBilhete(String codigo) {
+        if (codigo == null) {
+            return null;
+        }
+        
+        Bilhete bilhete = bilhetes.remove(codigo);
+        if (bilhete == null || bilhete.expiracao() < System.currentTimeMillis()) {
+            return null;
+        }
+        return bilhete.usuarioId();
+    }
+    
+    private void removerExpirados() {
+        long agora = System.currentTimeMillis();
+        bilhetes.values().removeIf(bilhete -> bilhete.expiracao() < agora);
+    }
+}
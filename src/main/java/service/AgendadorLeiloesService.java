@@ -0,0 +1,342 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.interceptor.Interceptor;
+import jakarta.persistence.TypedQuery;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import model.Leilao;
+import util.RodaTemporizacao;
+
+/**
+ * Serviço que executa as transições de status dos leilões no horário: {@code AGENDADO → ABERTO}
+ * em {@code dataInicio} e {@code ABERTO → ENCERRADO → CONCLUIDO} em {@code dataFim}.
+ * 
+ * Os prazos ficam em uma {@link RodaTemporizacao} hierárquica com tick de 1 ms, carregada do banco
+ * na inicialização. Uma única thread dorme até o próximo vencimento; as transições que vencem
+ * juntas são aplicadas com um UPDATE em lote por tipo. Cada UPDATE só altera leilões que ainda
+ * estão no status de origem e cujo prazo já passou, e devolve os IDs alterados; assim um prazo
+ * obsoleto (leilão cancelado ou com data alterada) não tem efeito e nenhuma transição é aplicada
+ * duas vezes, mesmo após um reinício ou com mais de uma instância da aplicação.
+ */
+@ApplicationScoped
+public class AgendadorLeiloesService {
+    
+    private static final Logger LOGGER = Logger.getLogger(AgendadorLeiloesService.class.getName());
+    
+    // Tamanho máximo da lista de IDs em cada UPDATE
+    private static final int TAMANHO_LOTE = 500;
+    
+    @Inject
+    FinalizacaoLeiloesService finalizacaoService;
+    
+    @Inject
+    LivroOfertasService livroOfertasService;
+    
+    @Inject
+    IndiceFacetasLeiloesService indiceFacetas;
+    
+    @Inject
+    SequenciadorLances sequenciador;
+    
+    @Inject
+    TransacoesService transacoes;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.leiloes.agendador.baldes", defaultValue = "64")
+    int baldes;
+    
+    /**
+     * Transição agendada para um leilão.
+     */
+    record Transicao(Long leilaoId, Tipo tipo) {
+        
+        enum Tipo {
+            ABERTURA,     // AGENDADO → ABERTO em dataInicio
+            ENCERRAMENTO  // ABERTO → ENCERRADO em dataFim
+        }
+    }
+    
+    private record Pedido(long prazo, Transicao transicao, boolean cancelamento) {
+    }
+    
+    // Pedidos de agendamento e de cancelamento repassados à thread do agendador, dona da roda
+    private final LinkedBlockingQueue<Pedido> pedidos = new LinkedBlockingQueue<>();
+    
+    private volatile boolean ativo;
+    
+    private Thread thread;
+    
+    /**
+     * Carrega os prazos pendentes do banco e inicia a thread do agendador.
+     * Executa depois dos demais observadores de inicialização, para incluir leilões criados por eles.
+     */
+    void aoIniciar(@Observes @Priority(Interceptor.Priority.LIBRARY_AFTER) StartupEvent ev) {
+        List<Long> encerrados = QuarkusTransaction.requiringNew().call(() -> {
+            for (Object[] linha : listar("SELECT l.id, l.dataInicio FROM Leilao l WHERE l.status = ?1",
+                    Leilao.Status.AGENDADO)) {
+                agendar((Long) linha[0], Transicao.Tipo.ABERTURA, (Date) linha[1]);
+            }
+            for (Object[] linha : listar("SELECT l.id, l.dataFim FROM Leilao l WHERE l.status = ?1",
+                    Leilao.Status.ABERTO)) {
+                agendar((Long) linha[0], Transicao.Tipo.ENCERRAMENTO, (Date) linha[1]);
+            }
+            return Leilao.getEntityManager()
+                .createQuery("SELECT l.id FROM Leilao l WHERE l.status = ?1", Long.class)
+                .setParameter(1, Leilao.Status.ENCERRADO)
+                .getResultList();
+        });
+        
+        LOGGER.info("Agendador de leilões iniciado. Prazos pendentes: " + pedidos.size()
+            + ", Leilões a finalizar: " + encerrados.size());
+        
+        ativo = true;
+        thread = new Thread(this::executar, "agendador-leiloes");
+        thread.setDaemon(true);
+        thread.start();
+        
+        // Leilões encerrados antes de um reinício, mas ainda não concluídos
+        finalizar(encerrados);
+    }
+    
+    void aoEncerrar(@Observes ShutdownEvent ev) {
+        ativo = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+    
+    /**
+     * Agenda as transições pendentes de um leilão conforme o seu status atual.
+     * 
+     * @param leilao Leilão publicado ou com datas alteradas
+     */
+    public void agendar(Leilao leilao) {
+        if (leilao == null || leilao.id == null) {
+            return;
+        }
+        
+        if (leilao.status == Leilao.Status.AGENDADO) {
+            agendar(leilao.id, Transicao.Tipo.ABERTURA, leilao.dataInicio);
+        } else if (leilao.status == Leilao.Status.ABERTO) {
+            agendar(leilao.id, Transicao.Tipo.ENCERRAMENTO, leilao.dataFim);
+        }
+    }
+    
+    /**
+     * Retira da roda as transições agendadas de um leilão cancelado, após a confirmação da
+     * transação atual. Um prazo que não estiver mais na roda (por exemplo, após uma prorrogação)
+     * continua sem efeito, pois o UPDATE da transição não altera leilões cancelados.
+     * 
+     * @param leilao Leilão cancelado
+     */
+    public void cancelar(Leilao leilao) {
+        if (leilao == null || leilao.id == null) {
+            return;
+        }
+        
+        Long leilaoId = leilao.id;
+        Date dataInicio = leilao.dataInicio;
+        Date dataFim = leilao.dataFim;
+        transacoes.aposConfirmar(() -> {
+            cancelar(leilaoId, Transicao.Tipo.ABERTURA, dataInicio);
+            cancelar(leilaoId, Transicao.Tipo.ENCERRAMENTO, dataFim);
+        });
+    }
+    
+    private void agendar(Long leilaoId, Transicao.Tipo tipo, Date prazo) {
+        if (prazo != null) {
+            pedidos.add(new Pedido(prazo.getTime(), new Transicao(leilaoId, tipo), false));
+        }
+    }
+    
+    private void cancelar(Long leilaoId, Transicao.Tipo tipo, Date prazo) {
+        if (prazo != null) {
+            pedidos.add(new Pedido(prazo.getTime(), new Transicao(leilaoId, tipo), true));
+        }
+    }
+    
+    /**
+     * Laço da thread do agendador: recebe novos prazos, avança a roda e aplica as transições vencidas.
+     */
+    private void executar() {
+        RodaTemporizacao<Transicao> roda = new RodaTemporizacao<>(1, baldes, System.currentTimeMillis());
+        List<Transicao> vencidas = new ArrayList<>();
+        
+        while (ativo) {
+            try {
+                long espera = roda.proximoVencimento() - System.currentTimeMillis();
+                Pedido pedido = espera > 0
+                    ? pedidos.poll(Math.min(espera, TimeUnit.HOURS.toMillis(1)), TimeUnit.MILLISECONDS)
+                    : pedidos.poll();
+                
+                while (pedido != null) {
+                    if (pedido.cancelamento()) {
+                        roda.cancelar(pedido.prazo(), pedido.transicao());
+                    } else if (!roda.agendar(pedido.prazo(), pedido.transicao())) {
+                        vencidas.add(pedido.transicao());
+                    }
+                    pedido = pedidos.poll();
+                }
+                
+                roda.avancar(System.currentTimeMillis(), vencidas::add);
+                
+                if (!vencidas.isEmpty()) {
+                    aplicar(vencidas);
+                    vencidas.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.severe("Erro no agendador de leilões: " + e.getMessage());
+                vencidas.clear();
+            }
+        }
+    }
+    
+    /**
+     * Aplica as transições vencidas com um UPDATE em lote por tipo.
+     * 
+     * @param transicoes Transições vencidas
+     */
+    private void aplicar(List<Transicao> transicoes) {
+        List<Long> aberturas = new ArrayList<>();
+        List<Long> encerramentos = new ArrayList<>();
+        for (Transicao transicao : transicoes) {
+            (transicao.tipo() == Transicao.Tipo.ABERTURA ? aberturas : encerramentos).add(transicao.leilaoId());
+        }
+        
+        for (List<Long> lote : lotes(aberturas)) {
+            List<Long> abertos = atualizarStatus(lote, Leilao.Status.AGENDADO, Leilao.Status.ABERTO, "data_inicio");
+            if (abertos.isEmpty()) {
+                continue;
+            }
+            LOGGER.info("Leilões abertos: " + abertos);
+            
+            // Leilões abertos passam a aguardar o encerramento
+            QuarkusTransaction.requiringNew().run(() -> {
+                for (Object[] linha : listar("SELECT l.id, l.dataFim FROM Leilao l WHERE l.id IN ?1", abertos)) {
+                    agendar((Long) linha[0], Transicao.Tipo.ENCERRAMENTO, (Date) linha[1]);
+                }
+            });
+        }
+        
+        // O prazo vigente fica no livro de ofertas: leilões prorrogados (soft close) voltam
+        // para a roda com o novo prazo, e os demais são encerrados na faixa do leilão
+        long agora = System.currentTimeMillis();
+        List<Long> vencidos = new ArrayList<>();
+        for (Long leilaoId : encerramentos) {
+            LivroOfertas livro = livroOfertasService.obterCarregado(leilaoId);
+            if (livro != null && !sequenciador.executar(leilaoId, () -> livro.encerrar(agora))) {
+                agendar(leilaoId, Transicao.Tipo.ENCERRAMENTO, new Date(livro.getPrazoEncerramento()));
+            } else {
+                vencidos.add(leilaoId);
+            }
+        }
+        
+        for (List<Long> lote : lotes(vencidos)) {
+            List<Long> encerrados = encerrar(lote);
+            if (!encerrados.isEmpty()) {
+                LOGGER.info("Leilões encerrados: " + encerrados);
+            }
+            
+            encerrados.forEach(livroOfertasService::encerrar);
+            finalizar(encerrados);
+            
+            if (encerrados.size() < lote.size()) {
+                reagendarAbertos(lote.stream().filter(id -> !encerrados.contains(id)).toList());
+            }
+        }
+    }
+    
+    private List<Long> encerrar(List<Long> ids) {
+        try {
+            return atualizarStatus(ids, Leilao.Status.ABERTO, Leilao.Status.ENCERRADO, "data_fim");
+        } catch (Exception e) {
+            LOGGER.severe("Erro ao encerrar leilões " + ids + ": " + e.getMessage());
+            return List.of();
+        }
+    }
+    
+    /**
+     * Reagenda o encerramento de leilões que continuam abertos (prazo prorrogado e gravado
+     * no banco, ou falha ao encerrar), descartando seus livros para recarregar o prazo gravado.
+     * 
+     * @param ids IDs dos leilões
+     */
+    private void reagendarAbertos(List<Long> ids) {
+        ids.forEach(livroOfertasService::descartar);
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (Object[] linha : listar("SELECT l.id, l.dataFim FROM Leilao l WHERE l.id IN ?1 AND l.status = ?2",
+                    ids, Leilao.Status.ABERTO)) {
+                agendar((Long) linha[0], Transicao.Tipo.ENCERRAMENTO, (Date) linha[1]);
+            }
+        });
+    }
+    
+    /**
+     * Muda o status dos leilões do lote que ainda estão no status de origem e cujo prazo já passou.
+     * Os leilões são travados em ordem de ID, como na gravação dos lotes de lances; o UPDATE
+     * espera os lotes em andamento, e assim a apuração do vencedor vê todos os lances aceitos.
+     * 
+     * @return IDs dos leilões efetivamente alterados
+     */
+    @SuppressWarnings("unchecked")
+    private List<Long> atualizarStatus(List<Long> ids, Leilao.Status origem, Leilao.Status destino, String colunaPrazo) {
+        List<Long> alterados = QuarkusTransaction.requiringNew().call(() -> {
+            List<Number> linhas = Leilao.getEntityManager().createNativeQuery(
+                    "UPDATE leiloes SET status = :destino, data_atualizacao = :agora WHERE id IN ("
+                    + "SELECT id FROM leiloes WHERE id IN (:ids) AND status = :origem AND " + colunaPrazo + " <= :agora "
+                    + "ORDER BY id FOR UPDATE) RETURNING id")
+                .setParameter("destino", destino.name())
+                .setParameter("origem", origem.name())
+                .setParameter("agora", new Date())
+                .setParameter("ids", ids)
+                .getResultList();
+            return linhas.stream().map(Number::longValue).toList();
+        });
+        indiceFacetas.atualizarStatus(alterados, destino);
+        return alterados;
+    }
+    
+    /**
+     * Conclui os leilões encerrados, definindo os vencedores e notificando os participantes.
+     */
+    private void finalizar(List<Long> leilaoIds) {
+        try {
+            finalizacaoService.finalizar(leilaoIds);
+        } catch (Exception e) {
+            LOGGER.severe("Erro ao finalizar leilões " + leilaoIds + ": " + e.getMessage());
+        }
+    }
+    
+    private static List<Object[]> listar(String jpql, Object... parametros) {
+        TypedQuery<Object[]> query = Leilao.getEntityManager().createQuery(jpql, Object[].class);
+        for (int i = 0; i < parametros.length; i++) {
+            query.setParameter(i + 1, parametros[i]);
+        }
+        return query.getResultList();
+    }
+    
+    private static List<List<Long>> lotes(List<Long> ids) {
+        List<List<Long>> lotes = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += TAMANHO_LOTE) {
+            lotes.add(ids.subList(i, Math.min(ids.size(), i + TAMANHO_LOTE)));
+        }
+        return lotes;
+    }
+}
@@ -22,6 +22,9 @@ public class AutenticacaoService {
     @Inject
     HttpServletRequest request;
     
+    @Inject
+    LeilaoService leilaoService;
+    
     /**
      * Realiza o login de um usuário.
      * 
@@ -147,7 +150,7 @@ public class AutenticacaoService {
         // Fornecedor pode visualizar leilões abertos ou que foi convidado
         if (usuario.tipoUsuario == Usuario.TipoUsuario.FORNECEDOR) {
             if (acao.equals("visualizar")) {
-                return leilao.tipoLeilao == Leilao.TipoLeilao.ABERTO || leilao.isConvidado(usuario);
+                return leilao.tipoLeilao == Leilao.TipoLeilao.ABERTO || leilaoService.isConvidado(leilao, usuario);
             }
         }
         
@@ -4,6 +4,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.logging.Logger;
 
+import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
@@ -11,8 +12,10 @@ import jakarta.transaction.Transactional;
 import model.Avaliacao;
 import model.Leilao;
 import model.Usuario;
+import dto.PaginatedResponse;
 import exception.BusinessException;
 import util.ExceptionUtil;
+import util.PageCursor;
 
 /**
  * Serviço responsável por gerenciar as avaliações entre usuários após leilões.
@@ -26,6 +29,12 @@ public class AvaliacaoService {
     @Inject
     NotificacaoService notificacaoService;
     
+    @Inject
+    LeilaoService leilaoService;
+    
+    @Inject
+    PaginationService paginationService;
+    
     /**
      * Busca uma avaliação pelo ID.
      * 
@@ -66,6 +75,59 @@ public class AvaliacaoService {
         }
     }
     
+    /**
+     * Lista as avaliações feitas por um usuário com paginação por cursor, da mais recente para a
+     * mais antiga.
+     * 
+     * @param avaliador Usuário avaliador
+     * @param cursor Cursor da página (vazio ou null para a primeira página)
+     * @param size Tamanho da página
+     * @return Resposta paginada com as avaliações e o cursor da página seguinte
+     */
+    public PaginatedResponse<Avaliacao> listarFeitasPorCursor(Usuario avaliador, String cursor, int size) {
+        return listarPorCursor("avaliador", avaliador, cursor, size);
+    }
+    
+    /**
+     * Lista as avaliações recebidas por um usuário com paginação por cursor, da mais recente para a
+     * mais antiga.
+     * 
+     * @param avaliado Usuário avaliado
+     * @param cursor Cursor da página (vazio ou null para a primeira página)
+     * @param size Tamanho da página
+     * @return Resposta paginada com as avaliações e o cursor da página seguinte
+     */
+    public PaginatedResponse<Avaliacao> listarRecebidasPorCursor(Usuario avaliado, String cursor, int size) {
+        return listarPorCursor("avaliado", avaliado, cursor, size);
+    }
+    
+    /**
+     * Busca uma página de avaliações de um usuário pela data da avaliação (ID como desempate),
+     * a partir do cursor. O total é contado uma vez e mantido em cache entre as páginas.
+     * 
+     * @param campo Campo do usuário na avaliação ("avaliador" ou "avaliado")
+     */
+    private PaginatedResponse<Avaliacao> listarPorCursor(String campo, Usuario usuario, String cursor, int size) {
+        PageCursor posicao = PageCursor.decode(cursor);
+        try {
+            Sort ordem = Sort.descending("dataAvaliacao", "id");
+            var query = posicao == null
+                ? Avaliacao.<Avaliacao>find(campo + " = ?1", ordem, usuario)
+                : Avaliacao.<Avaliacao>find(campo + " = ?1 AND (dataAvaliacao < ?2 OR (dataAvaliacao = ?2 AND id < ?3))",
+                    ordem, usuario, posicao.getDate(0), posicao.getLong(1));
+            List<Avaliacao> avaliacoes = query.range(0, size).list();
+            
+            long total = paginationService.cachedCount("avaliacoes:" + campo + ":" + usuario.id,
+                () -> Avaliacao.count(campo, usuario));
+            return PaginatedResponse.ofCursor(avaliacoes, size, a -> PageCursor.of(a.dataAvaliacao, a.id), total, true);
+        } catch (BusinessException be) {
+            throw be;
+        } catch (Exception e) {
+            LOGGER.severe("Erro ao listar avaliações por cursor: " + e.getMessage());
+            throw new BusinessException("Erro ao listar avaliações");
+        }
+    }
+    
     /**
      * Calcula a média das notas recebidas por um usuário.
      * 
@@ -136,13 +198,13 @@ public class AvaliacaoService {
             // Casos permitidos:
             // 1. Comprador (criador do leilão) avaliando um fornecedor que participou
             if (avaliador.equals(leilao.criador) && avaliado.tipoUsuario == Usuario.TipoUsuario.FORNECEDOR) {
-                return leilao.temParticipacao(avaliado);
+                return leilaoService.temParticipacao(leilao, avaliado);
             }
             
             // 2. Fornecedor que participou avaliando o comprador (criador do leilão)
             if (avaliador.tipoUsuario == Usuario.TipoUsuario.FORNECEDOR && 
                 avaliado.equals(leilao.criador)) {
-                return leilao.temParticipacao(avaliador);
+                return leilaoService.temParticipacao(leilao, avaliador);
             }
             
             return false;
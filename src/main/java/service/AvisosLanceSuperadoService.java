@@ -0,0 +1,193 @@
+package service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import model.Lance;
+import model.Leilao;
+import model.Notificacao;
+import model.Usuario;
+
+/**
+ * Serviço que agrupa os avisos de lance superado.
+ * Os lances confirmados são acumulados em memória por leilão durante uma janela; ao fim da
+ * janela, os fornecedores superados de cada leilão são consultados uma única vez. Cada fornecedor
+ * tem no máximo um aviso pendente (não lido) por leilão: se já houver um, ele é atualizado no
+ * lugar com o melhor lance atual e o número de lances agrupados; caso contrário, é criado.
+ * Lances acumulados e ainda não avisados são perdidos se a aplicação parar abruptamente.
+ */
+@ApplicationScoped
+public class AvisosLanceSuperadoService {
+    
+    private static final Logger LOGGER = Logger.getLogger(AvisosLanceSuperadoService.class.getName());
+    
+    private static final String TITULO = "Seu lance foi superado";
+    
+    @Inject
+    CacheNotificacoesService cacheNotificacoes;
+    
+    @Inject
+    TransacoesService transacoes;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.notificacoes.lance-superado.janela-segundos", defaultValue = "10")
+    long janelaSegundos;
+    
+    /**
+     * Lances de um leilão acumulados na janela atual.
+     */
+    record Acumulado(BigDecimal melhorValor, int lances, String tituloLeilao) {
+        
+        Acumulado somar(Acumulado outro) {
+            BigDecimal melhor = outro.melhorValor().compareTo(melhorValor) < 0 ? outro.melhorValor() : melhorValor;
+            return new Acumulado(melhor, lances + outro.lances(), outro.tituloLeilao());
+        }
+    }
+    
+    private final Map<Long, Acumulado> acumulados = new ConcurrentHashMap<>();
+    
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+        Thread thread = new Thread(tarefa, "avisos-lance-superado");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @PostConstruct
+    void iniciar() {
+        executor.scheduleWithFixedDelay(this::avisarAcumulados, janelaSegundos, janelaSegundos, TimeUnit.SECONDS);
+    }
+    
+    @PreDestroy
+    void encerrar() {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(janelaSegundos, TimeUnit.SECONDS)) {
+                avisarAcumulados();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Registra um lance que pode ter superado outros fornecedores. Se houver uma transação ativa,
+     * o lance só é considerado depois da confirmação.
+     * 
+     * @param lance Lance novo ou atualizado
+     */
+    public void registrar(Lance lance) {
+        Long leilaoId = lance.leilao.id;
+        Acumulado acumulado = new Acumulado(lance.valor, 1, lance.leilao.titulo);
+        
+        transacoes.aposConfirmar(() -> acumulados.merge(leilaoId, acumulado, Acumulado::somar));
+    }
+    
+    /**
+     * Gera os avisos de todos os leilões com lances acumulados, um leilão por transação.
+     */
+    private void avisarAcumulados() {
+        for (Long leilaoId : acumulados.keySet()) {
+            Acumulado acumulado = acumulados.remove(leilaoId);
+            if (acumulado == null) {
+                continue;
+            }
+            
+            try {
+                QuarkusTransaction.requiringNew().run(() -> avisar(leilaoId, acumulado));
+            } catch (Exception e) {
+                LOGGER.severe("Erro ao avisar lances superados do leilão " + leilaoId + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Cria ou atualiza os avisos dos fornecedores cujo melhor lance é maior que o melhor lance da janela.
+     */
+    private void avisar(Long leilaoId, Acumulado acumulado) {
+        EntityManager em = Notificacao.getEntityManager();
+        
+        List<Long> superados = em.createQuery("SELECT l.fornecedor.id FROM Lance l "
+                + "WHERE l.leilao.id = ?1 AND l.cancelado = false "
+                + "GROUP BY l.fornecedor.id HAVING MIN(l.valor) > ?2", Long.class)
+            .setParameter(1, leilaoId)
+            .setParameter(2, acumulado.melhorValor())
+            .getResultList();
+        if (superados.isEmpty()) {
+            return;
+        }
+        
+        // Avisos ainda pendentes (não lidos, acima da marca de leitura) dos fornecedores superados
+        Map<Long, Notificacao> pendentes = em.createQuery("SELECT n FROM Notificacao n "
+                + "WHERE n.leilao.id = ?1 AND n.tipo = ?2 AND n.usuario.id IN ?3 AND n.lida = false "
+                + "AND n.dataEnvio > ALL (SELECT l.lidasAte FROM LeituraNotificacoes l WHERE l.usuarioId = n.usuario.id)",
+                Notificacao.class)
+            .setParameter(1, leilaoId)
+            .setParameter(2, Notificacao.TipoNotificacao.LANCE_SUPERADO)
+            .setParameter(3, superados)
+            .getResultStream()
+            .collect(Collectors.toMap(n -> n.usuario.id, Function.identity(), (a, b) -> a.id > b.id ? a : b));
+        
+        List<Notificacao> criadas = new ArrayList<>();
+        List<Notificacao> atualizadas = new ArrayList<>();
+        for (Long fornecedorId : superados) {
+            Notificacao aviso = pendentes.get(fornecedorId);
+            if (aviso != null) {
+                aviso.ocorrencias += acumulado.lances();
+                atualizadas.add(aviso);
+            } else {
+                aviso = new Notificacao();
+                aviso.usuario = em.getReference(Usuario.class, fornecedorId);
+                aviso.leilao = em.getReference(Leilao.class, leilaoId);
+                aviso.tipo = Notificacao.TipoNotificacao.LANCE_SUPERADO;
+                aviso.titulo = TITULO;
+                aviso.link = "/leiloes/" + leilaoId;
+                aviso.lida = false;
+                aviso.ocorrencias = acumulado.lances();
+                criadas.add(aviso);
+            }
+            aviso.mensagem = mensagem(aviso.ocorrencias, acumulado);
+        }
+        
+        // A data de envio é definida imediatamente antes do flush e da confirmação: a marca de leitura
+        // compara por ela, e um aviso confirmado depois de "marcar todas como lidas" fica acima da marca
+        Date envio = new Date();
+        criadas.forEach(aviso -> aviso.dataEnvio = envio);
+        atualizadas.forEach(aviso -> aviso.dataEnvio = envio);
+        
+        // Os INSERTs e UPDATEs são enviados em lote no flush (statement-batch-size)
+        criadas.forEach(em::persist);
+        em.flush();
+        
+        cacheNotificacoes.aoCriar(criadas);
+        cacheNotificacoes.aoAtualizar(atualizadas);
+        LOGGER.fine("Avisos de lance superado do leilão " + leilaoId + ": " + criadas.size()
+            + " criados, " + atualizadas.size() + " atualizados");
+    }
+    
+    private static String mensagem(int ocorrencias, Acumulado acumulado) {
+        String valor = String.format("%.2f", acumulado.melhorValor());
+        if (ocorrencias == 1) {
+            return "Um novo lance de R$ " + valor + " foi registrado no leilão " + acumulado.tituloLeilao();
+        }
+        return ocorrencias + " novos lances foram registrados no leilão " + acumulado.tituloLeilao()
+            + " desde que o seu lance foi superado. Melhor lance atual: R$ " + valor;
+    }
+}
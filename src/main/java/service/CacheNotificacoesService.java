@@ -0,0 +1,192 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import dto.NotificacaoDTO;
+import model.LeituraNotificacoes;
+import model.Notificacao;
+
+/**
+ * Cache, por usuário, do número de notificações não lidas e das notificações não lidas mais
+ * recentes, usado pelo contador e pelo menu de notificações do navbar. Considera a janela recente
+ * da caixa ({@link RetencaoNotificacoesService#inicioJanela()}).
+ * O cache é limitado e carregado do banco no primeiro acesso; depois disso é mantido pelas
+ * operações de criação e leitura de notificações, aplicadas somente após a confirmação da
+ * transação. A expiração por inatividade limita a divergência em caso de alterações feitas
+ * fora da aplicação. Cada alteração aplicada é publicada para as conexões abertas do usuário
+ * em {@link EventosNotificacoesService}.
+ */
+@ApplicationScoped
+public class CacheNotificacoesService {
+    
+    @Inject
+    TransacoesService transacoes;
+    
+    @Inject
+    EventosNotificacoesService eventosNotificacoes;
+    
+    @Inject
+    RetencaoNotificacoesService retencaoNotificacoes;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.notificacoes.cache.usuarios", defaultValue = "10000")
+    long maximoUsuarios;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.notificacoes.cache.recentes", defaultValue = "5")
+    int quantidadeRecentes;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.notificacoes.cache.expiracao-minutos", defaultValue = "30")
+    long expiracaoMinutos;
+    
+    /**
+     * Resumo das notificações não lidas de um usuário. Imutável; cada alteração gera um novo resumo.
+     * 
+     * @param naoLidas Número de notificações não lidas
+     * @param recentes Notificações não lidas mais recentes, da mais nova para a mais antiga
+     */
+    public record Resumo(long naoLidas, List<NotificacaoDTO> recentes) {
+    }
+    
+    private Cache<Long, Resumo> resumos;
+    
+    @PostConstruct
+    void iniciar() {
+        resumos = Caffeine.newBuilder()
+            .maximumSize(maximoUsuarios)
+            .expireAfterAccess(expiracaoMinutos, TimeUnit.MINUTES)
+            .build();
+    }
+    
+    /**
+     * Obtém o resumo das notificações não lidas de um usuário, carregando-o do banco se necessário.
+     * 
+     * @param usuarioId ID do usuário
+     * @return Resumo das notificações não lidas
+     */
+    public Resumo obter(Long usuarioId) {
+        return resumos.get(usuarioId, this::carregar);
+    }
+    
+    /**
+     * Registra notificações criadas, após a confirmação da transação atual.
+     * 
+     * @param notificacoes Notificações criadas
+     */
+    public void aoCriar(Collection<Notificacao> notificacoes) {
+        colocarNoTopo(notificacoes, 1);
+    }
+    
+    /**
+     * Registra notificações não lidas atualizadas no lugar (agrupadas), após a confirmação da
+     * transação atual. As notificações passam a ser as mais recentes, sem alterar o contador.
+     * 
+     * @param notificacoes Notificações atualizadas
+     */
+    public void aoAtualizar(Collection<Notificacao> notificacoes) {
+        colocarNoTopo(notificacoes, 0);
+    }
+    
+    private void colocarNoTopo(Collection<Notificacao> notificacoes, long incremento) {
+        if (notificacoes.isEmpty()) {
+            return;
+        }
+        List<NotificacaoDTO> novas = notificacoes.stream().map(NotificacaoDTO::fromEntity).toList();
+        List<Long> usuarios = notificacoes.stream().map(n -> n.usuario.id).toList();
+        
+        transacoes.aposConfirmar(() -> {
+            for (int i = 0; i < novas.size(); i++) {
+                NotificacaoDTO nova = novas.get(i);
+                Long usuarioId = usuarios.get(i);
+                Resumo atual = resumos.asMap().computeIfPresent(usuarioId, (id, resumo) -> {
+                    List<NotificacaoDTO> recentes = new ArrayList<>(resumo.recentes().size() + 1);
+                    recentes.add(nova);
+                    for (NotificacaoDTO recente : resumo.recentes()) {
+                        if (!recente.id().equals(nova.id())) {
+                            recentes.add(recente);
+                        }
+                    }
+                    if (recentes.size() > quantidadeRecentes) {
+                        recentes.remove(recentes.size() - 1);
+                    }
+                    return new Resumo(resumo.naoLidas() + incremento, List.copyOf(recentes));
+                });
+                eventosNotificacoes.publicar(usuarioId, atual);
+            }
+        });
+    }
+    
+    /**
+     * Registra a leitura de uma notificação, após a confirmação da transação atual.
+     * 
+     * @param usuarioId ID do usuário
+     * @param notificacaoId ID da notificação lida
+     */
+    public void aoMarcarComoLida(Long usuarioId, Long notificacaoId) {
+        transacoes.aposConfirmar(() -> {
+            Resumo atual = resumos.asMap().computeIfPresent(usuarioId, (id, resumo) -> {
+                List<NotificacaoDTO> recentes = resumo.recentes().stream()
+                    .filter(n -> !n.id().equals(notificacaoId))
+                    .toList();
+                long naoLidas = Math.max(0, resumo.naoLidas() - 1);
+                
+                // Se a lista ficou menor do que deveria, recarrega do banco no próximo acesso
+                if (recentes.size() < Math.min(quantidadeRecentes, naoLidas)) {
+                    return null;
+                }
+                return new Resumo(naoLidas, recentes);
+            });
+            eventosNotificacoes.publicar(usuarioId, atual);
+        });
+    }
+    
+    /**
+     * Registra a leitura das notificações de um usuário enviadas até uma data, após a confirmação
+     * da transação atual. As notificações posteriores continuam não lidas.
+     * 
+     * @param usuarioId ID do usuário
+     * @param lidasAte Data de envio da última notificação marcada como lida
+     * @param marcadas Número de notificações marcadas como lidas
+     */
+    public void aoMarcarTodasComoLidas(Long usuarioId, Date lidasAte, long marcadas) {
+        transacoes.aposConfirmar(() -> {
+            Resumo atual = resumos.asMap().computeIfPresent(usuarioId, (id, resumo) -> {
+                List<NotificacaoDTO> recentes = resumo.recentes().stream()
+                    .filter(n -> n.dataEnvio().after(lidasAte))
+                    .toList();
+                long naoLidas = Math.max(0, resumo.naoLidas() - marcadas);
+                
+                // Se a lista ficou menor do que deveria, recarrega do banco no próximo acesso
+                if (recentes.size() < Math.min(quantidadeRecentes, naoLidas)) {
+                    return null;
+                }
+                return new Resumo(naoLidas, recentes);
+            });
+            eventosNotificacoes.publicar(usuarioId, atual);
+        });
+    }
+    
+    // Conta apenas a janela recente da caixa, para não percorrer as partições antigas
+    private Resumo carregar(Long usuarioId) {
+        Date inicioJanela = retencaoNotificacoes.inicioJanela();
+        String naJanela = LeituraNotificacoes.NAO_LIDAS + " AND dataEnvio >= ?2";
+        long naoLidas = Notificacao.count(naJanela, usuarioId, inicioJanela);
+        List<Notificacao> recentes = naoLidas == 0 ? List.of()
+            : Notificacao.find(naJanela + " ORDER BY dataEnvio DESC, id DESC", usuarioId, inicioJanela)
+                .page(0, quantidadeRecentes)
+                .list();
+        return new Resumo(naoLidas, NotificacaoDTO.converterLista(recentes));
+    }
+}
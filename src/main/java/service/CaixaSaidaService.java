@@ -0,0 +1,376 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import model.Convite;
+import model.EventoCaixaSaida;
+import model.Leilao;
+import model.Notificacao;
+import model.Usuario;
+
+/**
+ * Caixa de saída (outbox) de notificações em massa.
+ * A operação de origem grava um único evento na sua própria transação; uma thread dedicada
+ * expande o evento em uma notificação por destinatário, em lotes gravados com INSERTs em lote
+ * via JDBC. O último destinatário processado é gravado junto com cada lote, de modo que a
+ * expansão é retomada do ponto em que parou após um reinício, sem notificações repetidas.
+ * Um evento cuja expansão falha é adiado com espera exponencial e os eventos seguintes continuam
+ * sendo processados; ao esgotar as tentativas, o evento é marcado como falho.
+ */
+@ApplicationScoped
+public class CaixaSaidaService {
+    
+    private static final Logger LOGGER = Logger.getLogger(CaixaSaidaService.class.getName());
+    
+    @Inject
+    MeterRegistry registry;
+    
+    @Inject
+    TransacoesService transacoes;
+    
+    @Inject
+    CacheNotificacoesService cacheNotificacoes;
+    
+    @Inject
+    IndiceFornecedoresService indiceFornecedores;
+    
+    @Inject
+    ParticipacaoLeiloesService participacoes;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.caixa-saida.lote", defaultValue = "1000")
+    int tamanhoLote;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.caixa-saida.intervalo-segundos", defaultValue = "5")
+    long intervaloSegundos;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.caixa-saida.tentativas", defaultValue = "6")
+    int maximoTentativas;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.caixa-saida.espera-inicial-segundos", defaultValue = "30")
+    long esperaInicialSegundos;
+    
+    // Sinal de novos eventos confirmados
+    private final Semaphore sinal = new Semaphore(0);
+    
+    // Eventos ainda não expandidos
+    private final AtomicLong pendentes = new AtomicLong();
+    
+    private Counter notificacoesGeradas;
+    
+    private Counter falhas;
+    
+    private Timer latenciaLote;
+    
+    private final Map<EventoCaixaSaida.Tipo, DistributionSummary> destinatariosPorTipo = new EnumMap<>(EventoCaixaSaida.Tipo.class);
+    
+    private volatile boolean ativo;
+    
+    private Thread thread;
+    
+    @PostConstruct
+    void iniciar() {
+        Gauge.builder("rev3rso.caixa-saida.pendentes", pendentes, AtomicLong::get)
+            .description("Eventos da caixa de saída aguardando expansão")
+            .register(registry);
+        notificacoesGeradas = Counter.builder("rev3rso.caixa-saida.notificacoes")
+            .description("Notificações geradas a partir da caixa de saída")
+            .register(registry);
+        falhas = Counter.builder("rev3rso.caixa-saida.falhas")
+            .description("Falhas na expansão de eventos da caixa de saída")
+            .register(registry);
+        latenciaLote = Timer.builder("rev3rso.caixa-saida.lote.latencia")
+            .description("Tempo de expansão de um lote de notificações")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+        for (EventoCaixaSaida.Tipo tipo : EventoCaixaSaida.Tipo.values()) {
+            destinatariosPorTipo.put(tipo, destinatarios(tipo));
+        }
+    }
+    
+    private DistributionSummary destinatarios(EventoCaixaSaida.Tipo tipo) {
+        return DistributionSummary.builder("rev3rso.caixa-saida.destinatarios")
+            .description("Destinatários notificados por evento da caixa de saída")
+            .tag("tipo", tipo.name())
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+    }
+    
+    /**
+     * Inicia a thread da caixa de saída, que retoma os eventos pendentes antes de um reinício.
+     */
+    void aoIniciar(@Observes StartupEvent ev) {
+        ativo = true;
+        thread = new Thread(this::executar, "caixa-saida");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    void aoEncerrar(@Observes ShutdownEvent ev) {
+        ativo = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+    
+    /**
+     * Registra um evento na caixa de saída. Deve ser chamado dentro da transação da operação
+     * de origem; o evento só é processado depois da confirmação.
+     * 
+     * @param tipo Tipo do evento, que define os destinatários
+     * @param leilao Leilão do evento
+     * @param titulo Título das notificações
+     * @param mensagem Mensagem das notificações
+     * @param link Link das notificações
+     * @return Evento registrado
+     */
+    public EventoCaixaSaida registrar(EventoCaixaSaida.Tipo tipo, Leilao leilao, String titulo, String mensagem, String link) {
+        EventoCaixaSaida evento = new EventoCaixaSaida();
+        evento.tipo = tipo;
+        evento.leilao = leilao;
+        evento.titulo = titulo;
+        evento.mensagem = mensagem;
+        evento.link = link;
+        evento.persist();
+        
+        transacoes.aposConfirmar(() -> sinal.release());
+        return evento;
+    }
+    
+    /**
+     * Laço da thread da caixa de saída: aguarda novos eventos (ou o intervalo de verificação)
+     * e expande todos os eventos pendentes.
+     */
+    private void executar() {
+        while (ativo) {
+            try {
+                sinal.tryAcquire(intervaloSegundos, TimeUnit.SECONDS);
+                sinal.drainPermits();
+                processarPendentes();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.severe("Erro ao processar caixa de saída: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void processarPendentes() {
+        List<Long> eventos = QuarkusTransaction.requiringNew().call(() ->
+            EventoCaixaSaida.getEntityManager()
+                .createQuery("SELECT e.id FROM EventoCaixaSaida e WHERE e.dataProcessamento IS NULL AND e.falhou = false "
+                    + "AND (e.proximaTentativa IS NULL OR e.proximaTentativa <= ?1) ORDER BY e.id", Long.class)
+                .setParameter(1, new Date())
+                .getResultList());
+        pendentes.set(eventos.size());
+        
+        for (Long eventoId : eventos) {
+            try {
+                while (ativo && QuarkusTransaction.requiringNew().call(() -> expandirLote(eventoId))) {
+                    // Continua até o último lote do evento
+                }
+            } catch (Exception e) {
+                // Adia só este evento; os seguintes não ficam presos atrás dele
+                falhar(eventoId, e);
+            }
+            pendentes.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Agenda uma nova tentativa do evento com espera exponencial (com variação aleatória de até 20%),
+     * ou marca o evento como falho se as tentativas se esgotaram. Os lotes já gravados são mantidos:
+     * a nova tentativa retoma do último destinatário notificado.
+     */
+    private void falhar(Long eventoId, Exception erro) {
+        String mensagem = erro.getMessage() != null ? erro.getMessage() : erro.getClass().getName();
+        String ultimoErro = mensagem.length() > 1000 ? mensagem.substring(0, 1000) : mensagem;
+        falhas.increment();
+        
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                EventoCaixaSaida evento = EventoCaixaSaida.findById(eventoId, LockModeType.PESSIMISTIC_WRITE);
+                if (evento == null) {
+                    return;
+                }
+                evento.tentativas++;
+                evento.ultimoErro = ultimoErro;
+                if (evento.tentativas >= maximoTentativas) {
+                    evento.falhou = true;
+                    LOGGER.severe("Evento " + eventoId + " da caixa de saída não processado após "
+                        + evento.tentativas + " tentativas: " + ultimoErro);
+                    return;
+                }
+                
+                long espera = TimeUnit.SECONDS.toMillis(esperaInicialSegundos) << Math.min(evento.tentativas - 1, 10);
+                espera += ThreadLocalRandom.current().nextLong(espera / 5 + 1);
+                evento.proximaTentativa = new Date(System.currentTimeMillis() + espera);
+                LOGGER.warning("Falha ao processar evento " + eventoId + " da caixa de saída (tentativa "
+                    + evento.tentativas + "), nova tentativa em " + (espera / 1000) + " s: " + ultimoErro);
+            });
+        } catch (Exception e) {
+            LOGGER.severe("Erro ao registrar falha do evento " + eventoId + " da caixa de saída: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Gera as notificações do próximo lote de destinatários de um evento.
+     * 
+     * @param eventoId ID do evento
+     * @return true se ainda houver destinatários a notificar
+     */
+    private boolean expandirLote(Long eventoId) {
+        EventoCaixaSaida evento = EventoCaixaSaida.findById(eventoId, LockModeType.PESSIMISTIC_WRITE);
+        if (evento == null || evento.dataProcessamento != null) {
+            return false;
+        }
+        
+        Timer.Sample amostra = Timer.start(registry);
+        EntityManager em = EventoCaixaSaida.getEntityManager();
+        List<Long> destinatarios = destinatarios(em, evento);
+        Date agora = new Date();
+        
+        List<Notificacao> notificacoes = new ArrayList<>(destinatarios.size());
+        for (Long usuarioId : destinatarios) {
+            Notificacao notificacao = new Notificacao();
+            notificacao.usuario = em.getReference(Usuario.class, usuarioId);
+            notificacao.titulo = evento.titulo;
+            notificacao.mensagem = evento.mensagem;
+            notificacao.link = evento.link;
+            notificacao.lida = false;
+            notificacoes.add(notificacao);
+        }
+        
+        if (!destinatarios.isEmpty()) {
+            evento.ultimoDestinatario = destinatarios.get(destinatarios.size() - 1);
+            evento.totalEnviados += destinatarios.size();
+        }
+        if (destinatarios.size() < tamanhoLote) {
+            evento.dataProcessamento = agora;
+            destinatariosPorTipo.get(evento.tipo).record(evento.totalEnviados);
+            LOGGER.info("Evento " + evento.id + " da caixa de saída processado. Notificações: " + evento.totalEnviados);
+        }
+        
+        // A data de envio é definida imediatamente antes da gravação e da confirmação: a marca de leitura
+        // compara por ela, e uma notificação confirmada depois de "marcar todas como lidas" fica acima da marca
+        Date envio = new Date();
+        
+        // Os INSERTs são enviados em lote no flush (statement-batch-size)
+        for (Notificacao notificacao : notificacoes) {
+            notificacao.dataEnvio = envio;
+            em.persist(notificacao);
+        }
+        em.flush();
+        cacheNotificacoes.aoCriar(notificacoes);
+        
+        amostra.stop(latenciaLote);
+        notificacoesGeradas.increment(destinatarios.size());
+        return evento.dataProcessamento == null;
+    }
+    
+    /**
+     * Busca o próximo lote de destinatários de um evento, em ordem de ID, após o último já notificado.
+     */
+    private List<Long> destinatarios(EntityManager em, EventoCaixaSaida evento) {
+        // Convidados do leilão, ou fornecedores com lance ou convite aceito, pelos conjuntos de participação
+        if (evento.tipo == EventoCaixaSaida.Tipo.LEILAO_PUBLICADO_FECHADO) {
+            ParticipacaoLeiloesService.Participacao participacao = participacoes.obter(evento.leilao.id);
+            if (participacao != null) {
+                return proximos(participacao.convidados(), evento.ultimoDestinatario);
+            }
+            return em.createQuery("SELECT DISTINCT c.fornecedor.id FROM Convite c "
+                    + "WHERE c.leilao.id = ?1 AND c.fornecedor.id > ?2 ORDER BY c.fornecedor.id", Long.class)
+                .setParameter(1, evento.leilao.id)
+                .setParameter(2, evento.ultimoDestinatario)
+                .setMaxResults(tamanhoLote)
+                .getResultList();
+        }
+        
+        if (evento.tipo == EventoCaixaSaida.Tipo.PERGUNTA_COMPRADOR) {
+            ParticipacaoLeiloesService.Participacao participacao = participacoes.obter(evento.leilao.id);
+            if (participacao != null) {
+                return proximos(participacao.interessados(), evento.ultimoDestinatario);
+            }
+            return em.createQuery("SELECT u.id FROM Usuario u WHERE u.id > ?2 "
+                    + "AND (EXISTS (SELECT 1 FROM Lance l WHERE l.leilao.id = ?1 AND l.fornecedor = u) "
+                    + "OR EXISTS (SELECT 1 FROM Convite c WHERE c.leilao.id = ?1 AND c.fornecedor = u AND c.status = ?3)) "
+                    + "ORDER BY u.id", Long.class)
+                .setParameter(1, evento.leilao.id)
+                .setParameter(2, evento.ultimoDestinatario)
+                .setParameter(3, Convite.Status.ACEITO)
+                .setMaxResults(tamanhoLote)
+                .getResultList();
+        }
+        
+        // Leilão com áreas de atuação: fornecedores ativos das áreas, pelo índice em memória
+        List<Long> areaIds = evento.leilao.areasAtuacao.stream().map(a -> a.id).toList();
+        if (!areaIds.isEmpty()) {
+            RoaringBitmap fornecedores = indiceFornecedores.fornecedores(areaIds);
+            if (fornecedores == null) {
+                return em.createQuery("SELECT DISTINCT u.id FROM Usuario u JOIN u.areasAtuacao a "
+                        + "WHERE a.id IN ?1 AND u.tipoUsuario = ?2 AND u.status = ?3 AND u.id > ?4 ORDER BY u.id", Long.class)
+                    .setParameter(1, areaIds)
+                    .setParameter(2, Usuario.TipoUsuario.FORNECEDOR)
+                    .setParameter(3, Usuario.Status.ATIVO)
+                    .setParameter(4, evento.ultimoDestinatario)
+                    .setMaxResults(tamanhoLote)
+                    .getResultList();
+            }
+            
+            return proximos(fornecedores, evento.ultimoDestinatario);
+        }
+        
+        return em.createQuery("SELECT u.id FROM Usuario u WHERE u.tipoUsuario = ?1 AND u.id > ?2 ORDER BY u.id", Long.class)
+            .setParameter(1, Usuario.TipoUsuario.FORNECEDOR)
+            .setParameter(2, evento.ultimoDestinatario)
+            .setMaxResults(tamanhoLote)
+            .getResultList();
+    }
+    
+    /**
+     * Próximo lote de IDs de um bitmap, em ordem, após o último já notificado.
+     */
+    private List<Long> proximos(RoaringBitmap destinatarios, long ultimoDestinatario) {
+        List<Long> lote = new ArrayList<>(Math.min(tamanhoLote, destinatarios.getCardinality()));
+        if (ultimoDestinatario >= Integer.MAX_VALUE) {
+            return lote;
+        }
+        PeekableIntIterator iterador = destinatarios.getIntIterator();
+        iterador.advanceIfNeeded((int) ultimoDestinatario + 1);
+        while (iterador.hasNext() && lote.size() < tamanhoLote) {
+            lote.add((long) iterador.next());
+        }
+        return lote;
+    }
+}
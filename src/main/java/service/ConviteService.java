@@ -9,6 +9,7 @@ import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 
 import model.Convite;
+import model.EmailPendente;
 import model.Leilao;
 import model.Usuario;
 import exception.BusinessException;
@@ -32,6 +33,12 @@ public class ConviteService {
     @Inject
     LeilaoService leilaoService;
     
+    @Inject
+    IndiceVisibilidadeLeiloesService indiceVisibilidade;
+    
+    @Inject
+    ParticipacaoLeiloesService participacoes;
+    
     /**
      * Busca um convite pelo ID.
      * 
@@ -152,6 +159,8 @@ public class ConviteService {
             convite.mensagem = mensagem;
             convite.dataCriacao = new Date();
             convite.persist();
+            indiceVisibilidade.registrarConvite(convite);
+            participacoes.registrarConvite(convite);
             
             // Notificar o fornecedor
             notificarNovoConvite(convite);
@@ -167,6 +176,40 @@ public class ConviteService {
         }
     }
     
+    /**
+     * Envia um convite pendente a um fornecedor, na transação atual, e o registra no índice de
+     * visibilidade e nos conjuntos de participação após a confirmação. O leilão, o fornecedor e a
+     * ausência de convite anterior já devem ter sido verificados pelo chamador.
+     * 
+     * @param leilao Leilão fechado
+     * @param fornecedor Usuário fornecedor convidado
+     * @return Convite enviado
+     */
+    public Convite enviar(Leilao leilao, Usuario fornecedor) {
+        Convite convite = new Convite(leilao, fornecedor);
+        convite.persist();
+        indiceVisibilidade.registrarConvite(convite);
+        participacoes.registrarConvite(convite);
+        return convite;
+    }
+    
+    /**
+     * Registra a resposta do fornecedor a um convite pendente, na transação atual, e a reflete nos
+     * conjuntos de participação após a confirmação. As permissões e o status do convite já devem
+     * ter sido verificados pelo chamador.
+     * 
+     * @param convite Convite pendente
+     * @param status Resposta do fornecedor ({@link Convite.Status#ACEITO} ou {@link Convite.Status#RECUSADO})
+     * @return Convite respondido
+     */
+    public Convite responder(Convite convite, Convite.Status status) {
+        convite.status = status;
+        convite.dataResposta = new Date();
+        convite.persist();
+        participacoes.registrarConvite(convite);
+        return convite;
+    }
+    
     /**
      * Aceita um convite para participar de um leilu00e3o.
      * 
@@ -201,6 +244,7 @@ public class ConviteService {
             
             // Aceitar o convite
             convite.aceitar();
+            participacoes.registrarConvite(convite);
             
             // Notificar o comprador
             notificarRespostaConvite(convite);
@@ -244,6 +288,7 @@ public class ConviteService {
             convite.recusar();
             convite.motivoRecusa = motivo;
             convite.persist();
+            participacoes.registrarConvite(convite);
             
             // Notificar o comprador
             notificarRespostaConvite(convite);
@@ -288,6 +333,7 @@ public class ConviteService {
             convite.motivoRecusa = motivo;
             convite.dataResposta = new Date();
             convite.persist();
+            participacoes.registrarConvite(convite);
             
             // Notificar o fornecedor
             notificarCancelamentoConvite(convite);
@@ -400,7 +446,8 @@ public class ConviteService {
             emailService.enviarEmail(
                 convite.fornecedor.email,
                 assunto,
-                corpo.toString()
+                corpo.toString(),
+                EmailPendente.Prioridade.BAIXA
             );
         } catch (Exception e) {
             LOGGER.severe("Erro ao enviar email de convite: " + e.getMessage());
@@ -1,22 +1,22 @@
 package service;
 
-import io.quarkus.mailer.Mail;
-import io.quarkus.mailer.Mailer;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import model.Convite;
+import model.EmailPendente;
 import model.Leilao;
 import model.Usuario;
 
 /**
  * Serviço responsável pelo envio de emails no sistema.
- * Utiliza o serviço de email do Quarkus para envio das mensagens.
+ * Os emails são colocados na fila de envio ({@link FilaEmailsService}) e enviados de forma assíncrona
+ * pelo serviço de email do Quarkus.
  */
 @ApplicationScoped
 public class EmailService {
     
     @Inject
-    Mailer mailer;
+    FilaEmailsService filaEmails;
     
     /**
      * Envia um email de notificação sobre um convite para participar de um leilão.
@@ -44,7 +44,7 @@ public class EmailService {
             leilao.dataFim
         );
         
-        enviarEmail(fornecedor.email, assunto, corpo);
+        enviarEmail(fornecedor.email, assunto, corpo, EmailPendente.Prioridade.BAIXA);
     }
     
     /**
@@ -100,7 +100,7 @@ public class EmailService {
             token
         );
         
-        enviarEmail(usuario.email, assunto, corpo);
+        enviarEmail(usuario.email, assunto, corpo, EmailPendente.Prioridade.ALTA);
     }
     
     /**
@@ -151,22 +151,25 @@ public class EmailService {
     }
     
     /**
-     * Método para envio de emails.
+     * Método para envio de emails, com prioridade normal.
      *
      * @param destinatario Email do destinatário
      * @param assunto Assunto do email
      * @param corpo Corpo do email
      */
     public void enviarEmail(String destinatario, String assunto, String corpo) {
-        try {
-            mailer.send(Mail.withText(
-                destinatario,
-                assunto,
-                corpo
-            ));
-        } catch (Exception e) {
-            // Log do erro, mas não falha a operação
-            System.err.println("Erro ao enviar email: " + e.getMessage());
-        }
+        enviarEmail(destinatario, assunto, corpo, EmailPendente.Prioridade.NORMAL);
+    }
+    
+    /**
+     * Método para envio de emails. O email é colocado na fila de envio, na transação atual.
+     *
+     * @param destinatario Email do destinatário
+     * @param assunto Assunto do email
+     * @param corpo Corpo do email
+     * @param prioridade Prioridade de envio
+     */
+    public void enviarEmail(String destinatario, String assunto, String corpo, EmailPendente.Prioridade prioridade) {
+        filaEmails.enfileirar(destinatario, assunto, corpo, prioridade);
     }
 }
@@ -0,0 +1,261 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import dto.EventoLanceDTO;
+import model.Leilao;
+
+/**
+ * Serviço de transmissão ao vivo dos lances de cada leilão.
+ * Cada alteração confirmada no livro de ofertas gera um evento, montado uma única vez
+ * a partir do livro em memória e repassado a todos os assinantes do leilão.
+ * Os últimos eventos ficam guardados para que um cliente reconectado continue de onde parou.
+ * O ranking não identifica os fornecedores: cada fornecedor assinante recebe apenas a sua posição.
+ * Os canais existem só para leilões abertos com assinantes e são removidos no encerramento do leilão.
+ * A transmissão roda em uma thread própria, fora da faixa que grava os lances: alterações do mesmo
+ * leilão que chegam enquanto a transmissão anterior está pendente geram um único evento.
+ */
+@ApplicationScoped
+public class EventosLancesService {
+    
+    private static final Logger LOGGER = Logger.getLogger(EventosLancesService.class.getName());
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.lances.eventos.historico", defaultValue = "256")
+    int tamanhoHistorico;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.lances.eventos.ranking", defaultValue = "10")
+    int tamanhoRanking;
+    
+    @Inject
+    LivroOfertasService livroOfertasService;
+    
+    private final Map<Long, Canal> canais = new ConcurrentHashMap<>();
+    
+    // Livro a transmitir, por leilão com transmissão pendente
+    private final Map<Long, LivroOfertas> publicacoesPendentes = new ConcurrentHashMap<>();
+    
+    private final ExecutorService publicador = Executors.newSingleThreadExecutor(tarefa -> {
+        Thread thread = new Thread(tarefa, "publicador-eventos-lances");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * Assinante de um canal; o fornecedor é nulo para quem não participa do leilão (o comprador).
+     */
+    private record Assinante(MultiEmitter<? super EventoLanceDTO> emitter, Long fornecedorId) {
+        
+        void enviar(EventoLanceDTO evento, Map<Long, Integer> posicoes) {
+            if (fornecedorId == null) {
+                emitter.emit(evento);
+                return;
+            }
+            emitter.emit(evento.comPosicao(posicoes.get(fornecedorId)));
+        }
+    }
+    
+    /**
+     * Canal de eventos de um leilão: histórico circular dos últimos eventos e assinantes ativos.
+     */
+    private static final class Canal {
+        private final EventoLanceDTO[] historico;
+        private final List<Assinante> assinantes = new CopyOnWriteArrayList<>();
+        
+        // Os IDs partem do instante de criação do canal (em microssegundos): após um reinício ou a
+        // recriação do canal, os novos eventos não repetem IDs já recebidos pelos clientes
+        private final long primeiroId;
+        private long ultimoId;
+        
+        Canal(int tamanhoHistorico) {
+            this.historico = new EventoLanceDTO[tamanhoHistorico];
+            this.ultimoId = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+            this.primeiroId = ultimoId + 1;
+        }
+        
+        /**
+         * Retorna os eventos guardados com ID maior que o informado, em ordem.
+         * 
+         * @return Eventos posteriores, ou null se o histórico não cobrir o ID (ID de outro canal
+         *         ou eventos já descartados do histórico)
+         */
+        List<EventoLanceDTO> desde(long id) {
+            long inicio = Math.max(primeiroId, ultimoId - historico.length + 1);
+            if (id < inicio - 1 || id > ultimoId) {
+                return null;
+            }
+            
+            List<EventoLanceDTO> eventos = new ArrayList<>();
+            for (long i = id + 1; i <= ultimoId; i++) {
+                eventos.add(historico[(int) (i % historico.length)]);
+            }
+            return eventos;
+        }
+    }
+    
+    /**
+     * Agenda a publicação do estado atual do livro de ofertas para os assinantes do leilão.
+     * Retorna sem esperar a transmissão; sem assinantes, não há canal e nada é publicado.
+     * 
+     * @param livro Livro de ofertas alterado
+     */
+    public void publicar(LivroOfertas livro) {
+        Long leilaoId = livro.getLeilaoId();
+        if (!canais.containsKey(leilaoId) || publicacoesPendentes.put(leilaoId, livro) != null) {
+            return;
+        }
+        
+        publicador.execute(() -> {
+            LivroOfertas pendente = publicacoesPendentes.remove(leilaoId);
+            if (pendente == null) {
+                return;
+            }
+            try {
+                transmitir(pendente);
+            } catch (Exception e) {
+                LOGGER.severe("Erro ao transmitir lances do leilão " + leilaoId + ": " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Monta o evento com o estado atual do livro e o envia a todos os assinantes do leilão.
+     */
+    private void transmitir(LivroOfertas livro) {
+        Canal canal = canais.get(livro.getLeilaoId());
+        if (canal == null) {
+            return;
+        }
+        
+        synchronized (canal) {
+            // Resumo do livro montado uma única vez para todos os assinantes
+            EventoLanceDTO evento = resumo(livro, ++canal.ultimoId);
+            canal.historico[(int) (evento.id() % canal.historico.length)] = evento;
+            
+            Map<Long, Integer> posicoes = posicoes(livro, canal.assinantes);
+            for (Assinante assinante : canal.assinantes) {
+                assinante.enviar(evento, posicoes);
+            }
+        }
+    }
+    
+    /**
+     * Consulta de uma só vez as posições dos fornecedores assinantes.
+     */
+    private static Map<Long, Integer> posicoes(LivroOfertas livro, List<Assinante> assinantes) {
+        List<Long> fornecedores = new ArrayList<>(assinantes.size());
+        for (Assinante assinante : assinantes) {
+            if (assinante.fornecedorId() != null) {
+                fornecedores.add(assinante.fornecedorId());
+            }
+        }
+        return fornecedores.isEmpty() ? Map.of() : livro.posicoesFornecedores(fornecedores);
+    }
+    
+    /**
+     * Assina os eventos de lances de um leilão aberto.
+     * Se o ID do último evento recebido estiver no histórico do canal, os eventos posteriores são
+     * reenviados antes dos novos; caso contrário (sem ID, ID de um canal anterior ou já descartado
+     * do histórico), o assinante recebe primeiro o estado atual do leilão. Os eventos de um
+     * fornecedor trazem a sua posição atual no ranking.
+     * 
+     * @param leilao Leilão
+     * @param fornecedorId ID do fornecedor assinante, ou null se o assinante não for um fornecedor
+     * @param ultimoEventoId ID do último evento recebido pelo cliente (pode ser null)
+     * @return Fluxo de eventos do leilão; vazio se o leilão não estiver aberto
+     */
+    public Multi<EventoLanceDTO> assinar(Leilao leilao, Long fornecedorId, Long ultimoEventoId) {
+        LivroOfertas livro = livroOfertasService.obter(leilao);
+        if (livro == null) {
+            return Multi.createFrom().empty();
+        }
+        Long leilaoId = leilao.id;
+        
+        return Multi.createFrom().emitter(emitter -> {
+            Canal canal = canais.computeIfAbsent(leilaoId, id -> new Canal(tamanhoHistorico));
+            Assinante assinante = new Assinante(emitter, fornecedorId);
+            
+            synchronized (canal) {
+                List<EventoLanceDTO> pendentes = ultimoEventoId != null ? canal.desde(ultimoEventoId) : null;
+                if (pendentes == null) {
+                    // Sem ID informado, ou ID fora do histórico do canal: envia o estado atual do leilão
+                    pendentes = List.of(resumo(livro, canal.ultimoId));
+                }
+                Map<Long, Integer> posicoes = posicoes(livro, List.of(assinante));
+                for (EventoLanceDTO evento : pendentes) {
+                    assinante.enviar(evento, posicoes);
+                }
+                canal.assinantes.add(assinante);
+            }
+            emitter.onTermination(() -> canal.assinantes.remove(assinante));
+            
+            // O leilão pode ter sido encerrado enquanto o canal era criado: o canal não seria mais removido
+            if (livroOfertasService.obterCarregado(leilaoId) != livro) {
+                encerrar(leilaoId);
+            }
+        });
+    }
+    
+    /**
+     * Monta o resumo do livro de ofertas, sem a posição de um fornecedor.
+     */
+    private EventoLanceDTO resumo(LivroOfertas livro, long id) {
+        List<LivroOfertas.Oferta> melhores = livro.melhoresOfertas(tamanhoRanking);
+        List<EventoLanceDTO.Posicao> ranking = new ArrayList<>(melhores.size());
+        for (int i = 0; i < melhores.size(); i++) {
+            ranking.add(new EventoLanceDTO.Posicao(i + 1, melhores.get(i).valor()));
+        }
+        
+        return new EventoLanceDTO(
+            id,
+            livro.getLeilaoId(),
+            livro.valorMelhorOferta(),
+            livro.totalOfertas(),
+            livro.totalFornecedores(),
+            ranking,
+            null,
+            System.currentTimeMillis()
+        );
+    }
+    
+    /**
+     * Encerra o canal de um leilão, finalizando a transmissão para todos os assinantes.
+     * 
+     * @param leilaoId ID do leilão
+     */
+    public void encerrar(Long leilaoId) {
+        Canal canal = canais.remove(leilaoId);
+        if (canal == null) {
+            return;
+        }
+        
+        synchronized (canal) {
+            for (Assinante assinante : canal.assinantes) {
+                assinante.emitter().complete();
+            }
+            canal.assinantes.clear();
+        }
+        LOGGER.fine("Transmissão de lances encerrada. Leilão: " + leilaoId);
+    }
+    
+    @PreDestroy
+    void finalizar() {
+        publicador.shutdown();
+    }
+}
@@ -0,0 +1,100 @@
+package service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import dto.EventoNotificacaoDTO;
+
+/**
+ * Serviço de transmissão ao vivo das notificações de cada usuário.
+ * Cada usuário conectado tem um único canal, compartilhado por todas as conexões (abas) abertas;
+ * o evento de uma alteração é montado uma única vez e repassado a todas elas. Usuários sem
+ * conexões abertas não têm canal, e as alterações das suas notificações não geram eventos.
+ * 
+ * Os eventos trazem o resumo completo das notificações não lidas, e não a alteração, de modo que
+ * um cliente reconectado só precisa do último evento para ficar em dia.
+ */
+@ApplicationScoped
+public class EventosNotificacoesService {
+    
+    // IDs dos eventos, únicos entre canais para que um canal recriado não repita IDs
+    private final AtomicLong sequencia = new AtomicLong();
+    
+    private final Map<Long, Canal> canais = new ConcurrentHashMap<>();
+    
+    /**
+     * Canal de eventos de um usuário: último evento enviado e conexões ativas.
+     */
+    private static final class Canal {
+        private final List<MultiEmitter<? super EventoNotificacaoDTO>> assinantes = new CopyOnWriteArrayList<>();
+        private EventoNotificacaoDTO ultimo;
+    }
+    
+    /**
+     * Publica o resumo das notificações de um usuário para as suas conexões abertas.
+     * 
+     * @param usuarioId ID do usuário
+     * @param resumo Resumo atual, ou null se não estiver disponível (o cliente recarrega)
+     */
+    public void publicar(Long usuarioId, CacheNotificacoesService.Resumo resumo) {
+        Canal canal = canais.get(usuarioId);
+        if (canal == null) {
+            return;
+        }
+        
+        synchronized (canal) {
+            EventoNotificacaoDTO evento = resumo != null
+                ? new EventoNotificacaoDTO(sequencia.incrementAndGet(), resumo.naoLidas(), resumo.recentes())
+                : new EventoNotificacaoDTO(sequencia.incrementAndGet(), -1, null);
+            canal.ultimo = evento;
+            
+            for (MultiEmitter<? super EventoNotificacaoDTO> assinante : canal.assinantes) {
+                assinante.emit(evento);
+            }
+        }
+    }
+    
+    /**
+     * Assina os eventos de notificações de um usuário.
+     * O assinante recebe primeiro o resumo atual, exceto quando o ID do último evento recebido
+     * for informado e ainda for o último evento do canal (nada mudou desde a desconexão).
+     * 
+     * @param usuarioId ID do usuário
+     * @param ultimoEventoId ID do último evento recebido pelo cliente (pode ser null)
+     * @param atual Resumo atual das notificações do usuário
+     * @return Fluxo de eventos do usuário
+     */
+    public Multi<EventoNotificacaoDTO> assinar(Long usuarioId, Long ultimoEventoId, CacheNotificacoesService.Resumo atual) {
+        return Multi.createFrom().emitter(emitter -> {
+            Canal canal = canais.compute(usuarioId, (id, existente) -> {
+                Canal c = existente != null ? existente : new Canal();
+                // Registrado dentro do compute para que o canal não seja removido antes de receber o assinante
+                c.assinantes.add(emitter);
+                return c;
+            });
+            
+            synchronized (canal) {
+                EventoNotificacaoDTO ultimo = canal.ultimo;
+                if (ultimo == null || !ultimo.completo()) {
+                    ultimo = new EventoNotificacaoDTO(sequencia.incrementAndGet(), atual.naoLidas(), atual.recentes());
+                    canal.ultimo = ultimo;
+                }
+                if (ultimoEventoId == null || ultimoEventoId != ultimo.id()) {
+                    emitter.emit(ultimo);
+                }
+            }
+            
+            emitter.onTermination(() -> canais.computeIfPresent(usuarioId, (id, c) -> {
+                c.assinantes.remove(emitter);
+                return c.assinantes.isEmpty() ? null : c;
+            }));
+        });
+    }
+}
@@ -0,0 +1,269 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.mailer.Mail;
+import io.quarkus.mailer.Mailer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import model.EmailPendente;
+
+/**
+ * Fila persistente de envio de emails.
+ * Os emails são gravados na transação da operação de origem e enviados por um conjunto de workers,
+ * sem bloquear a requisição. Cada worker reserva um pequeno lote dos próximos emails, por prioridade
+ * e ordem de chegada, com {@code FOR UPDATE SKIP LOCKED}; assim um email de alta prioridade espera
+ * no máximo o lote em andamento de um worker, mesmo durante um envio em massa, e mais de uma
+ * instância da aplicação pode consumir a mesma fila.
+ * 
+ * A reserva adia a próxima tentativa do email; se a aplicação parar durante o envio, o email volta
+ * para a fila quando a reserva expira. Falhas são tentadas novamente com espera exponencial, até o
+ * limite de tentativas. As conexões SMTP são reaproveitadas pelo pool do mailer
+ * ({@code quarkus.mailer.max-pool-size}).
+ */
+@ApplicationScoped
+public class FilaEmailsService {
+    
+    private static final Logger LOGGER = Logger.getLogger(FilaEmailsService.class.getName());
+    
+    // Reserva os próximos emails disponíveis, ignorando os já reservados por outro worker
+    private static final String SQL_RESERVAR =
+        "UPDATE fila_emails SET proxima_tentativa = :reserva, tentativas = tentativas + 1 "
+        + "WHERE id IN (SELECT id FROM fila_emails WHERE status = 'PENDENTE' AND proxima_tentativa <= :agora "
+        + "ORDER BY prioridade, id LIMIT :lote FOR UPDATE SKIP LOCKED) "
+        + "RETURNING id, destinatario, assunto, corpo, prioridade, tentativas, data_criacao";
+    
+    @Inject
+    Mailer mailer;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    @Inject
+    TransacoesService transacoes;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.emails.workers", defaultValue = "4")
+    int quantidadeWorkers;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.emails.lote", defaultValue = "10")
+    int tamanhoLote;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.emails.tentativas", defaultValue = "6")
+    int maximoTentativas;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.emails.espera-inicial-segundos", defaultValue = "30")
+    long esperaInicialSegundos;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.emails.reserva-segundos", defaultValue = "300")
+    long reservaSegundos;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.emails.intervalo-segundos", defaultValue = "5")
+    long intervaloSegundos;
+    
+    /**
+     * Email reservado por um worker.
+     */
+    private record Reserva(Long id, String destinatario, String assunto, String corpo,
+                           EmailPendente.Prioridade prioridade, int tentativa, Date dataCriacao) {
+    }
+    
+    // Sinal de novos emails confirmados
+    private final Semaphore sinal = new Semaphore(0);
+    
+    // Emails pendentes na última reserva
+    private final AtomicLong pendentes = new AtomicLong();
+    
+    private Timer latenciaEnvio;
+    
+    private volatile boolean ativo;
+    
+    private ExecutorService workers;
+    
+    @PostConstruct
+    void iniciar() {
+        Gauge.builder("rev3rso.emails.pendentes", pendentes, AtomicLong::get)
+            .description("Emails aguardando envio")
+            .register(registry);
+        latenciaEnvio = Timer.builder("rev3rso.emails.envio")
+            .description("Tempo de envio de um email ao servidor SMTP")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+    }
+    
+    /**
+     * Inicia os workers da fila, que retomam os emails pendentes antes de um reinício.
+     */
+    void aoIniciar(@Observes StartupEvent ev) {
+        ativo = true;
+        AtomicInteger contador = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(quantidadeWorkers, tarefa -> {
+            Thread thread = new Thread(tarefa, "fila-emails-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < quantidadeWorkers; i++) {
+            workers.execute(this::executar);
+        }
+    }
+    
+    void aoEncerrar(@Observes ShutdownEvent ev) {
+        ativo = false;
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+    
+    /**
+     * Coloca um email na fila de envio, na transação atual (ou em uma nova, se não houver).
+     * O email só fica visível para os workers depois da confirmação.
+     * 
+     * @param destinatario Email do destinatário
+     * @param assunto Assunto do email
+     * @param corpo Corpo do email
+     * @param prioridade Prioridade de envio
+     */
+    public void enfileirar(String destinatario, String assunto, String corpo, EmailPendente.Prioridade prioridade) {
+        QuarkusTransaction.joiningExisting().run(() -> {
+            EmailPendente email = new EmailPendente();
+            email.destinatario = destinatario;
+            email.assunto = assunto;
+            email.corpo = corpo;
+            email.prioridade = prioridade;
+            email.persist();
+            
+            transacoes.aposConfirmar(() -> sinal.release());
+        });
+    }
+    
+    /**
+     * Laço de um worker: reserva e envia lotes enquanto houver emails disponíveis e, quando a fila
+     * esvazia, aguarda novos emails (ou o intervalo de verificação, para as novas tentativas).
+     */
+    private void executar() {
+        while (ativo) {
+            try {
+                List<Reserva> lote = QuarkusTransaction.requiringNew().call(this::reservar);
+                if (lote.isEmpty()) {
+                    sinal.tryAcquire(intervaloSegundos, TimeUnit.SECONDS);
+                    continue;
+                }
+                
+                for (Reserva reserva : lote) {
+                    enviar(reserva);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.severe("Erro na fila de emails: " + e.getMessage());
+            }
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<Reserva> reservar() {
+        long agora = System.currentTimeMillis();
+        List<Object[]> linhas = EmailPendente.getEntityManager().createNativeQuery(SQL_RESERVAR)
+            .setParameter("agora", new Date(agora))
+            .setParameter("reserva", new Date(agora + TimeUnit.SECONDS.toMillis(reservaSegundos)))
+            .setParameter("lote", tamanhoLote)
+            .getResultList();
+        
+        pendentes.set(EmailPendente.count("status", EmailPendente.Status.PENDENTE));
+        
+        List<Reserva> lote = new ArrayList<>(linhas.size());
+        for (Object[] linha : linhas) {
+            lote.add(new Reserva(
+                ((Number) linha[0]).longValue(),
+                (String) linha[1],
+                (String) linha[2],
+                (String) linha[3],
+                EmailPendente.Prioridade.values()[((Number) linha[4]).intValue()],
+                ((Number) linha[5]).intValue(),
+                (Date) linha[6]));
+        }
+        // RETURNING não garante a ordem da subconsulta
+        lote.sort(Comparator.comparing(Reserva::prioridade).thenComparing(Reserva::id));
+        return lote;
+    }
+    
+    private void enviar(Reserva reserva) {
+        try {
+            Timer.Sample amostra = Timer.start(registry);
+            mailer.send(Mail.withText(reserva.destinatario(), reserva.assunto(), reserva.corpo()));
+            amostra.stop(latenciaEnvio);
+        } catch (Exception e) {
+            falhar(reserva, e);
+            return;
+        }
+        
+        QuarkusTransaction.requiringNew().run(() -> EmailPendente.deleteById(reserva.id()));
+        
+        String prioridade = reserva.prioridade().name();
+        registry.counter("rev3rso.emails.enviados", "prioridade", prioridade).increment();
+        Timer.builder("rev3rso.emails.atraso")
+            .description("Tempo entre a entrada do email na fila e o seu envio")
+            .tag("prioridade", prioridade)
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry)
+            .record(System.currentTimeMillis() - reserva.dataCriacao().getTime(), TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Agenda uma nova tentativa com espera exponencial (com variação aleatória de até 20%),
+     * ou marca o email como falho se as tentativas se esgotaram.
+     */
+    private void falhar(Reserva reserva, Exception erro) {
+        String mensagem = erro.getMessage() != null ? erro.getMessage() : erro.getClass().getName();
+        if (mensagem.length() > 1000) {
+            mensagem = mensagem.substring(0, 1000);
+        }
+        registry.counter("rev3rso.emails.falhas", "prioridade", reserva.prioridade().name()).increment();
+        
+        String ultimoErro = mensagem;
+        if (reserva.tentativa() >= maximoTentativas) {
+            LOGGER.severe("Email " + reserva.id() + " para " + reserva.destinatario() + " não enviado após "
+                + reserva.tentativa() + " tentativas: " + ultimoErro);
+            QuarkusTransaction.requiringNew().run(() ->
+                EmailPendente.update("status = ?1, ultimoErro = ?2 WHERE id = ?3",
+                    EmailPendente.Status.FALHOU, ultimoErro, reserva.id()));
+            return;
+        }
+        
+        long espera = TimeUnit.SECONDS.toMillis(esperaInicialSegundos) << Math.min(reserva.tentativa() - 1, 10);
+        espera += ThreadLocalRandom.current().nextLong(espera / 5 + 1);
+        Date proximaTentativa = new Date(System.currentTimeMillis() + espera);
+        LOGGER.warning("Falha ao enviar email " + reserva.id() + " (tentativa " + reserva.tentativa()
+            + "), nova tentativa em " + (espera / 1000) + " s: " + ultimoErro);
+        QuarkusTransaction.requiringNew().run(() ->
+            EmailPendente.update("proximaTentativa = ?1, ultimoErro = ?2 WHERE id = ?3",
+                proximaTentativa, ultimoErro, reserva.id()));
+    }
+}
@@ -0,0 +1,224 @@
+package service;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Logger;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+
+import model.Leilao;
+
+/**
+ * Serviço que conclui em lote os leilões encerrados.
+ * O processamento é feito em três etapas: os vencedores são escolhidos em paralelo, em um
+ * {@link ForkJoinPool}, com uma consulta por fatia de leilões; em seguida o status, o lance
+ * vencedor e o valor vencedor de todos os leilões são gravados em uma única transação, com
+ * UPDATEs em lote via JDBC; por fim, as notificações dos participantes são entregues a uma
+ * etapa assíncrona, fora da transação de conclusão.
+ */
+@ApplicationScoped
+public class FinalizacaoLeiloesService {
+    
+    private static final Logger LOGGER = Logger.getLogger(FinalizacaoLeiloesService.class.getName());
+    
+    // Menor lance ativo de cada leilão da fatia; DISTINCT ON mantém a primeira linha de cada leilão
+    private static final String SQL_VENCEDORES =
+        "SELECT DISTINCT ON (leilao_id) leilao_id, id, valor FROM lances "
+        + "WHERE leilao_id IN (:ids) AND cancelado = false AND status <> 'CANCELADO' "
+        + "ORDER BY leilao_id, valor, data_criacao, id";
+    
+    private static final String SQL_CONCLUIR =
+        "UPDATE leiloes SET status = 'CONCLUIDO', lance_vencedor_id = ?, valor_vencedor = ?, data_atualizacao = ? "
+        + "WHERE id = ? AND status = 'ENCERRADO'";
+    
+    private static final String SQL_MARCAR_VENCEDOR = "UPDATE lances SET vencedor = true WHERE id = ?";
+    
+    @Inject
+    LeilaoService leilaoService;
+    
+    @Inject
+    IndiceFacetasLeiloesService indiceFacetas;
+    
+    @Inject
+    TransacoesService transacoes;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.leiloes.finalizacao.paralelismo", defaultValue = "4")
+    int paralelismo;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.leiloes.finalizacao.fatia", defaultValue = "100")
+    int tamanhoFatia;
+    
+    /**
+     * Lance vencedor escolhido para um leilão.
+     */
+    record Vencedor(Long leilaoId, Long lanceId, BigDecimal valor) {
+    }
+    
+    private ForkJoinPool pool;
+    
+    private final ExecutorService notificador = Executors.newSingleThreadExecutor(tarefa -> {
+        Thread thread = new Thread(tarefa, "notificador-conclusao");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @PostConstruct
+    void iniciar() {
+        // O paralelismo também limita as conexões usadas ao mesmo tempo na escolha dos vencedores
+        pool = new ForkJoinPool(Math.max(1, Math.min(paralelismo, Runtime.getRuntime().availableProcessors())));
+    }
+    
+    @PreDestroy
+    void encerrar() {
+        pool.shutdown();
+        notificador.shutdown();
+    }
+    
+    /**
+     * Conclui os leilões encerrados informados. Leilões que não estão mais encerrados são ignorados.
+     * 
+     * @param leilaoIds IDs dos leilões encerrados
+     * @return IDs dos leilões concluídos
+     */
+    public List<Long> finalizar(List<Long> leilaoIds) {
+        if (leilaoIds.isEmpty()) {
+            return List.of();
+        }
+        
+        long inicio = System.currentTimeMillis();
+        
+        Map<Long, Vencedor> vencedores = pool.invoke(new BuscaVencedores(leilaoIds));
+        List<Long> concluidos = QuarkusTransaction.requiringNew().call(() -> gravar(leilaoIds, vencedores));
+        indiceFacetas.atualizarStatus(concluidos, Leilao.Status.CONCLUIDO);
+        concluidos.forEach(this::agendarNotificacao);
+        
+        LOGGER.info("Leilões concluídos: " + concluidos.size() + " de " + leilaoIds.size()
+            + " em " + (System.currentTimeMillis() - inicio) + " ms");
+        return concluidos;
+    }
+    
+    /**
+     * Agenda as notificações de conclusão de um leilão para depois da confirmação da transação atual.
+     * 
+     * @param leilaoId ID do leilão concluído
+     */
+    public void notificarAposConfirmar(Long leilaoId) {
+        transacoes.aposConfirmar(() -> agendarNotificacao(leilaoId));
+    }
+    
+    private void agendarNotificacao(Long leilaoId) {
+        notificador.execute(() -> {
+            try {
+                QuarkusTransaction.requiringNew().run(() -> {
+                    Leilao leilao = Leilao.findById(leilaoId);
+                    if (leilao != null) {
+                        leilaoService.notificarConclusao(leilao);
+                    }
+                });
+            } catch (Exception e) {
+                LOGGER.severe("Erro ao notificar conclusão do leilão " + leilaoId + ": " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Grava a conclusão dos leilões com UPDATEs em lote.
+     * 
+     * @return IDs dos leilões efetivamente concluídos
+     */
+    private List<Long> gravar(List<Long> leilaoIds, Map<Long, Vencedor> vencedores) {
+        List<Long> concluidos = new ArrayList<>();
+        Timestamp agora = new Timestamp(System.currentTimeMillis());
+        
+        Leilao.getEntityManager().unwrap(Session.class).doWork(conexao -> {
+            try (PreparedStatement leiloes = conexao.prepareStatement(SQL_CONCLUIR);
+                 PreparedStatement lances = conexao.prepareStatement(SQL_MARCAR_VENCEDOR)) {
+                for (Long leilaoId : leilaoIds) {
+                    Vencedor vencedor = vencedores.get(leilaoId);
+                    leiloes.setObject(1, vencedor != null ? vencedor.lanceId() : null, Types.BIGINT);
+                    leiloes.setBigDecimal(2, vencedor != null ? vencedor.valor() : null);
+                    leiloes.setTimestamp(3, agora);
+                    leiloes.setLong(4, leilaoId);
+                    leiloes.addBatch();
+                }
+                
+                int[] alterados = leiloes.executeBatch();
+                for (int i = 0; i < alterados.length; i++) {
+                    if (alterados[i] == 0) {
+                        continue;
+                    }
+                    Long leilaoId = leilaoIds.get(i);
+                    concluidos.add(leilaoId);
+                    
+                    Vencedor vencedor = vencedores.get(leilaoId);
+                    if (vencedor != null) {
+                        lances.setLong(1, vencedor.lanceId());
+                        lances.addBatch();
+                    }
+                }
+                lances.executeBatch();
+            }
+        });
+        return concluidos;
+    }
+    
+    /**
+     * Escolhe os vencedores dividindo os leilões em fatias consultadas em paralelo.
+     */
+    private class BuscaVencedores extends RecursiveTask<Map<Long, Vencedor>> {
+        
+        private final List<Long> leilaoIds;
+        
+        BuscaVencedores(List<Long> leilaoIds) {
+            this.leilaoIds = leilaoIds;
+        }
+        
+        @Override
+        protected Map<Long, Vencedor> compute() {
+            if (leilaoIds.size() <= tamanhoFatia) {
+                return QuarkusTransaction.requiringNew().call(this::consultar);
+            }
+            
+            int meio = leilaoIds.size() / 2;
+            BuscaVencedores esquerda = new BuscaVencedores(leilaoIds.subList(0, meio));
+            BuscaVencedores direita = new BuscaVencedores(leilaoIds.subList(meio, leilaoIds.size()));
+            esquerda.fork();
+            
+            Map<Long, Vencedor> vencedores = direita.compute();
+            vencedores.putAll(esquerda.join());
+            return vencedores;
+        }
+        
+        @SuppressWarnings("unchecked")
+        private Map<Long, Vencedor> consultar() {
+            List<Object[]> linhas = Leilao.getEntityManager().createNativeQuery(SQL_VENCEDORES)
+                .setParameter("ids", leilaoIds)
+                .getResultList();
+            
+            Map<Long, Vencedor> vencedores = new HashMap<>();
+            for (Object[] linha : linhas) {
+                Long leilaoId = ((Number) linha[0]).longValue();
+                vencedores.put(leilaoId, new Vencedor(leilaoId, ((Number) linha[1]).longValue(), (BigDecimal) linha[2]));
+            }
+            return vencedores;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import exception.BusinessException;
+import model.Lance;
+import model.Leilao;
+
+/**
+ * Gravação de lances em lotes (group commit).
+ * Os lances aceitos são acumulados por alguns milissegundos e gravados em uma única transação,
+ * em um único lote JDBC. Quem envia o lance só recebe a resposta depois que ele está gravado.
+ * A transação do lote trava em modo compartilhado os leilões abertos dos seus lances: o
+ * encerramento de um leilão espera a gravação dos lances em andamento, e os lances gravados
+ * depois dele são recusados.
+ */
+@ApplicationScoped
+public class GravadorLotesLances {
+    
+    private static final Logger LOGGER = Logger.getLogger(GravadorLotesLances.class.getName());
+    
+    // Trava em ordem de ID, como o encerramento dos leilões, para não haver deadlock entre os dois
+    private static final String SQL_TRAVAR_ABERTOS =
+        "SELECT id FROM leiloes WHERE id IN (:ids) AND status = 'ABERTO' ORDER BY id FOR SHARE";
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.lances.lote.tamanho", defaultValue = "64")
+    int tamanhoLote;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.lances.lote.espera-ms", defaultValue = "5")
+    long esperaMs;
+    
+    @Inject
+    SequenciadorLances sequenciador;
+    
+    @Inject
+    LivroOfertasService livroOfertasService;
+    
+    @Inject
+    MeterRegistry registry;
+    
+    /**
+     * Lance aguardando gravação.
+     */
+    record Pedido(Lance lance, LivroOfertas livro, CompletableFuture<Lance> resultado) {
+    }
+    
+    private final BlockingQueue<Pedido> fila = new LinkedBlockingQueue<>();
+    
+    // IDs negativos usados para reservar ofertas no livro antes do persist
+    private final AtomicLong idsProvisorios = new AtomicLong();
+    
+    private volatile boolean ativo = true;
+    
+    private Thread gravador;
+    
+    private DistributionSummary tamanhoLotes;
+    
+    private Timer latenciaGravacao;
+    
+    @PostConstruct
+    void iniciar() {
+        tamanhoLotes = DistributionSummary.builder("rev3rso.lances.lote.tamanho")
+            .description("Quantidade de lances gravados por lote")
+            .register(registry);
+        latenciaGravacao = Timer.builder("rev3rso.lances.lote.latencia")
+            .description("Tempo de gravação de um lote de lances")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+        
+        gravador = new Thread(this::processar, "gravador-lotes-lances");
+        gravador.setDaemon(true);
+        gravador.start();
+        LOGGER.info("Gravador de lotes de lances iniciado. Tamanho do lote: " + tamanhoLote + ", espera: " + esperaMs + " ms");
+    }
+    
+    @PreDestroy
+    void encerrar() {
+        ativo = false;
+        if (gravador != null) {
+            gravador.interrupt();
+        }
+        
+        Pedido pedido;
+        while ((pedido = fila.poll()) != null) {
+            pedido.resultado().completeExceptionally(new BusinessException("Aplicação em encerramento, lance não gravado"));
+        }
+    }
+    
+    /**
+     * Envia um lance para gravação e aguarda até que ele esteja gravado.
+     * A verificação da melhor oferta e o registro no livro são feitos na faixa do leilão,
+     * dentro da transação do lote.
+     * 
+     * @param lance Lance ainda não persistido
+     * @param livro Livro de ofertas do leilão
+     * @return Lance gravado
+     * @throws BusinessException Se o lance for recusado ou não puder ser gravado
+     */
+    public Lance gravar(Lance lance, LivroOfertas livro) {
+        if (!ativo) {
+            throw new BusinessException("Aplicação em encerramento, lance não gravado");
+        }
+        
+        CompletableFuture<Lance> resultado = new CompletableFuture<>();
+        fila.add(new Pedido(lance, livro, resultado));
+        
+        try {
+            return resultado.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new BusinessException("Erro ao gravar lance", causa);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("Gravação do lance interrompida", e);
+        }
+    }
+    
+    /**
+     * Laço do gravador: aguarda o primeiro lance, acumula outros até completar o lote
+     * ou esgotar o tempo de espera e grava o lote.
+     */
+    private void processar() {
+        while (ativo) {
+            try {
+                Pedido primeiro = fila.take();
+                
+                List<Pedido> lote = new ArrayList<>(tamanhoLote);
+                lote.add(primeiro);
+                
+                long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMs);
+                while (lote.size() < tamanhoLote) {
+                    long restante = limite - System.nanoTime();
+                    Pedido proximo = restante > 0 ? fila.poll(restante, TimeUnit.NANOSECONDS) : fila.poll();
+                    if (proximo == null) {
+                        break;
+                    }
+                    lote.add(proximo);
+                }
+                
+                gravarLote(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.severe("Erro no gravador de lotes de lances: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Grava um lote de lances em uma única transação.
+     * Lances recusados na verificação da melhor oferta são retirados do lote; se a transação
+     * falhar, as alterações no livro são desfeitas e os lances do lote são regravados um a um,
+     * para que um lance com erro não derrube os demais.
+     * 
+     * @param lote Lances a gravar
+     */
+    void gravarLote(List<Pedido> lote) {
+        Timer.Sample amostra = Timer.start(registry);
+        
+        try {
+            if (!tentarGravar(lote) && lote.size() > 1) {
+                LOGGER.warning("Regravando individualmente os " + lote.size() + " lances do lote com erro");
+                for (Pedido pedido : lote) {
+                    tentarGravar(List.of(pedido));
+                }
+            }
+        } finally {
+            amostra.stop(latenciaGravacao);
+            tamanhoLotes.record(lote.size());
+        }
+    }
+    
+    /**
+     * Tenta gravar os lances em uma única transação e conclui os pedidos, exceto quando a
+     * transação de um lote com mais de um lance falha: nesse caso os pedidos ficam pendentes
+     * para serem regravados individualmente.
+     * 
+     * @param lote Lances a gravar
+     * @return true se a transação foi confirmada
+     */
+    private boolean tentarGravar(List<Pedido> lote) {
+        List<BusinessException> recusas = new ArrayList<>(lote.size());
+        
+        try {
+            executarTransacao(() -> {
+                recusas.clear();
+                Set<Long> abertos = travarAbertos(lote);
+                for (Pedido pedido : lote) {
+                    recusas.add(abertos.contains(pedido.livro().getLeilaoId())
+                        ? aceitar(pedido)
+                        : new BusinessException("O leilão não está mais aberto para lances"));
+                }
+            });
+        } catch (Exception e) {
+            LOGGER.severe("Erro ao gravar lote de " + lote.size() + " lances: " + e.getMessage());
+            for (Pedido pedido : lote) {
+                // O ID atribuído na transação desfeita não é reaproveitado
+                pedido.lance().id = null;
+                if (lote.size() == 1) {
+                    pedido.resultado().completeExceptionally(new BusinessException("Erro ao gravar lance", e));
+                }
+            }
+            return false;
+        }
+        
+        for (int i = 0; i < lote.size(); i++) {
+            Pedido pedido = lote.get(i);
+            if (recusas.get(i) != null) {
+                pedido.resultado().completeExceptionally(recusas.get(i));
+            } else {
+                pedido.resultado().complete(pedido.lance());
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Executa a tarefa em uma transação nova, confirmada ao final.
+     * 
+     * @param tarefa Tarefa a executar
+     */
+    void executarTransacao(Runnable tarefa) {
+        QuarkusTransaction.requiringNew().run(tarefa);
+    }
+    
+    /**
+     * Persiste o lance na transação do lote.
+     * O ID vem da sequence; o INSERT só é enviado no flush do lote.
+     * 
+     * @param lance Lance a persistir
+     */
+    void persistir(Lance lance) {
+        lance.persist();
+    }
+    
+    /**
+     * Trava em modo compartilhado, até o fim da transação do lote, os leilões dos lances que
+     * ainda estão abertos no banco.
+     * 
+     * @param lote Lances a gravar
+     * @return IDs dos leilões abertos
+     */
+    @SuppressWarnings("unchecked")
+    Set<Long> travarAbertos(List<Pedido> lote) {
+        List<Long> ids = lote.stream().map(pedido -> pedido.livro().getLeilaoId()).distinct().toList();
+        List<Number> abertos = Leilao.getEntityManager().createNativeQuery(SQL_TRAVAR_ABERTOS)
+            .setParameter("ids", ids)
+            .getResultList();
+        return abertos.stream().map(Number::longValue).collect(Collectors.toSet());
+    }
+    
+    /**
+     * Verifica um lance do lote contra a melhor oferta e, se ele for aceito, o persiste e
+     * o registra no livro de ofertas.
+     * A verificação reserva a oferta no livro com um ID provisório, para que lances recusados
+     * não cheguem a ser persistidos; após o persist a reserva é trocada pela oferta definitiva.
+     * 
+     * @param pedido Lance a aceitar
+     * @return null se o lance foi aceito, ou a exceção com o motivo da recusa
+     */
+    private BusinessException aceitar(Pedido pedido) {
+        Lance lance = pedido.lance();
+        LivroOfertas livro = pedido.livro();
+        Long leilaoId = livro.getLeilaoId();
+        
+        Long provisorio = idsProvisorios.decrementAndGet();
+        LivroOfertas.Oferta reserva = new LivroOfertas.Oferta(
+            provisorio, lance.fornecedor.id, lance.valor, lance.dataCriacao.getTime());
+        
+        try {
+            sequenciador.executar(leilaoId, () -> {
+                long agora = System.currentTimeMillis();
+                if (!livro.isAbertoEm(agora)) {
+                    throw new BusinessException("O leilão não está mais aberto para lances");
+                }
+                BigDecimal melhor = livro.valorMelhorOferta();
+                if (melhor != null && lance.valor.compareTo(melhor) >= 0) {
+                    throw new BusinessException("Seu lance deve ser menor que o lance atual de " + melhor);
+                }
+                livro.registrar(reserva);
+                livroOfertasService.prorrogar(livro, agora);
+                return null;
+            });
+        } catch (BusinessException e) {
+            return e;
+        }
+        
+        livroOfertasService.aoFinalizarTransacao(livro, () -> {
+            livro.remover(provisorio);
+            if (lance.id != null) {
+                livro.remover(lance.id);
+            }
+        });
+        
+        persistir(lance);
+        LivroOfertas.Oferta oferta = LivroOfertas.Oferta.de(lance);
+        
+        sequenciador.executar(leilaoId, () -> {
+            livro.remover(provisorio);
+            livro.registrar(oferta);
+            return null;
+        });
+        return null;
+    }
+}
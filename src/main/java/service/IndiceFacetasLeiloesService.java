@@ -0,0 +1,439 @@
+package service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import dto.FacetasLeiloesDTO;
+import dto.FacetasLeiloesDTO.FaixaValor;
+import dto.FacetasLeiloesDTO.JanelaFechamento;
+import model.Leilao;
+import util.BitmapUtil;
+
+/**
+ * Índice de facetas, em memória, da listagem de leilões.
+ * Cada valor de cada faceta (categoria, forma de pagamento, status, tipo de leilão, faixa do valor
+ * de referência e dia de fechamento) tem um bitmap comprimido ({@link RoaringBitmap}) indexado pelo
+ * ID do leilão. Os filtros são uniões dos bitmaps marcados em cada faceta, intersectadas entre as
+ * facetas, e as contagens de todas as facetas são calculadas na mesma consulta por cardinalidade
+ * de interseção, sem materializar os conjuntos. Leilões em rascunho não são indexados.
+ * O índice é carregado do banco no primeiro uso e atualizado, após a confirmação da transação, a
+ * cada mudança de um leilão.
+ * Os bitmaps só representam IDs até {@link Integer#MAX_VALUE}: ao encontrar um leilão com ID maior,
+ * o índice é desativado e as consultas retornam nulo, para que os chamadores consultem o banco.
+ */
+@ApplicationScoped
+public class IndiceFacetasLeiloesService {
+    
+    private static final Logger LOGGER = Logger.getLogger(IndiceFacetasLeiloesService.class.getName());
+    
+    // Chave dos dias de fechamento anteriores ao dia atual, agrupados em um único bitmap
+    private static final long PRAZO_ENCERRADO = Long.MIN_VALUE;
+    
+    @Inject
+    TransacoesService transacoes;
+    
+    /**
+     * Bitmaps dos leilões de cada valor de uma faceta.
+     */
+    private static class Faceta<K> {
+        
+        final Map<K, RoaringBitmap> valores = new HashMap<>();
+        
+        void definir(int id, K valor) {
+            remover(id);
+            if (valor != null) {
+                valores.computeIfAbsent(valor, v -> new RoaringBitmap()).add(id);
+            }
+        }
+        
+        void remover(int id) {
+            valores.values().forEach(bitmap -> bitmap.remove(id));
+        }
+    }
+    
+    /**
+     * Valores das facetas de um leilão, capturados na transação que o alterou.
+     */
+    private record Entrada(int id, Long categoriaId, Long formaPagamentoId, Leilao.Status status,
+                           Leilao.TipoLeilao tipoLeilao, FaixaValor faixaValor, long diaFechamento) {
+    }
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private final RoaringBitmap todos = new RoaringBitmap();
+    
+    private final Faceta<Long> categorias = new Faceta<>();
+    
+    private final Faceta<Long> formasPagamento = new Faceta<>();
+    
+    private final Faceta<Leilao.Status> status = new Faceta<>();
+    
+    private final Faceta<Leilao.TipoLeilao> tiposLeilao = new Faceta<>();
+    
+    private final Faceta<FaixaValor> faixasValor = new Faceta<>();
+    
+    private final Faceta<Long> diasFechamento = new Faceta<>();
+    
+    // Dias de fechamento anteriores a este já estão agrupados em PRAZO_ENCERRADO
+    private volatile long diaConsolidado = Long.MIN_VALUE;
+    
+    private volatile boolean carregado;
+    
+    // Algum leilão tem ID fora do intervalo dos bitmaps; o índice não é mais usado
+    private volatile boolean desativado;
+    
+    /**
+     * Filtra os leilões pelas facetas e conta os leilões de cada valor de cada faceta.
+     * 
+     * @param filtro Valores marcados em cada faceta
+     * @param pagina Número da página (começa em 1)
+     * @param tamanho Tamanho da página
+     * @return IDs da página, em ordem decrescente (mais recentes primeiro), total e contagens, ou
+     *         nulo se o índice estiver desativado
+     */
+    public FacetasLeiloesDTO filtrar(FacetasLeiloesDTO.Filtro filtro, int pagina, int tamanho) {
+        carregar();
+        if (desativado) {
+            return null;
+        }
+        long hoje = hoje();
+        consolidar(hoje);
+        
+        lock.readLock().lock();
+        try {
+            Map<JanelaFechamento, RoaringBitmap> janelas = janelas(hoje);
+            
+            RoaringBitmap[] filtros = {
+                uniao(categorias.valores, filtro.categorias()),
+                uniao(formasPagamento.valores, filtro.formasPagamento()),
+                uniao(status.valores, filtro.status()),
+                uniao(tiposLeilao.valores, filtro.tiposLeilao()),
+                uniao(faixasValor.valores, filtro.faixasValor()),
+                uniao(janelas, filtro.janelasFechamento())
+            };
+            
+            RoaringBitmap resultado = intersecao(filtros, -1);
+            List<Long> ids = new ArrayList<>(tamanho);
+            IntIterator iterador = resultado.getReverseIntIterator();
+            for (int ignorar = (Math.max(pagina, 1) - 1) * tamanho; ignorar > 0 && iterador.hasNext(); ignorar--) {
+                iterador.next();
+            }
+            while (iterador.hasNext() && ids.size() < tamanho) {
+                ids.add((long) iterador.next());
+            }
+            
+            // A contagem de cada faceta considera apenas os filtros das demais
+            return new FacetasLeiloesDTO(
+                ids,
+                resultado.getCardinality(),
+                contar(categorias.valores, intersecao(filtros, 0), new HashMap<>()),
+                contar(formasPagamento.valores, intersecao(filtros, 1), new HashMap<>()),
+                contar(status.valores, intersecao(filtros, 2), new EnumMap<>(Leilao.Status.class)),
+                contar(tiposLeilao.valores, intersecao(filtros, 3), new EnumMap<>(Leilao.TipoLeilao.class)),
+                contar(faixasValor.valores, intersecao(filtros, 4), new EnumMap<>(FaixaValor.class)),
+                contar(janelas, intersecao(filtros, 5), new EnumMap<>(JanelaFechamento.class)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Leilões abertos de um tipo, pela interseção dos bitmaps das facetas de status e de tipo.
+     * 
+     * @param tipoLeilao Tipo de leilão
+     * @return Bitmap dos IDs dos leilões (cópia, pode ser alterada pelo chamador), ou nulo se o
+     *         índice estiver desativado
+     */
+    public RoaringBitmap abertos(Leilao.TipoLeilao tipoLeilao) {
+        carregar();
+        if (desativado) {
+            return null;
+        }
+        
+        lock.readLock().lock();
+        try {
+            RoaringBitmap abertos = status.valores.get(Leilao.Status.ABERTO);
+            RoaringBitmap tipo = tiposLeilao.valores.get(tipoLeilao);
+            if (abertos == null || tipo == null) {
+                return new RoaringBitmap();
+            }
+            return RoaringBitmap.and(abertos, tipo);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Atualiza o índice com os valores atuais de um leilão, após a confirmação da transação atual.
+     * Leilões em rascunho são removidos do índice.
+     * 
+     * @param leilao Leilão criado ou alterado
+     */
+    public void atualizar(Leilao leilao) {
+        if (!BitmapUtil.representavel(leilao.id)) {
+            desativar(leilao.id);
+            return;
+        }
+        Entrada entrada = entrada(leilao.id, leilao.categoria != null ? leilao.categoria.id : null,
+            leilao.formaPagamento != null ? leilao.formaPagamento.id : null, leilao.status, leilao.tipoLeilao,
+            leilao.valorReferencia, leilao.dataFim);
+        
+        transacoes.aposConfirmar(() -> {
+            lock.writeLock().lock();
+            try {
+                // Ainda não carregado: a carga do banco, no primeiro uso, já inclui a alteração
+                if (carregado) {
+                    aplicar(entrada);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+    
+    /**
+     * Atualiza o status de leilões alterados diretamente no banco, após a confirmação da
+     * transação atual (ou imediatamente, se não houver uma).
+     * 
+     * @param leilaoIds IDs dos leilões
+     * @param novoStatus Novo status
+     */
+    public void atualizarStatus(Collection<Long> leilaoIds, Leilao.Status novoStatus) {
+        if (leilaoIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(leilaoIds);
+        
+        transacoes.aposConfirmar(() -> {
+            lock.writeLock().lock();
+            try {
+                if (!carregado) {
+                    return;
+                }
+                for (Long leilaoId : ids) {
+                    if (!BitmapUtil.representavel(leilaoId)) {
+                        desativar(leilaoId);
+                        continue;
+                    }
+                    int id = BitmapUtil.posicao(leilaoId);
+                    if (todos.contains(id)) {
+                        status.definir(id, novoStatus);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+    
+    /**
+     * Atualiza o prazo de fechamento de um leilão alterado diretamente no banco, após a
+     * confirmação da transação atual (ou imediatamente, se não houver uma).
+     * 
+     * @param leilaoId ID do leilão
+     * @param dataFim Novo prazo de fechamento
+     */
+    public void atualizarFechamento(Long leilaoId, Date dataFim) {
+        if (!BitmapUtil.representavel(leilaoId)) {
+            desativar(leilaoId);
+            return;
+        }
+        int id = BitmapUtil.posicao(leilaoId);
+        long dia = dia(dataFim);
+        
+        transacoes.aposConfirmar(() -> {
+            lock.writeLock().lock();
+            try {
+                if (carregado && todos.contains(id)) {
+                    diasFechamento.definir(id, chaveDia(dia));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+    
+    private void aplicar(Entrada entrada) {
+        int id = entrada.id();
+        if (entrada.status() == Leilao.Status.RASCUNHO) {
+            todos.remove(id);
+            categorias.remover(id);
+            formasPagamento.remover(id);
+            status.remover(id);
+            tiposLeilao.remover(id);
+            faixasValor.remover(id);
+            diasFechamento.remover(id);
+            return;
+        }
+        
+        todos.add(id);
+        categorias.definir(id, entrada.categoriaId());
+        formasPagamento.definir(id, entrada.formaPagamentoId());
+        status.definir(id, entrada.status());
+        tiposLeilao.definir(id, entrada.tipoLeilao());
+        faixasValor.definir(id, entrada.faixaValor());
+        diasFechamento.definir(id, chaveDia(entrada.diaFechamento()));
+    }
+    
+    /**
+     * Carrega o índice do banco, se ainda não foi carregado.
+     */
+    private void carregar() {
+        if (carregado) {
+            return;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            if (carregado) {
+                return;
+            }
+            
+            diaConsolidado = hoje();
+            QuarkusTransaction.requiringNew().run(() -> {
+                Leilao.getEntityManager()
+                    .createQuery("SELECT l.id, c.id, f.id, l.status, l.tipoLeilao, l.valorReferencia, l.dataFim "
+                        + "FROM Leilao l LEFT JOIN l.categoria c LEFT JOIN l.formaPagamento f WHERE l.status <> ?1",
+                        Object[].class)
+                    .setParameter(1, Leilao.Status.RASCUNHO)
+                    .getResultStream()
+                    .forEach(linha -> {
+                        if (!BitmapUtil.representavel((Long) linha[0])) {
+                            desativar((Long) linha[0]);
+                            return;
+                        }
+                        aplicar(entrada((Long) linha[0], (Long) linha[1], (Long) linha[2],
+                            (Leilao.Status) linha[3], (Leilao.TipoLeilao) linha[4], (BigDecimal) linha[5],
+                            (Date) linha[6]));
+                    });
+                
+                LOGGER.info("Índice de facetas dos leilões carregado. Leilões: " + todos.getCardinality()
+                    + ", Bytes: " + todos.getSizeInBytes());
+            });
+            carregado = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Agrupa em PRAZO_ENCERRADO os dias de fechamento que ficaram no passado, uma vez por dia,
+     * para que a janela de prazo encerrado não precise unir um bitmap por dia do histórico.
+     */
+    private void consolidar(long hoje) {
+        if (hoje <= diaConsolidado) {
+            return;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            if (hoje <= diaConsolidado) {
+                return;
+            }
+            RoaringBitmap encerrados = diasFechamento.valores.computeIfAbsent(PRAZO_ENCERRADO, d -> new RoaringBitmap());
+            diasFechamento.valores.entrySet().removeIf(dia -> {
+                if (dia.getKey() != PRAZO_ENCERRADO && dia.getKey() < hoje) {
+                    encerrados.or(dia.getValue());
+                    return true;
+                }
+                return false;
+            });
+            diaConsolidado = hoje;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Bitmaps das janelas de fechamento, pela união dos bitmaps dos dias de cada janela.
+     */
+    private Map<JanelaFechamento, RoaringBitmap> janelas(long hoje) {
+        Map<JanelaFechamento, RoaringBitmap> janelas = new EnumMap<>(JanelaFechamento.class);
+        diasFechamento.valores.forEach((dia, bitmap) -> {
+            JanelaFechamento janela = dia == PRAZO_ENCERRADO
+                ? JanelaFechamento.PRAZO_ENCERRADO
+                : JanelaFechamento.de(dia - hoje);
+            janelas.computeIfAbsent(janela, j -> new RoaringBitmap()).or(bitmap);
+        });
+        return janelas;
+    }
+    
+    /**
+     * União dos bitmaps dos valores marcados, ou nulo se nenhum valor foi marcado (sem filtro).
+     */
+    private static <K> RoaringBitmap uniao(Map<K, RoaringBitmap> valores, Set<K> marcados) {
+        if (marcados == null || marcados.isEmpty()) {
+            return null;
+        }
+        return RoaringBitmap.or(marcados.stream().map(valores::get).filter(Objects::nonNull).iterator());
+    }
+    
+    /**
+     * Interseção dos filtros, exceto o de índice {@code exceto}; sem filtros, todos os leilões.
+     * O resultado não deve ser alterado.
+     */
+    private RoaringBitmap intersecao(RoaringBitmap[] filtros, int exceto) {
+        RoaringBitmap resultado = null;
+        for (int i = 0; i < filtros.length; i++) {
+            if (i == exceto || filtros[i] == null) {
+                continue;
+            }
+            resultado = resultado == null ? filtros[i] : RoaringBitmap.and(resultado, filtros[i]);
+        }
+        return resultado != null ? resultado : todos;
+    }
+    
+    private static <K> Map<K, Integer> contar(Map<K, RoaringBitmap> valores, RoaringBitmap base, Map<K, Integer> contagens) {
+        valores.forEach((valor, bitmap) -> contagens.put(valor, RoaringBitmap.andCardinality(bitmap, base)));
+        return contagens;
+    }
+    
+    private static Entrada entrada(Long id, Long categoriaId, Long formaPagamentoId, Leilao.Status status,
+                                   Leilao.TipoLeilao tipoLeilao, BigDecimal valorReferencia, Date dataFim) {
+        return new Entrada(BitmapUtil.posicao(id), categoriaId, formaPagamentoId, status, tipoLeilao,
+            FaixaValor.de(valorReferencia), dia(dataFim));
+    }
+    
+    /**
+     * Desativa o índice ao encontrar um leilão com ID fora do intervalo dos bitmaps.
+     */
+    private void desativar(Long leilaoId) {
+        if (!desativado) {
+            desativado = true;
+            LOGGER.warning("Índice de facetas dos leilões desativado: ID " + leilaoId
+                + " fora do intervalo dos bitmaps. A listagem passa a consultar o banco.");
+        }
+    }
+    
+    private long chaveDia(long dia) {
+        return dia < diaConsolidado ? PRAZO_ENCERRADO : dia;
+    }
+    
+    private static long hoje() {
+        return LocalDate.now(ZoneId.systemDefault()).toEpochDay();
+    }
+    
+    private static long dia(Date data) {
+        return Instant.ofEpochMilli(data.getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+}
@@ -0,0 +1,185 @@
+package service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.roaringbitmap.RoaringBitmap;
+
+import model.AreaAtuacao;
+import model.Usuario;
+import util.BitmapUtil;
+
+/**
+ * Índice invertido, em memória, das áreas de atuação para os fornecedores que atuam nelas.
+ * Cada área tem um bitmap comprimido ({@link RoaringBitmap}) dos IDs dos fornecedores, e um bitmap à parte
+ * guarda os fornecedores ativos; os destinatários de um leilão são obtidos pela união dos bitmaps
+ * das áreas do leilão, intersectada com os ativos. Comprimidos, os bitmaps ocupam memória
+ * proporcional ao número de fornecedores de cada área, e não ao maior ID de usuário.
+ * O índice é carregado de {@code usuario_areas} no primeiro uso e atualizado, após a confirmação
+ * da transação, a cada cadastro ou alteração de fornecedor.
+ * Os bitmaps só representam IDs de usuário até {@link Integer#MAX_VALUE}: ao encontrar um
+ * fornecedor com ID maior, o índice é desativado e a consulta retorna nulo, para que o chamador
+ * consulte o banco.
+ */
+@ApplicationScoped
+public class IndiceFornecedoresService {
+    
+    private static final Logger LOGGER = Logger.getLogger(IndiceFornecedoresService.class.getName());
+    
+    @Inject
+    TransacoesService transacoes;
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private final Map<Long, RoaringBitmap> fornecedoresPorArea = new HashMap<>();
+    
+    private final RoaringBitmap ativos = new RoaringBitmap();
+    
+    private volatile boolean carregado;
+    
+    // Algum fornecedor tem ID fora do intervalo dos bitmaps; o índice não é mais usado
+    private volatile boolean desativado;
+    
+    /**
+     * Fornecedores ativos que atuam em pelo menos uma das áreas informadas.
+     * 
+     * @param areaIds IDs das áreas de atuação
+     * @return Bitmap dos IDs dos fornecedores (cópia, pode ser alterada pelo chamador), ou nulo se
+     *         o índice estiver desativado
+     */
+    public RoaringBitmap fornecedores(Collection<Long> areaIds) {
+        carregar();
+        if (desativado) {
+            return null;
+        }
+        
+        lock.readLock().lock();
+        try {
+            RoaringBitmap resultado = new RoaringBitmap();
+            for (Long areaId : areaIds) {
+                RoaringBitmap area = fornecedoresPorArea.get(areaId);
+                if (area != null) {
+                    resultado.or(area);
+                }
+            }
+            resultado.and(ativos);
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Atualiza o índice com as áreas e o status atuais de um usuário, após a confirmação da
+     * transação atual. Usuários que não são fornecedores são removidos do índice.
+     * 
+     * @param usuario Usuário cadastrado ou alterado
+     */
+    public void atualizar(Usuario usuario) {
+        if (!BitmapUtil.representavel(usuario.id)) {
+            transacoes.aposConfirmar(() -> desativar(usuario.id));
+            return;
+        }
+        int id = BitmapUtil.posicao(usuario.id);
+        boolean ativo = usuario.tipoUsuario == Usuario.TipoUsuario.FORNECEDOR && usuario.status == Usuario.Status.ATIVO;
+        List<Long> areaIds = usuario.tipoUsuario == Usuario.TipoUsuario.FORNECEDOR
+            ? usuario.areasAtuacao.stream().map(a -> a.id).toList()
+            : List.of();
+        
+        transacoes.aposConfirmar(() -> {
+            lock.writeLock().lock();
+            try {
+                // Ainda não carregado: a carga do banco, no primeiro uso, já inclui a alteração.
+                // Uma carga em andamento retém o lock, e a alteração é aplicada depois dela
+                if (!carregado) {
+                    return;
+                }
+                fornecedoresPorArea.values().forEach(area -> area.remove(id));
+                for (Long areaId : areaIds) {
+                    fornecedoresPorArea.computeIfAbsent(areaId, a -> new RoaringBitmap()).add(id);
+                }
+                if (ativo) {
+                    ativos.add(id);
+                } else {
+                    ativos.remove(id);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+    
+    /**
+     * Carrega o índice do banco, se ainda não foi carregado.
+     */
+    private void carregar() {
+        if (carregado) {
+            return;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            if (carregado) {
+                return;
+            }
+            
+            QuarkusTransaction.requiringNew().run(() -> {
+                List<Object[]> linhas = AreaAtuacao.getEntityManager()
+                    .createQuery("SELECT a.id, u.id FROM Usuario u JOIN u.areasAtuacao a WHERE u.tipoUsuario = ?1",
+                        Object[].class)
+                    .setParameter(1, Usuario.TipoUsuario.FORNECEDOR)
+                    .getResultList();
+                for (Object[] linha : linhas) {
+                    if (!BitmapUtil.representavel((Long) linha[1])) {
+                        desativar((Long) linha[1]);
+                        continue;
+                    }
+                    fornecedoresPorArea.computeIfAbsent((Long) linha[0], a -> new RoaringBitmap())
+                        .add(BitmapUtil.posicao((Long) linha[1]));
+                }
+                
+                List<Long> ids = Usuario.getEntityManager()
+                    .createQuery("SELECT u.id FROM Usuario u WHERE u.tipoUsuario = ?1 AND u.status = ?2", Long.class)
+                    .setParameter(1, Usuario.TipoUsuario.FORNECEDOR)
+                    .setParameter(2, Usuario.Status.ATIVO)
+                    .getResultList();
+                for (Long id : ids) {
+                    if (!BitmapUtil.representavel(id)) {
+                        desativar(id);
+                        continue;
+                    }
+                    ativos.add(BitmapUtil.posicao(id));
+                }
+                
+                // Compacta as sequências de IDs consecutivos carregadas em lote
+                fornecedoresPorArea.values().forEach(RoaringBitmap::runOptimize);
+                ativos.runOptimize();
+                
+                LOGGER.info("Índice de fornecedores por área carregado. Áreas: " + fornecedoresPorArea.size()
+                    + ", Fornecedores ativos: " + ativos.getCardinality());
+            });
+            carregado = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Desativa o índice ao encontrar um fornecedor com ID fora do intervalo dos bitmaps.
+     */
+    private void desativar(Long usuarioId) {
+        if (!desativado) {
+            desativado = true;
+            LOGGER.warning("Índice de fornecedores por área desativado: ID " + usuarioId
+                + " fora do intervalo dos bitmaps. Os destinatários passam a ser consultados no banco.");
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import model.Convite;
+import model.Leilao;
+import util.BitmapUtil;
+
+/**
+ * Índice de visibilidade dos leilões para os fornecedores.
+ * Cada fornecedor tem um bitmap ({@link RoaringBitmap}) dos leilões para os quais foi convidado;
+ * os leilões disponíveis para ele são os abertos públicos mais a interseção dos seus convites com
+ * os abertos fechados. Os conjuntos de leilões abertos de cada tipo vêm do
+ * {@link IndiceFacetasLeiloesService}, já atualizado na publicação, no cancelamento e no
+ * encerramento. Assim a página de leilões disponíveis não consulta a tabela de convites.
+ * O índice é carregado de {@code convites} no primeiro uso e atualizado, após a confirmação da
+ * transação, a cada convite enviado.
+ * Os bitmaps só representam IDs de leilão até {@link Integer#MAX_VALUE}: ao encontrar um convite
+ * para um leilão com ID maior (ou com o índice de facetas desativado), o índice é desativado e a
+ * consulta retorna nulo, para que o chamador consulte o banco.
+ */
+@ApplicationScoped
+public class IndiceVisibilidadeLeiloesService {
+    
+    private static final Logger LOGGER = Logger.getLogger(IndiceVisibilidadeLeiloesService.class.getName());
+    
+    @Inject
+    IndiceFacetasLeiloesService indiceFacetas;
+    
+    @Inject
+    TransacoesService transacoes;
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private final Map<Long, RoaringBitmap> convitesPorFornecedor = new HashMap<>();
+    
+    private volatile boolean carregado;
+    
+    // Algum convite tem ID de leilão fora do intervalo dos bitmaps; o índice não é mais usado
+    private volatile boolean desativado;
+    
+    /**
+     * IDs dos leilões abertos disponíveis para um fornecedor: os públicos e os fechados para os
+     * quais foi convidado.
+     * 
+     * @param fornecedorId ID do fornecedor
+     * @return IDs dos leilões, em ordem decrescente (mais recentes primeiro), ou nulo se o índice
+     *         estiver desativado
+     */
+    public List<Long> disponiveis(Long fornecedorId) {
+        carregar();
+        if (desativado) {
+            return null;
+        }
+        
+        RoaringBitmap disponiveis = indiceFacetas.abertos(Leilao.TipoLeilao.ABERTO);
+        RoaringBitmap fechados = indiceFacetas.abertos(Leilao.TipoLeilao.FECHADO);
+        if (disponiveis == null || fechados == null) {
+            return null;
+        }
+        
+        lock.readLock().lock();
+        try {
+            RoaringBitmap convites = convitesPorFornecedor.get(fornecedorId);
+            if (convites != null) {
+                fechados.and(convites);
+                disponiveis.or(fechados);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        
+        List<Long> ids = new ArrayList<>(disponiveis.getCardinality());
+        IntIterator iterador = disponiveis.getReverseIntIterator();
+        while (iterador.hasNext()) {
+            ids.add((long) iterador.next());
+        }
+        return ids;
+    }
+    
+    /**
+     * Registra um convite no índice, após a confirmação da transação atual.
+     * 
+     * @param convite Convite enviado
+     */
+    void registrarConvite(Convite convite) {
+        if (!BitmapUtil.representavel(convite.leilao.id)) {
+            transacoes.aposConfirmar(() -> desativar(convite.leilao.id));
+            return;
+        }
+        int leilaoId = BitmapUtil.posicao(convite.leilao.id);
+        Long fornecedorId = convite.fornecedor.id;
+        
+        transacoes.aposConfirmar(() -> {
+            lock.writeLock().lock();
+            try {
+                // Ainda não carregado: a carga do banco, no primeiro uso, já inclui o convite
+                if (!carregado) {
+                    return;
+                }
+                convitesPorFornecedor.computeIfAbsent(fornecedorId, f -> new RoaringBitmap()).add(leilaoId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+    
+    /**
+     * Carrega o índice do banco, se ainda não foi carregado.
+     */
+    private void carregar() {
+        if (carregado) {
+            return;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            if (carregado) {
+                return;
+            }
+            
+            QuarkusTransaction.requiringNew().run(() -> {
+                Convite.getEntityManager()
+                    .createQuery("SELECT c.fornecedor.id, c.leilao.id FROM Convite c", Object[].class)
+                    .getResultStream()
+                    .forEach(linha -> {
+                        if (!BitmapUtil.representavel((Long) linha[1])) {
+                            desativar((Long) linha[1]);
+                            return;
+                        }
+                        convitesPorFornecedor.computeIfAbsent((Long) linha[0], f -> new RoaringBitmap())
+                            .add(BitmapUtil.posicao((Long) linha[1]));
+                    });
+                
+                LOGGER.info("Índice de visibilidade dos leilões carregado. Fornecedores convidados: "
+                    + convitesPorFornecedor.size());
+            });
+            carregado = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Desativa o índice ao encontrar um leilão com ID fora do intervalo dos bitmaps.
+     */
+    private void desativar(Long leilaoId) {
+        if (!desativado) {
+            desativado = true;
+            LOGGER.warning("Índice de visibilidade dos leilões desativado: ID " + leilaoId
+                + " fora do intervalo dos bitmaps. Os leilões disponíveis passam a ser consultados no banco.");
+        }
+    }
+}
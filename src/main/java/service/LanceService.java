@@ -2,9 +2,12 @@ package service;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
@@ -12,6 +15,7 @@ import jakarta.transaction.Transactional;
 import model.Lance;
 import model.Leilao;
 import model.Usuario;
+import dto.RankingLancesDTO;
 import exception.BusinessException;
 import util.ExceptionUtil;
 
@@ -24,12 +28,37 @@ public class LanceService {
     
     private static final Logger LOGGER = Logger.getLogger(LanceService.class.getName());
     
+    // Posição de cada lance: lances válidos com valor menor (os válidos até o valor, menos os
+    // válidos com o mesmo valor), mais um
+    private static final String SQL_POSICOES =
+        "SELECT id, COUNT(*) FILTER (WHERE status <> 'CANCELADO') OVER (ORDER BY valor)"
+        + " - COUNT(*) FILTER (WHERE status <> 'CANCELADO') OVER (PARTITION BY valor) + 1"
+        + " FROM lances WHERE leilao_id = :leilao";
+    
+    private static final String SQL_TOTAIS =
+        "SELECT COUNT(*), COUNT(DISTINCT fornecedor_id) FROM lances WHERE leilao_id = :leilao AND status <> 'CANCELADO'";
+    
     @Inject
     NotificacaoService notificacaoService;
     
     @Inject
     LeilaoService leilaoService;
     
+    @Inject
+    LivroOfertasService livroOfertasService;
+    
+    @Inject
+    SequenciadorLances sequenciador;
+    
+    @Inject
+    GravadorLotesLances gravadorLotes;
+    
+    @Inject
+    AvisosLanceSuperadoService avisosLanceSuperado;
+    
+    @Inject
+    ParticipacaoLeiloesService participacoes;
+    
     /**
      * Busca um lance pelo ID.
      * 
@@ -97,13 +126,55 @@ public class LanceService {
      */
     public Lance buscarMenorLance(Leilao leilao) {
         try {
-            return Lance.find("leilao = ?1 ORDER BY valor ASC", leilao).firstResult();
+            // Leilões abertos são respondidos pelo livro de ofertas em memória
+            LivroOfertas livro = livroOfertasService.obter(leilao);
+            if (livro != null) {
+                LivroOfertas.Oferta melhor = livro.melhorOferta();
+                return melhor != null ? Lance.findById(melhor.lanceId()) : null;
+            }
+            
+            return Lance.find("leilao = ?1 AND cancelado = false AND status <> ?2 ORDER BY valor ASC, dataCriacao ASC",
+                leilao, Lance.Status.CANCELADO).firstResult();
         } catch (Exception e) {
             ExceptionUtil.handleException(e, "Erro ao buscar menor lance do leilão " + leilao.id);
             return null;
         }
     }
     
+    /**
+     * Calcula o ranking dos lances de um leilão para exibição, uma única vez por página.
+     * Leilões abertos são respondidos pelo livro de ofertas; nos demais, as posições e os totais
+     * são calculados no banco, sem percorrer a lista de lances.
+     * 
+     * @param leilao Leilão
+     * @param lances Lances exibidos na página
+     * @return Ranking dos lances
+     */
+    @SuppressWarnings("unchecked")
+    public RankingLancesDTO ranking(Leilao leilao, List<Lance> lances) {
+        Map<Long, Integer> posicoes = new HashMap<>();
+        
+        LivroOfertas livro = livroOfertasService.obter(leilao);
+        if (livro != null) {
+            for (Lance lance : lances) {
+                posicoes.put(lance.id, livro.posicaoValor(lance.valor));
+            }
+            return new RankingLancesDTO(posicoes, livro.totalOfertas(), livro.totalFornecedores());
+        }
+        
+        List<Object[]> linhas = Lance.getEntityManager().createNativeQuery(SQL_POSICOES)
+            .setParameter("leilao", leilao.id)
+            .getResultList();
+        for (Object[] linha : linhas) {
+            posicoes.put(((Number) linha[0]).longValue(), ((Number) linha[1]).intValue());
+        }
+        
+        Object[] totais = (Object[]) Lance.getEntityManager().createNativeQuery(SQL_TOTAIS)
+            .setParameter("leilao", leilao.id)
+            .getSingleResult();
+        return new RankingLancesDTO(posicoes, ((Number) totais[0]).intValue(), ((Number) totais[1]).intValue());
+    }
+    
     /**
      * Verifica se um fornecedor já deu lance em um leilão.
      * 
@@ -113,7 +184,7 @@ public class LanceService {
      */
     public boolean jaTemLance(Usuario fornecedor, Leilao leilao) {
         try {
-            return Lance.count("leilao = ?1 AND fornecedor = ?2", leilao, fornecedor) > 0;
+            return participacoes.temLance(leilao.id, fornecedor.id);
         } catch (Exception e) {
             ExceptionUtil.handleException(e, "Erro ao verificar se fornecedor já tem lance");
             return false;
@@ -122,6 +193,8 @@ public class LanceService {
     
     /**
      * Cria um novo lance em um leilão.
+     * Deve ser chamado fora de transação: o lance é gravado pelo gravador em lote, na transação do
+     * lote, e o método só retorna depois que ele está confirmado.
      * 
      * @param leilao Leilão
      * @param fornecedor Usuário fornecedor
@@ -131,7 +204,6 @@ public class LanceService {
      * @param prazoPagamento Prazo de pagamento
      * @return Lance criado
      */
-    @Transactional
     public Lance criarLance(Leilao leilao, Usuario fornecedor, BigDecimal valor,
                           String condicoesEntrega, Integer prazoEntrega, Integer prazoPagamento) {
         try {
@@ -157,6 +229,17 @@ public class LanceService {
                 throw new BusinessException("O valor do lance não pode ser maior que o valor de referência");
             }
             
+            LivroOfertas livro = livroOfertasService.obter(leilao);
+            if (livro == null) {
+                throw new BusinessException("Este leilão não está aberto para lances");
+            }
+            
+            // Pré-verificação da melhor oferta, evitando enfileirar lances que certamente serão recusados
+            BigDecimal melhorAtual = livro.valorMelhorOferta();
+            if (melhorAtual != null && valor.compareTo(melhorAtual) >= 0) {
+                throw new BusinessException("Seu lance deve ser menor que o lance atual de " + melhorAtual);
+            }
+            
             // Criar lance
             Lance lance = new Lance();
             lance.leilao = leilao;
@@ -167,13 +250,12 @@ public class LanceService {
             lance.prazoPagamento = prazoPagamento;
             lance.dataCriacao = new Date();
             
-            lance.persist();
-            
-            // Verificar se é o menor lance (melhor oferta)
-            atualizarMelhorOferta(leilao);
+            // Verificação definitiva e gravação em lote; retorna só depois que o lance está gravado
+            gravadorLotes.gravar(lance, livro);
+            participacoes.registrarLance(lance);
             
             // Notificar o comprador
-            notificarNovoLance(lance);
+            QuarkusTransaction.requiringNew().run(() -> notificarNovoLance(lance));
             
             LOGGER.info("Lance criado com sucesso. ID: " + lance.id + ", Leilão: " + leilao.id + ", Fornecedor: " + fornecedor.id);
             return lance;
@@ -234,8 +316,24 @@ public class LanceService {
             
             lance.persist();
             
-            // Verificar se é o menor lance (melhor oferta)
-            atualizarMelhorOferta(lance.leilao);
+            LivroOfertas livro = livroOfertasService.obter(lance.leilao);
+            if (livro != null) {
+                LivroOfertas.Oferta oferta = LivroOfertas.Oferta.de(lance);
+                LivroOfertas.Oferta anterior = sequenciador.executar(lance.leilao.id, () -> {
+                    long agora = System.currentTimeMillis();
+                    if (!livro.isAbertoEm(agora)) {
+                        throw new BusinessException("O leilão não está mais aberto para lances");
+                    }
+                    LivroOfertas.Oferta atual = livro.ofertaDoLance(oferta.lanceId());
+                    livro.registrar(oferta);
+                    livroOfertasService.prorrogar(livro, agora);
+                    return atual;
+                });
+                livroOfertasService.aoFinalizarTransacao(livro, () -> restaurar(livro, oferta.lanceId(), anterior));
+            } else {
+                // Verificar se é o menor lance (melhor oferta)
+                atualizarMelhorOferta(lance.leilao);
+            }
             
             // Notificar o comprador
             notificarAtualizacaoLance(lance);
@@ -279,13 +377,26 @@ public class LanceService {
             
             // Cancelar lance
             lance.cancelado = true;
+            lance.status = Lance.Status.CANCELADO;
             lance.motivoCancelamento = motivo;
             lance.dataCancelamento = new Date();
             
             lance.persist();
-            
-            // Verificar se era o menor lance e atualizar
-            atualizarMelhorOferta(lance.leilao);
+            participacoes.registrarCancelamento(lance);
+            
+            LivroOfertas livro = livroOfertasService.obter(lance.leilao);
+            if (livro != null) {
+                Long id = lance.id;
+                LivroOfertas.Oferta anterior = sequenciador.executar(lance.leilao.id, () -> {
+                    LivroOfertas.Oferta atual = livro.ofertaDoLance(id);
+                    livro.remover(id);
+                    return atual;
+                });
+                livroOfertasService.aoFinalizarTransacao(livro, () -> restaurar(livro, id, anterior));
+            } else {
+                // Verificar se era o menor lance e atualizar
+                atualizarMelhorOferta(lance.leilao);
+            }
             
             // Notificar cancelamento
             notificarCancelamentoLance(lance, usuario);
@@ -301,7 +412,9 @@ public class LanceService {
     }
     
     /**
-     * Atualiza a melhor oferta de um leilão.
+     * Atualiza a melhor oferta de um leilão a partir do banco.
+     * Usado apenas quando o leilão não tem livro de ofertas em memória; caso contrário a
+     * melhor oferta é gravada pelo {@link LivroOfertasService} após a confirmação do lance.
      * 
      * @param leilao Leilão
      */
@@ -310,14 +423,15 @@ public class LanceService {
             // Buscar o menor valor de lance não cancelado
             Lance menorLance = Lance.find(
                 "leilao = ?1 AND cancelado = false ORDER BY valor ASC", leilao).firstResult();
+            BigDecimal melhorOferta = menorLance != null ? menorLance.valor : null;
             
-            if (menorLance != null) {
-                // Atualizar referência no leilão
-                leilao.melhorOferta = menorLance.valor;
-                leilao.persist();
-            } else {
-                // Não há lances válidos
-                leilao.melhorOferta = null;
+            // Só regrava o leilão quando a melhor oferta realmente mudou
+            boolean alterada = melhorOferta == null
+                ? leilao.melhorOferta != null
+                : leilao.melhorOferta == null || melhorOferta.compareTo(leilao.melhorOferta) != 0;
+            
+            if (alterada) {
+                leilao.melhorOferta = melhorOferta;
                 leilao.persist();
             }
         } catch (Exception e) {
@@ -325,6 +439,21 @@ public class LanceService {
         }
     }
     
+    /**
+     * Restaura no livro a oferta que um lance tinha antes de uma alteração revertida.
+     * 
+     * @param livro Livro de ofertas
+     * @param lanceId ID do lance
+     * @param anterior Oferta anterior do lance ou null se ele não estava no livro
+     */
+    private void restaurar(LivroOfertas livro, Long lanceId, LivroOfertas.Oferta anterior) {
+        if (anterior != null) {
+            livro.registrar(anterior);
+        } else {
+            livro.remover(lanceId);
+        }
+    }
+    
     /**
      * Notifica os participantes sobre um novo lance.
      * 
@@ -341,20 +470,8 @@ public class LanceService {
                 "/leiloes/" + lance.leilao.id
             );
             
-            // Notificar outros fornecedores com lance maior
-            List<Lance> lancesSuperiores = Lance.find(
-                "leilao = ?1 AND fornecedor != ?2 AND valor > ?3 AND cancelado = false",
-                lance.leilao, lance.fornecedor, lance.valor).list();
-            
-            for (Lance lanceAnterior : lancesSuperiores) {
-                notificacaoService.criarNotificacao(
-                    lanceAnterior.fornecedor,
-                    "Seu lance foi superado",
-                    "Um novo lance de R$ " + String.format("%.2f", lance.valor) + 
-                    " foi registrado no leilão " + lance.leilao.titulo,
-                    "/leiloes/" + lance.leilao.id
-                );
-            }
+            // Avisar os fornecedores superados (avisos agrupados por fornecedor e leilão)
+            avisosLanceSuperado.registrar(lance);
         } catch (Exception e) {
             LOGGER.severe("Erro ao notificar sobre novo lance: " + e.getMessage());
         }
@@ -376,20 +493,8 @@ public class LanceService {
                 "/leiloes/" + lance.leilao.id
             );
             
-            // Notificar outros fornecedores com lance maior
-            List<Lance> lancesSuperiores = Lance.find(
-                "leilao = ?1 AND fornecedor != ?2 AND valor > ?3 AND cancelado = false",
-                lance.leilao, lance.fornecedor, lance.valor).list();
-            
-            for (Lance lanceAnterior : lancesSuperiores) {
-                notificacaoService.criarNotificacao(
-                    lanceAnterior.fornecedor,
-                    "Seu lance foi superado",
-                    "Um lance foi atualizado para R$ " + String.format("%.2f", lance.valor) + 
-                    " no leilão " + lance.leilao.titulo,
-                    "/leiloes/" + lance.leilao.id
-                );
-            }
+            // Avisar os fornecedores superados (avisos agrupados por fornecedor e leilão)
+            avisosLanceSuperado.registrar(lance);
         } catch (Exception e) {
             LOGGER.severe("Erro ao notificar sobre atualização de lance: " + e.getMessage());
         }
@@ -0,0 +1,406 @@
+package service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+
+import exception.BusinessException;
+import model.LanceAutomatico;
+import model.Leilao;
+import model.Usuario;
+import util.ExceptionUtil;
+
+/**
+ * Serviço de lances automáticos (proxy).
+ * Quando o livro de ofertas de um leilão muda, o motor resolve em memória toda a sequência de
+ * contra-lances entre os lances automáticos ativos e grava apenas os lances finais: no máximo
+ * o último lance do segundo colocado e o lance que deixa o vencedor à frente.
+ */
+@ApplicationScoped
+public class LancesAutomaticosService {
+    
+    private static final Logger LOGGER = Logger.getLogger(LancesAutomaticosService.class.getName());
+    
+    @Inject
+    LanceService lanceService;
+    
+    @Inject
+    LeilaoService leilaoService;
+    
+    @Inject
+    LivroOfertasService livroOfertasService;
+    
+    @Inject
+    SequenciadorLances sequenciador;
+    
+    @Inject
+    TransacoesService transacoes;
+    
+    /**
+     * Regra de lance automático ativa, mantida em memória.
+     */
+    record Regra(Long id, Long fornecedorId, BigDecimal valorMinimo, BigDecimal decremento) {
+        
+        static Regra de(LanceAutomatico lanceAutomatico) {
+            return new Regra(lanceAutomatico.id, lanceAutomatico.fornecedor.id,
+                lanceAutomatico.valorMinimo, lanceAutomatico.decremento);
+        }
+    }
+    
+    /**
+     * Lance resultante da resolução dos lances automáticos.
+     */
+    record LanceCalculado(Long regraId, Long fornecedorId, BigDecimal valor) {
+    }
+    
+    /**
+     * Regras ativas de um leilão e o seu valor de referência, teto do lance de abertura.
+     */
+    record Disputa(BigDecimal valorReferencia, List<Regra> regras) {
+    }
+    
+    // Regras ativas por leilão, carregadas sob demanda
+    private final Map<Long, Disputa> regras = new ConcurrentHashMap<>();
+    
+    // Leilões com resolução pendente
+    private final Set<Long> pendentes = ConcurrentHashMap.newKeySet();
+    
+    private final ExecutorService motor = Executors.newSingleThreadExecutor(tarefa -> {
+        Thread thread = new Thread(tarefa, "motor-lances-automaticos");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @PreDestroy
+    void encerrarMotor() {
+        motor.shutdown();
+    }
+    
+    /**
+     * Registra (ou substitui) o lance automático de um fornecedor em um leilão.
+     * 
+     * @param leilao Leilão
+     * @param fornecedor Usuário fornecedor
+     * @param valorMinimo Menor valor que o fornecedor aceita ofertar
+     * @param decremento Redução aplicada a cada contra-lance
+     * @param condicoesEntrega Condições de entrega dos lances automáticos
+     * @param prazoEntrega Prazo de entrega dos lances automáticos
+     * @param prazoPagamento Prazo de pagamento dos lances automáticos
+     * @return Lance automático registrado
+     */
+    @Transactional
+    public LanceAutomatico registrar(Leilao leilao, Usuario fornecedor, BigDecimal valorMinimo, BigDecimal decremento,
+                                     String condicoesEntrega, Integer prazoEntrega, Integer prazoPagamento) {
+        try {
+            if (!leilaoService.podeParticipar(fornecedor, leilao)) {
+                throw new BusinessException("Você não tem permissão para participar deste leilão");
+            }
+            
+            if (valorMinimo == null || valorMinimo.compareTo(BigDecimal.ZERO) <= 0) {
+                throw new BusinessException("O valor mínimo deve ser maior que zero");
+            }
+            
+            if (decremento == null || decremento.compareTo(BigDecimal.ZERO) <= 0) {
+                throw new BusinessException("O decremento deve ser maior que zero");
+            }
+            
+            if (leilao.valorReferencia != null && valorMinimo.compareTo(leilao.valorReferencia) > 0) {
+                throw new BusinessException("O valor mínimo não pode ser maior que o valor de referência");
+            }
+            
+            // Substitui o lance automático anterior do fornecedor, se houver
+            LanceAutomatico anterior = LanceAutomatico.buscarAtivo(leilao, fornecedor);
+            if (anterior != null) {
+                anterior.ativo = false;
+                anterior.dataAtualizacao = new Date();
+                anterior.persist();
+            }
+            
+            LanceAutomatico lanceAutomatico = new LanceAutomatico();
+            lanceAutomatico.leilao = leilao;
+            lanceAutomatico.fornecedor = fornecedor;
+            lanceAutomatico.valorMinimo = valorMinimo;
+            lanceAutomatico.decremento = decremento;
+            lanceAutomatico.condicoesEntrega = condicoesEntrega;
+            lanceAutomatico.prazoEntrega = prazoEntrega;
+            lanceAutomatico.prazoPagamento = prazoPagamento;
+            lanceAutomatico.persist();
+            
+            // Garante o livro carregado para a resolução após a confirmação
+            livroOfertasService.obter(leilao);
+            resolverAposConfirmar(leilao.id);
+            
+            LOGGER.info("Lance automático registrado. Leilão: " + leilao.id + ", Fornecedor: " + fornecedor.id);
+            return lanceAutomatico;
+        } catch (BusinessException be) {
+            throw be;
+        } catch (Exception e) {
+            String mensagemErro = ExceptionUtil.handleException(e, "Erro ao registrar lance automático");
+            throw new BusinessException(mensagemErro, e);
+        }
+    }
+    
+    /**
+     * Desativa o lance automático de um fornecedor em um leilão.
+     * 
+     * @param leilao Leilão
+     * @param fornecedor Usuário fornecedor
+     * @return true se havia um lance automático ativo
+     */
+    @Transactional
+    public boolean cancelar(Leilao leilao, Usuario fornecedor) {
+        LanceAutomatico lanceAutomatico = LanceAutomatico.buscarAtivo(leilao, fornecedor);
+        if (lanceAutomatico == null) {
+            return false;
+        }
+        
+        lanceAutomatico.ativo = false;
+        lanceAutomatico.dataAtualizacao = new Date();
+        lanceAutomatico.persist();
+        
+        resolverAposConfirmar(leilao.id);
+        return true;
+    }
+    
+    /**
+     * Busca o lance automático ativo de um fornecedor em um leilão.
+     * 
+     * @param leilao Leilão
+     * @param fornecedor Usuário fornecedor
+     * @return Lance automático ou null se não houver
+     */
+    public LanceAutomatico buscarAtivo(Leilao leilao, Usuario fornecedor) {
+        return LanceAutomatico.buscarAtivo(leilao, fornecedor);
+    }
+    
+    /**
+     * Agenda a resolução dos lances automáticos de um leilão.
+     * Pedidos feitos enquanto a resolução está pendente são agrupados em uma só.
+     * 
+     * @param leilaoId ID do leilão
+     */
+    void agendar(Long leilaoId) {
+        if (pendentes.add(leilaoId)) {
+            motor.execute(() -> resolver(leilaoId));
+        }
+    }
+    
+    /**
+     * Descarta as regras em memória de um leilão encerrado.
+     * 
+     * @param leilaoId ID do leilão
+     */
+    void encerrar(Long leilaoId) {
+        regras.remove(leilaoId);
+    }
+    
+    /**
+     * Recarrega as regras e agenda a resolução do leilão após a confirmação da transação atual.
+     */
+    private void resolverAposConfirmar(Long leilaoId) {
+        transacoes.aposConfirmar(() -> {
+            regras.remove(leilaoId);
+            agendar(leilaoId);
+        });
+    }
+    
+    /**
+     * Resolve os lances automáticos de um leilão e grava os lances resultantes.
+     * 
+     * @param leilaoId ID do leilão
+     */
+    private void resolver(Long leilaoId) {
+        pendentes.remove(leilaoId);
+        
+        try {
+            LivroOfertas livro = livroOfertasService.obterCarregado(leilaoId);
+            if (livro == null) {
+                return;
+            }
+            
+            Disputa disputa = regras.get(leilaoId);
+            if (disputa == null) {
+                disputa = QuarkusTransaction.requiringNew().call(() -> {
+                    Leilao leilao = Leilao.findById(leilaoId);
+                    return new Disputa(leilao != null ? leilao.valorReferencia : null,
+                        LanceAutomatico.listarAtivosPorLeilao(leilaoId).stream().map(Regra::de).toList());
+                });
+                regras.put(leilaoId, disputa);
+            }
+            if (disputa.regras().isEmpty()) {
+                return;
+            }
+            
+            Disputa ativa = disputa;
+            List<LanceCalculado> lances = sequenciador.executar(leilaoId, () ->
+                calcular(livro.melhorOferta(), ativa.valorReferencia(), ativa.regras()));
+            
+            // Uma recusa indica que o livro mudou; a nova alteração agenda outra resolução
+            for (LanceCalculado lance : lances) {
+                if (!darLance(leilaoId, lance)) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.severe("Erro ao resolver lances automáticos do leilão " + leilaoId + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Calcula o resultado final da disputa entre os lances automáticos, sem simular cada contra-lance.
+     * Participam o líder atual e os fornecedores cujo valor mínimo fica abaixo da melhor oferta.
+     * Vence quem tem o menor limite; o segundo colocado vai até o seu valor mínimo e o vencedor
+     * fica um decremento abaixo dele (sem passar do próprio valor mínimo).
+     * Sem ofertas no leilão, os lances automáticos abrem a disputa: o valor de referência faz o papel
+     * da melhor oferta, e um lance automático sozinho abre no próprio valor de referência.
+     * 
+     * @param melhor Melhor oferta atual do leilão, ou null se ainda não houver lances
+     * @param valorReferencia Valor de referência do leilão (teto dos lances), ou null se não houver
+     * @param regras Regras de lance automático ativas
+     * @return Lances a gravar, em ordem
+     */
+    static List<LanceCalculado> calcular(LivroOfertas.Oferta melhor, BigDecimal valorReferencia, List<Regra> regras) {
+        if (regras.isEmpty()) {
+            return List.of();
+        }
+        if (melhor == null) {
+            return abrir(valorReferencia, regras);
+        }
+        
+        BigDecimal atual = melhor.valor();
+        
+        // Participante da disputa: o limite é o menor valor que ele pode alcançar
+        record Participante(Regra regra, BigDecimal limite, boolean lider) {
+        }
+        
+        List<Participante> participantes = new ArrayList<>();
+        Regra regraLider = null;
+        for (Regra regra : regras) {
+            if (regra.fornecedorId().equals(melhor.fornecedorId())) {
+                regraLider = regra;
+            } else if (regra.valorMinimo().compareTo(atual) < 0) {
+                participantes.add(new Participante(regra, regra.valorMinimo(), false));
+            }
+        }
+        
+        if (participantes.isEmpty()) {
+            return List.of();
+        }
+        
+        BigDecimal limiteLider = regraLider != null ? regraLider.valorMinimo().min(atual) : atual;
+        participantes.add(new Participante(regraLider, limiteLider, true));
+        
+        // Menor limite primeiro; no empate, o líder atual e depois o lance automático mais antigo
+        participantes.sort(Comparator.comparing(Participante::limite)
+            .thenComparing(p -> !p.lider())
+            .thenComparing(p -> p.regra() != null ? p.regra().id() : Long.MAX_VALUE));
+        
+        Participante vencedor = participantes.get(0);
+        Participante segundo = participantes.get(1);
+        List<LanceCalculado> lances = new ArrayList<>(2);
+        
+        if (segundo.limite().compareTo(vencedor.limite()) > 0) {
+            // O segundo colocado vai até o seu limite, se for um lance automático abaixo da oferta atual
+            if (segundo.regra() != null && segundo.limite().compareTo(atual) < 0) {
+                lances.add(new LanceCalculado(segundo.regra().id(), segundo.regra().fornecedorId(), segundo.limite()));
+            }
+            
+            BigDecimal valor = segundo.limite().subtract(vencedor.regra().decremento()).max(vencedor.limite());
+            lances.add(new LanceCalculado(vencedor.regra().id(), vencedor.regra().fornecedorId(), valor));
+        } else if (vencedor.regra() != null && vencedor.limite().compareTo(atual) < 0) {
+            // Empate nos limites: fica com quem chegar primeiro ao valor
+            lances.add(new LanceCalculado(vencedor.regra().id(), vencedor.regra().fornecedorId(), vencedor.limite()));
+        }
+        
+        return lances;
+    }
+    
+    /**
+     * Calcula os lances de abertura de um leilão sem ofertas. Participam os lances automáticos cujo
+     * valor mínimo não passa do valor de referência; sem valor de referência, um lance automático
+     * sozinho não tem valor de abertura e aguarda o primeiro lance.
+     */
+    private static List<LanceCalculado> abrir(BigDecimal valorReferencia, List<Regra> regras) {
+        List<Regra> participantes = new ArrayList<>();
+        for (Regra regra : regras) {
+            if (valorReferencia == null || regra.valorMinimo().compareTo(valorReferencia) <= 0) {
+                participantes.add(regra);
+            }
+        }
+        
+        // Menor valor mínimo primeiro; no empate, o lance automático mais antigo
+        participantes.sort(Comparator.comparing(Regra::valorMinimo).thenComparing(Regra::id));
+        
+        if (participantes.isEmpty()) {
+            return List.of();
+        }
+        
+        Regra vencedor = participantes.get(0);
+        if (participantes.size() == 1) {
+            return valorReferencia == null ? List.of()
+                : List.of(new LanceCalculado(vencedor.id(), vencedor.fornecedorId(), valorReferencia));
+        }
+        
+        Regra segundo = participantes.get(1);
+        if (segundo.valorMinimo().compareTo(vencedor.valorMinimo()) == 0) {
+            // Empate nos limites: fica com quem chegar primeiro ao valor
+            return List.of(new LanceCalculado(vencedor.id(), vencedor.fornecedorId(), vencedor.valorMinimo()));
+        }
+        
+        BigDecimal valor = segundo.valorMinimo().subtract(vencedor.decremento()).max(vencedor.valorMinimo());
+        return List.of(
+            new LanceCalculado(segundo.id(), segundo.fornecedorId(), segundo.valorMinimo()),
+            new LanceCalculado(vencedor.id(), vencedor.fornecedorId(), valor));
+    }
+    
+    /**
+     * Grava um lance calculado pelo motor, com as mesmas validações de um lance manual.
+     * O lance é enviado fora de transação, como um lance manual: o gravador em lote o grava na sua
+     * própria transação, e uma transação aberta aqui ficaria presa enquanto o lote é gravado.
+     * 
+     * @param leilaoId ID do leilão
+     * @param calculado Lance calculado
+     * @return true se o lance foi aceito
+     */
+    private boolean darLance(Long leilaoId, LanceCalculado calculado) {
+        // A thread do motor não tem contexto de requisição, necessário às consultas fora de transação
+        ManagedContext contexto = Arc.container().requestContext();
+        contexto.activate();
+        try {
+            Leilao leilao = Leilao.findById(leilaoId);
+            Usuario fornecedor = Usuario.findById(calculado.fornecedorId());
+            LanceAutomatico regra = LanceAutomatico.findById(calculado.regraId());
+            
+            lanceService.criarLance(leilao, fornecedor, calculado.valor(),
+                regra.condicoesEntrega, regra.prazoEntrega, regra.prazoPagamento);
+            
+            LOGGER.info("Lance automático gravado. Leilão: " + leilaoId + ", Fornecedor: " + calculado.fornecedorId()
+                + ", Valor: " + calculado.valor());
+            return true;
+        } catch (BusinessException e) {
+            LOGGER.info("Lance automático recusado. Leilão: " + leilaoId + ", Motivo: " + e.getMessage());
+            return false;
+        } catch (Exception e) {
+            LOGGER.severe("Erro ao gravar lance automático: " + e.getMessage());
+            return false;
+        } finally {
+            contexto.terminate();
+        }
+    }
+}
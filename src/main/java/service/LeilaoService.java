@@ -1,23 +1,34 @@
 package service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.logging.Logger;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
 import jakarta.transaction.Transactional;
 
 import model.Leilao;
 import model.Usuario;
 import model.Convite;
+import model.EventoCaixaSaida;
 import model.Lance;
 import model.FormaPagamento;
+import dto.FacetasLeiloesDTO;
 import dto.PaginatedResponse;
 import exception.BusinessException;
 import util.ExceptionUtil;
+import util.PageCursor;
 import io.quarkus.panache.common.Page;
+import io.quarkus.panache.common.Sort;
 
 /**
  * Serviço responsável por gerenciar as operações relacionadas aos leilões.
@@ -28,12 +39,42 @@ public class LeilaoService {
     
     private static final Logger LOGGER = Logger.getLogger(LeilaoService.class.getName());
     
+    // Palavras consideradas na busca textual
+    private static final int MAXIMO_TERMOS_BUSCA = 8;
+    
     @Inject
     NotificacaoService notificacaoService;
     
     @Inject
     AutenticacaoService autenticacaoService;
     
+    @Inject
+    LivroOfertasService livroOfertasService;
+    
+    @Inject
+    AgendadorLeiloesService agendadorLeiloes;
+    
+    @Inject
+    FinalizacaoLeiloesService finalizacaoService;
+    
+    @Inject
+    CaixaSaidaService caixaSaidaService;
+    
+    @Inject
+    IndiceFacetasLeiloesService indiceFacetas;
+    
+    @Inject
+    IndiceVisibilidadeLeiloesService indiceVisibilidade;
+    
+    @Inject
+    ParticipacaoLeiloesService participacoes;
+    
+    @Inject
+    LanceService lanceService;
+    
+    @Inject
+    PaginationService paginationService;
+    
     /**
      * Busca um leilão pelo ID.
      * 
@@ -45,10 +86,11 @@ public class LeilaoService {
     }
     
     /**
-     * Lista todos os leilões disponíveis para um fornecedor.
+     * Lista todos os leilões disponíveis para um fornecedor (abertos públicos e abertos fechados
+     * para os quais foi convidado), pelo índice de visibilidade.
      * 
      * @param fornecedor Usuário fornecedor
-     * @return Lista de leilões disponíveis
+     * @return Lista de leilões disponíveis, dos mais recentes para os mais antigos
      */
     public List<Leilao> listarDisponiveisPara(Usuario fornecedor) {
         try {
@@ -56,13 +98,116 @@ public class LeilaoService {
                 return List.of();
             }
             
-            return Leilao.listarLeiloesPorFornecedor(fornecedor);
+            List<Long> ids = indiceVisibilidade.disponiveis(fornecedor.id);
+            if (ids == null) {
+                // Índice desativado (IDs fora do intervalo dos bitmaps): consulta o banco
+                return Leilao.listarLeiloesPorFornecedor(fornecedor);
+            }
+            return listarPorIds(ids);
         } catch (Exception e) {
             ExceptionUtil.handleException(e, "Erro ao listar leilões disponíveis");
             return List.of();
         }
     }
     
+    /**
+     * Busca textual nos leilões disponíveis para um fornecedor, por título, descrição e
+     * especificações técnicas, em ordem de relevância (o título pesa mais que a descrição, que pesa
+     * mais que as especificações). Cada termo casa também como prefixo ("comp" encontra
+     * "computador"). Usa a coluna {@code busca} (tsvector) e o seu índice GIN sobre os leilões abertos.
+     * 
+     * @param fornecedor Usuário fornecedor
+     * @param termos Texto da busca
+     * @param limite Número máximo de leilões
+     * @return Leilões encontrados, do mais relevante para o menos relevante
+     */
+    @SuppressWarnings("unchecked")
+    public List<Leilao> buscarDisponiveisPara(Usuario fornecedor, String termos, int limite) {
+        try {
+            if (fornecedor.tipoUsuario != Usuario.TipoUsuario.FORNECEDOR) {
+                return List.of();
+            }
+            
+            String consulta = consultaPrefixos(termos);
+            if (consulta.isEmpty()) {
+                return listarDisponiveisPara(fornecedor);
+            }
+            
+            // O status é literal para que o planejador use o índice parcial dos leilões abertos
+            List<Number> ids = Leilao.getEntityManager().createNativeQuery(
+                    "SELECT l.id FROM leiloes l, to_tsquery('portuguese', :consulta) q "
+                    + "WHERE l.busca @@ q AND l.status = 'ABERTO' AND (l.tipo_leilao = 'ABERTO' "
+                    + "OR EXISTS (SELECT 1 FROM convites c WHERE c.leilao_id = l.id AND c.fornecedor_id = :fornecedor)) "
+                    + "ORDER BY ts_rank_cd(l.busca, q) DESC, l.id DESC LIMIT :limite")
+                .setParameter("consulta", consulta)
+                .setParameter("fornecedor", fornecedor.id)
+                .setParameter("limite", limite)
+                .getResultList();
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            
+            return listarPorIds(ids.stream().map(Number::longValue).toList());
+        } catch (Exception e) {
+            ExceptionUtil.handleException(e, "Erro ao buscar leilões disponíveis");
+            return List.of();
+        }
+    }
+    
+    /**
+     * Página dos leilões abertos, dos mais recentes para os mais antigos, consultada no banco e
+     * sem as contagens das facetas. Usada quando o índice de facetas está desativado.
+     * 
+     * @param pagina Número da página (começa em 1)
+     * @param tamanho Tamanho da página
+     * @return IDs da página e total de leilões abertos, com as contagens vazias
+     */
+    public FacetasLeiloesDTO listarAbertosSemFacetas(int pagina, int tamanho) {
+        List<Long> ids = Leilao.getEntityManager()
+            .createQuery("SELECT l.id FROM Leilao l WHERE l.status = ?1 ORDER BY l.id DESC", Long.class)
+            .setParameter(1, Leilao.Status.ABERTO)
+            .setFirstResult((Math.max(pagina, 1) - 1) * tamanho)
+            .setMaxResults(tamanho)
+            .getResultList();
+        int total = (int) Leilao.count("status", Leilao.Status.ABERTO);
+        return new FacetasLeiloesDTO(ids, total, Map.of(), Map.of(), Map.of(), Map.of(), Map.of(), Map.of());
+    }
+    
+    /**
+     * Carrega os leilões de uma lista de IDs, na ordem da lista (IDs inexistentes são ignorados).
+     * 
+     * @param ids IDs dos leilões
+     * @return Leilões encontrados
+     */
+    public List<Leilao> listarPorIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        
+        Map<Long, Leilao> leiloes = Leilao.<Leilao>list("id IN ?1", ids)
+            .stream()
+            .collect(Collectors.toMap(l -> l.id, Function.identity()));
+        return ids.stream()
+            .map(leiloes::get)
+            .filter(Objects::nonNull)
+            .toList();
+    }
+    
+    /**
+     * Converte o texto da busca em uma consulta tsquery de prefixos: cada palavra (apenas letras e
+     * dígitos) vira {@code palavra:*}, e todas precisam casar.
+     */
+    private static String consultaPrefixos(String termos) {
+        if (termos == null) {
+            return "";
+        }
+        return Arrays.stream(termos.toLowerCase().split("[^\\p{L}\\p{N}]+"))
+            .filter(termo -> !termo.isEmpty())
+            .limit(MAXIMO_TERMOS_BUSCA)
+            .map(termo -> termo + ":*")
+            .collect(Collectors.joining(" & "));
+    }
+    
     /**
      * Lista leilões criados por um usuário.
      * 
@@ -195,6 +340,7 @@ public class LeilaoService {
             leilao.valorReferencia = valorReferencia;
             
             leilao.persist();
+            indiceFacetas.atualizar(leilao);
             LOGGER.info("Leilão atualizado com sucesso. ID: " + leilao.id);
             
             return leilao;
@@ -243,9 +389,14 @@ public class LeilaoService {
                 }
             }
             
-            // Atualizar status
-            leilao.status = Leilao.Status.ABERTO;
+            // Atualizar status; leilões com início futuro são abertos pelo agendador
+            leilao.status = new Date().before(leilao.dataInicio) ? Leilao.Status.AGENDADO : Leilao.Status.ABERTO;
             leilao.persist();
+            indiceFacetas.atualizar(leilao);
+            if (leilao.status == Leilao.Status.ABERTO) {
+                livroOfertasService.abrir(leilao);
+            }
+            agendadorLeiloes.agendar(leilao);
             
             // Notificar fornecedores
             notificarFornecedores(leilao);
@@ -292,6 +443,8 @@ public class LeilaoService {
             leilao.motivoCancelamento = motivo;
             leilao.dataCancelamento = new Date();
             leilao.persist();
+            indiceFacetas.atualizar(leilao);
+            livroOfertasService.encerrar(leilao.id);
             
             // Notificar participantes
             notificarCancelamento(leilao);
@@ -327,31 +480,32 @@ public class LeilaoService {
                 throw new BusinessException("Você não tem permissão para concluir este leilão");
             }
             
+            // Trava o leilão e relê o status: espera a gravação dos lotes de lances em andamento,
+            // para que o vencedor seja apurado com todos os lances aceitos
+            Leilao.getEntityManager().refresh(leilao, LockModeType.PESSIMISTIC_WRITE);
+            
             // Verificar se o leilão pode ser concluído
             if (leilao.status != Leilao.Status.ABERTO) {
                 throw new BusinessException("Apenas leilões abertos podem ser concluídos manualmente");
             }
             
-            // Definir lance vencedor, se houver
-            List<Lance> lances = Lance.list("leilao", leilao);
-            if (!lances.isEmpty()) {
-                // Ordenar por valor crescente (menor valor primeiro)
-                Lance menorLance = lances.stream()
-                    .min((l1, l2) -> l1.valor.compareTo(l2.valor))
-                    .orElse(null);
-                
-                if (menorLance != null) {
-                    leilao.lanceVencedor = menorLance;
-                }
+            // Definir lance vencedor, se houver (menor lance ativo, pelo livro de ofertas)
+            Lance menorLance = lanceService.buscarMenorLance(leilao);
+            if (menorLance != null) {
+                menorLance.definirComoVencedor();
+                leilao.lanceVencedor = menorLance;
+                leilao.valorVencedor = menorLance.valor;
             }
             
             // Atualizar status
             leilao.status = Leilao.Status.CONCLUIDO;
             leilao.dataAtualizacao = new Date();
             leilao.persist();
+            indiceFacetas.atualizar(leilao);
+            livroOfertasService.encerrar(leilao.id);
             
-            // Notificar participantes
-            notificarConclusao(leilao);
+            // Notificar participantes após a confirmação, fora da transação
+            finalizacaoService.notificarAposConfirmar(leilao.id);
             
             LOGGER.info("Leilão concluído com sucesso. ID: " + leilao.id);
             return leilao;
@@ -378,7 +532,12 @@ public class LeilaoService {
             return false;
         }
         
+        // O prazo vigente fica no livro de ofertas, que inclui as prorrogações ainda não gravadas
         Date agora = new Date();
+        LivroOfertas livro = livroOfertasService.obter(leilao);
+        if (livro != null) {
+            return !agora.before(leilao.dataInicio) && livro.isAbertoEm(agora.getTime());
+        }
         return !agora.before(leilao.dataInicio) && !agora.after(leilao.dataFim);
     }
     
@@ -404,7 +563,7 @@ public class LeilaoService {
         
         // Verificar tipo de leilão
         if (leilao.tipoLeilao == Leilao.TipoLeilao.FECHADO) {
-            return leilao.isConvidado(fornecedor);
+            return isConvidado(leilao, fornecedor);
         }
         
         return true; // Leilão aberto
@@ -461,13 +620,86 @@ public class LeilaoService {
         // Fornecedores podem visualizar leilões abertos ou que foram convidados
         if (usuario.tipoUsuario == Usuario.TipoUsuario.FORNECEDOR) {
             if (leilao.status == Leilao.Status.ABERTO || leilao.status == Leilao.Status.CONCLUIDO) {
-                return leilao.tipoLeilao == Leilao.TipoLeilao.ABERTO || leilao.isConvidado(usuario);
+                return leilao.tipoLeilao == Leilao.TipoLeilao.ABERTO || isConvidado(leilao, usuario);
             }
         }
         
         return false;
     }
     
+    /**
+     * Verifica se um fornecedor foi convidado para um leilão, pelos conjuntos de participação
+     * em memória. Em leilões abertos, todos os fornecedores são considerados convidados.
+     * 
+     * @param leilao Leilão
+     * @param fornecedor Usuário fornecedor
+     * @return true se o fornecedor foi convidado, false caso contrário
+     */
+    public boolean isConvidado(Leilao leilao, Usuario fornecedor) {
+        if (leilao.tipoLeilao == Leilao.TipoLeilao.ABERTO) {
+            return true;
+        }
+        
+        // Leilão ou fornecedor ainda não gravados: verifica os convites carregados no leilão
+        if (leilao.id == null || fornecedor.id == null) {
+            return leilao.isConvidado(fornecedor);
+        }
+        return participacoes.isConvidado(leilao.id, fornecedor.id);
+    }
+    
+    /**
+     * Verifica se um usuário participou de um leilão, seja como fornecedor que deu lance
+     * ou como fornecedor convidado em leilões fechados.
+     * 
+     * @param leilao Leilão
+     * @param usuario Usuário a verificar
+     * @return true se o usuário participou, false caso contrário
+     */
+    public boolean temParticipacao(Leilao leilao, Usuario usuario) {
+        if (participacoes.temLance(leilao.id, usuario.id)) {
+            return true;
+        }
+        
+        // Em leilões fechados, verifica se foi convidado
+        if (leilao.tipoLeilao == Leilao.TipoLeilao.FECHADO) {
+            return isConvidado(leilao, usuario);
+        }
+        
+        // Em leilões abertos, qualquer fornecedor pode participar
+        return leilao.tipoLeilao == Leilao.TipoLeilao.ABERTO &&
+               usuario.tipoUsuario == Usuario.TipoUsuario.FORNECEDOR;
+    }
+    
+    /**
+     * Publica um leilão em rascunho já validado pelo chamador e atualiza o agendamento das
+     * transições e o índice de facetas.
+     * 
+     * @param leilao Leilão em rascunho
+     */
+    public void efetivarPublicacao(Leilao leilao) {
+        if (leilao.status != Leilao.Status.RASCUNHO) {
+            return;
+        }
+        
+        leilao.publicar();
+        indiceFacetas.atualizar(leilao);
+        agendadorLeiloes.agendar(leilao);
+    }
+    
+    /**
+     * Cancela um leilão já validado pelo chamador, atualiza o índice de facetas, retira as
+     * transições agendadas e encerra o livro de ofertas.
+     * 
+     * @param leilao Leilão a cancelar
+     * @param motivo Motivo do cancelamento
+     */
+    public void efetivarCancelamento(Leilao leilao, String motivo) {
+        leilao.cancelar(motivo);
+        indiceFacetas.atualizar(leilao);
+        agendadorLeiloes.cancelar(leilao);
+        livroOfertasService.encerrar(leilao.id);
+    }
+    
     /**
      * Valida as datas de início e fim de um leilão.
      * 
@@ -497,28 +729,25 @@ public class LeilaoService {
      * @param leilao Leilão recém-publicado
      */
     private void notificarFornecedores(Leilao leilao) {
+        // Um único evento na caixa de saída; as notificações são geradas fora desta transação
         if (leilao.tipoLeilao == Leilao.TipoLeilao.FECHADO) {
             // Notificar apenas fornecedores convidados
-            List<Convite> convites = Convite.list("leilao", leilao);
-            for (Convite convite : convites) {
-                notificacaoService.criarNotificacao(
-                    convite.fornecedor,
-                    "Novo leilão disponível",
-                    "Você foi convidado para participar do leilão: " + leilao.titulo,
-                    "/leiloes/" + leilao.id
-                );
-            }
+            caixaSaidaService.registrar(
+                EventoCaixaSaida.Tipo.LEILAO_PUBLICADO_FECHADO,
+                leilao,
+                "Novo leilão disponível",
+                "Você foi convidado para participar do leilão: " + leilao.titulo,
+                "/leiloes/" + leilao.id
+            );
         } else {
-            // Notificar todos os fornecedores (poderia ser filtrado por área)
-            List<Usuario> fornecedores = Usuario.list("tipoUsuario", Usuario.TipoUsuario.FORNECEDOR);
-            for (Usuario fornecedor : fornecedores) {
-                notificacaoService.criarNotificacao(
-                    fornecedor,
-                    "Novo leilão disponível",
-                    "Um novo leilão foi publicado: " + leilao.titulo,
-                    "/leiloes/" + leilao.id
-                );
-            }
+            // Notificar os fornecedores das áreas do leilão (todos, se o leilão não tiver áreas)
+            caixaSaidaService.registrar(
+                EventoCaixaSaida.Tipo.LEILAO_PUBLICADO_ABERTO,
+                leilao,
+                "Novo leilão disponível",
+                "Um novo leilão foi publicado: " + leilao.titulo,
+                "/leiloes/" + leilao.id
+            );
         }
     }
     
@@ -528,7 +757,7 @@ public class LeilaoService {
      * @param leilao Leilão cancelado
      */
     private void notificarCancelamento(Leilao leilao) {
-        List<Usuario> participantes = leilao.getParticipantes();
+        List<Usuario> participantes = participantes(leilao);
         
         for (Usuario participante : participantes) {
             notificacaoService.criarNotificacao(
@@ -545,8 +774,8 @@ public class LeilaoService {
      * 
      * @param leilao Leilão concluído
      */
-    private void notificarConclusao(Leilao leilao) {
-        List<Usuario> participantes = leilao.getParticipantes();
+    void notificarConclusao(Leilao leilao) {
+        List<Usuario> participantes = participantes(leilao);
         
         for (Usuario participante : participantes) {
             String mensagem;
@@ -572,6 +801,33 @@ public class LeilaoService {
         }
     }
     
+    /**
+     * Retorna o criador e os fornecedores convidados ou com lances no leilão, com os
+     * fornecedores buscados em uma única consulta a partir dos conjuntos de participação.
+     * 
+     * @param leilao Leilão
+     * @return Lista de usuários participantes
+     */
+    private List<Usuario> participantes(Leilao leilao) {
+        ParticipacaoLeiloesService.Participacao participacao = participacoes.obter(leilao.id);
+        if (participacao == null) {
+            // Conjuntos desativados (IDs fora do intervalo dos bitmaps): percorre os lances e convites
+            return leilao.getParticipantes();
+        }
+        
+        List<Usuario> participantes = new ArrayList<>();
+        participantes.add(leilao.criador);
+        
+        List<Long> fornecedorIds = participacao.participantes().stream()
+            .mapToObj(Long::valueOf)
+            .filter(fornecedorId -> !fornecedorId.equals(leilao.criador.id))
+            .toList();
+        if (!fornecedorIds.isEmpty()) {
+            participantes.addAll(Usuario.<Usuario>list("id IN ?1", fornecedorIds));
+        }
+        return participantes;
+    }
+    
     /**
      * Lista leilões com paginação
      * 
@@ -589,13 +845,14 @@ public class LeilaoService {
                 .page(io.quarkus.panache.common.Page.of(pageIndex, size));
             
             // Calcula o total de páginas
-            int totalPages = (int) Math.ceil((double) pageResult.count() / size);
+            long total = pageResult.count();
+            int totalPages = (int) Math.ceil((double) total / size);
             
             return new PaginatedResponse<>(
                 pageResult.list(),
                 page,
                 totalPages,
-                pageResult.count(),
+                total,
                 size
             );
         } catch (Exception e) {
@@ -605,31 +862,59 @@ public class LeilaoService {
     }
     
     /**
-     * Lista leilões por criador com paginação
+     * Lista leilões com paginação por cursor, do mais recente para o mais antigo.
+     * Cada página é buscada pela chave primária a partir do último ID da página anterior, com custo
+     * constante mesmo em páginas profundas; o total é estimado pelas estatísticas da tabela.
+     * 
+     * @param cursor Cursor da página (vazio ou null para a primeira página)
+     * @param size Tamanho da página
+     * @return Resposta paginada com leilões e o cursor da página seguinte
+     */
+    public PaginatedResponse<Leilao> listarLeiloesPorCursor(String cursor, int size) {
+        PageCursor posicao = PageCursor.decode(cursor);
+        try {
+            // Busca um item a mais para saber se há página seguinte
+            var query = posicao == null
+                ? Leilao.<Leilao>findAll(Sort.descending("id"))
+                : Leilao.<Leilao>find("id < ?1", Sort.descending("id"), posicao.getLong(0));
+            List<Leilao> leiloes = query.range(0, size).list();
+            
+            return PaginatedResponse.ofCursor(leiloes, size, l -> PageCursor.of(l.id),
+                paginationService.estimatedCount("leiloes"), true);
+        } catch (BusinessException be) {
+            throw be;
+        } catch (Exception e) {
+            LOGGER.severe("Erro ao listar leilões por cursor: " + e.getMessage());
+            throw new BusinessException("Erro ao listar leilões");
+        }
+    }
+    
+    /**
+     * Lista leilões por criador com paginação por cursor, pela data de criação (ID como desempate).
+     * O total é contado uma vez e mantido em cache entre as páginas.
      * 
      * @param criador Usuário criador
-     * @param page Número da página (começa em 1)
+     * @param cursor Cursor da página (vazio ou null para a primeira página)
      * @param size Tamanho da página
-     * @return Resposta paginada com leilões
+     * @return Resposta paginada com leilões e o cursor da página seguinte
      */
-    public PaginatedResponse<Leilao> listarLeiloesPorCriadorPaginados(Usuario criador, int page, int size) {
+    public PaginatedResponse<Leilao> listarLeiloesPorCriadorPorCursor(Usuario criador, String cursor, int size) {
+        PageCursor posicao = PageCursor.decode(cursor);
         try {
-            int pageIndex = page - 1;
-            
-            var pageResult = Leilao.find("criador = ?1 ORDER BY dataCriacao DESC", criador)
-                .page(io.quarkus.panache.common.Page.of(pageIndex, size));
-            
-            int totalPages = (int) Math.ceil((double) pageResult.count() / size);
-            
-            return new PaginatedResponse<>(
-                pageResult.list(),
-                page,
-                totalPages,
-                pageResult.count(),
-                size
-            );
+            Sort ordem = Sort.descending("dataCriacao", "id");
+            var query = posicao == null
+                ? Leilao.<Leilao>find("criador = ?1", ordem, criador)
+                : Leilao.<Leilao>find("criador = ?1 AND (dataCriacao < ?2 OR (dataCriacao = ?2 AND id < ?3))",
+                    ordem, criador, posicao.getDate(0), posicao.getLong(1));
+            List<Leilao> leiloes = query.range(0, size).list();
+            
+            long total = paginationService.cachedCount("leiloes:criador:" + criador.id,
+                () -> Leilao.count("criador", criador));
+            return PaginatedResponse.ofCursor(leiloes, size, l -> PageCursor.of(l.dataCriacao, l.id), total, true);
+        } catch (BusinessException be) {
+            throw be;
         } catch (Exception e) {
-            LOGGER.severe("Erro ao listar leilões do criador: " + e.getMessage());
+            LOGGER.severe("Erro ao listar leilões do criador por cursor: " + e.getMessage());
             throw new BusinessException("Erro ao listar leilões");
         }
     }
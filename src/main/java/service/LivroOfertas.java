@@ -0,0 +1,286 @@
+package service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import model.Lance;
+import util.OrderStatisticTree;
+
+/**
+ * Livro de ofertas em memória de um leilão aberto.
+ * Mantém todas as ofertas ativas e a melhor oferta (menor valor) de cada fornecedor ordenadas
+ * por valor, permitindo consultar a melhor oferta, as N melhores, a posição de um fornecedor
+ * e a posição de um valor no ranking em O(log n).
+ */
+public class LivroOfertas {
+    
+    /**
+     * Oferta ativa (lance não cancelado) registrada no livro.
+     */
+    public record Oferta(Long lanceId, Long fornecedorId, BigDecimal valor, long dataCriacao) {
+        
+        /**
+         * Cria uma oferta a partir de um lance.
+         * 
+         * @param lance Lance de origem
+         * @return Oferta correspondente
+         */
+        public static Oferta de(Lance lance) {
+            long data = lance.dataCriacao != null ? lance.dataCriacao.getTime() : System.currentTimeMillis();
+            return new Oferta(lance.id, lance.fornecedor.id, lance.valor, data);
+        }
+    }
+    
+    /**
+     * Ordem das ofertas: menor valor primeiro; em caso de empate, o lance mais antigo.
+     */
+    static final Comparator<Oferta> ORDEM = Comparator
+        .comparing(Oferta::valor)
+        .thenComparingLong(Oferta::dataCriacao)
+        .thenComparing(Oferta::lanceId);
+    
+    private final Long leilaoId;
+    
+    // Melhor oferta de cada fornecedor, ordenada por valor
+    private final OrderStatisticTree<Oferta> melhores = new OrderStatisticTree<>(ORDEM);
+    
+    // Todas as ofertas ativas, ordenadas por valor
+    private final OrderStatisticTree<Oferta> todas = new OrderStatisticTree<>(ORDEM);
+    
+    // Todas as ofertas ativas de cada fornecedor
+    private final Map<Long, TreeSet<Oferta>> porFornecedor = new HashMap<>();
+    
+    // Índice das ofertas ativas pelo ID do lance
+    private final Map<Long, Oferta> porLance = new HashMap<>();
+    
+    // Prazo de encerramento vigente (dataFim com as prorrogações), em milissegundos
+    private volatile long prazoEncerramento = Long.MAX_VALUE;
+    
+    private volatile boolean encerrado;
+    
+    public LivroOfertas(Long leilaoId) {
+        this.leilaoId = leilaoId;
+    }
+    
+    public Long getLeilaoId() {
+        return leilaoId;
+    }
+    
+    public long getPrazoEncerramento() {
+        return prazoEncerramento;
+    }
+    
+    void setPrazoEncerramento(long prazoEncerramento) {
+        this.prazoEncerramento = prazoEncerramento;
+    }
+    
+    /**
+     * Verifica se o livro aceita lances no instante informado.
+     * 
+     * @param instante Instante (em milissegundos)
+     * @return true se o leilão não foi encerrado e o prazo vigente não passou
+     */
+    public boolean isAbertoEm(long instante) {
+        return !encerrado && instante <= prazoEncerramento;
+    }
+    
+    /**
+     * Prorroga o prazo de encerramento se o lance chegou dentro da janela final (soft close).
+     * Deve ser chamado pela faixa do leilão, junto com a aceitação do lance.
+     * 
+     * @param instante Instante do lance (em milissegundos)
+     * @param janela Duração da janela final (em milissegundos)
+     * @param extensao Tempo acrescentado ao prazo (em milissegundos)
+     * @return true se o prazo foi prorrogado
+     */
+    public synchronized boolean prorrogar(long instante, long janela, long extensao) {
+        if (!isAbertoEm(instante) || prazoEncerramento - instante > janela) {
+            return false;
+        }
+        prazoEncerramento += extensao;
+        return true;
+    }
+    
+    /**
+     * Encerra o livro se o prazo vigente já passou. A partir daí nenhum lance é aceito.
+     * Deve ser chamado pela faixa do leilão, para não concorrer com a aceitação de lances.
+     * 
+     * @param instante Instante atual (em milissegundos)
+     * @return false se o prazo foi prorrogado para depois do instante informado
+     */
+    public synchronized boolean encerrar(long instante) {
+        if (instante < prazoEncerramento) {
+            return false;
+        }
+        encerrado = true;
+        return true;
+    }
+    
+    /**
+     * Registra uma oferta. Se já existir uma oferta para o mesmo lance, ela é substituída.
+     * 
+     * @param oferta Oferta a registrar
+     */
+    public synchronized void registrar(Oferta oferta) {
+        remover(oferta.lanceId());
+        
+        TreeSet<Oferta> ofertas = porFornecedor.computeIfAbsent(oferta.fornecedorId(), id -> new TreeSet<>(ORDEM));
+        Oferta melhorAnterior = ofertas.isEmpty() ? null : ofertas.first();
+        ofertas.add(oferta);
+        todas.add(oferta);
+        porLance.put(oferta.lanceId(), oferta);
+        
+        if (melhorAnterior == null || ORDEM.compare(oferta, melhorAnterior) < 0) {
+            if (melhorAnterior != null) {
+                melhores.remove(melhorAnterior);
+            }
+            melhores.add(oferta);
+        }
+    }
+    
+    /**
+     * Remove a oferta de um lance (por exemplo, quando o lance é cancelado).
+     * 
+     * @param lanceId ID do lance
+     * @return true se a oferta existia no livro
+     */
+    public synchronized boolean remover(Long lanceId) {
+        Oferta oferta = porLance.remove(lanceId);
+        if (oferta == null) {
+            return false;
+        }
+        
+        TreeSet<Oferta> ofertas = porFornecedor.get(oferta.fornecedorId());
+        boolean eraMelhor = oferta.equals(ofertas.first());
+        ofertas.remove(oferta);
+        todas.remove(oferta);
+        
+        if (eraMelhor) {
+            melhores.remove(oferta);
+            if (!ofertas.isEmpty()) {
+                melhores.add(ofertas.first());
+            }
+        }
+        if (ofertas.isEmpty()) {
+            porFornecedor.remove(oferta.fornecedorId());
+        }
+        return true;
+    }
+    
+    /**
+     * Retorna a melhor oferta (menor valor) do leilão.
+     * 
+     * @return Melhor oferta ou null se não houver ofertas
+     */
+    public synchronized Oferta melhorOferta() {
+        return melhores.first();
+    }
+    
+    /**
+     * Retorna o valor da melhor oferta do leilão.
+     * 
+     * @return Valor da melhor oferta ou null se não houver ofertas
+     */
+    public synchronized BigDecimal valorMelhorOferta() {
+        Oferta melhor = melhores.first();
+        return melhor != null ? melhor.valor() : null;
+    }
+    
+    /**
+     * Retorna as N melhores ofertas, uma por fornecedor.
+     * 
+     * @param n Quantidade de ofertas
+     * @return Lista ordenada das melhores ofertas
+     */
+    public synchronized List<Oferta> melhoresOfertas(int n) {
+        return melhores.first(n);
+    }
+    
+    /**
+     * Retorna a oferta registrada para um lance.
+     * 
+     * @param lanceId ID do lance
+     * @return Oferta do lance ou null se o lance não estiver no livro
+     */
+    public synchronized Oferta ofertaDoLance(Long lanceId) {
+        return porLance.get(lanceId);
+    }
+    
+    /**
+     * Retorna a melhor oferta de um fornecedor.
+     * 
+     * @param fornecedorId ID do fornecedor
+     * @return Melhor oferta do fornecedor ou null se ele não tiver ofertas ativas
+     */
+    public synchronized Oferta ofertaDoFornecedor(Long fornecedorId) {
+        TreeSet<Oferta> ofertas = porFornecedor.get(fornecedorId);
+        return ofertas == null ? null : ofertas.first();
+    }
+    
+    /**
+     * Retorna a posição de um fornecedor no ranking do leilão.
+     * 
+     * @param fornecedorId ID do fornecedor
+     * @return Posição no ranking (1 é a melhor posição) ou 0 se o fornecedor não tiver ofertas ativas
+     */
+    public synchronized int posicaoFornecedor(Long fornecedorId) {
+        TreeSet<Oferta> ofertas = porFornecedor.get(fornecedorId);
+        if (ofertas == null) {
+            return 0;
+        }
+        return melhores.rank(ofertas.first()) + 1;
+    }
+    
+    /**
+     * Retorna as posições de vários fornecedores no ranking, consultadas sob um único bloqueio.
+     * 
+     * @param fornecedorIds IDs dos fornecedores
+     * @return Posição de cada fornecedor com ofertas ativas; fornecedores sem ofertas ficam de fora
+     */
+    public synchronized Map<Long, Integer> posicoesFornecedores(Collection<Long> fornecedorIds) {
+        Map<Long, Integer> posicoes = new HashMap<>();
+        for (Long fornecedorId : fornecedorIds) {
+            int posicao = posicaoFornecedor(fornecedorId);
+            if (posicao > 0) {
+                posicoes.put(fornecedorId, posicao);
+            }
+        }
+        return posicoes;
+    }
+    
+    /**
+     * Retorna o número de fornecedores com ofertas ativas.
+     * 
+     * @return Número de fornecedores
+     */
+    public synchronized int totalFornecedores() {
+        return melhores.size();
+    }
+    
+    /**
+     * Retorna o número de ofertas ativas (lances não cancelados).
+     * 
+     * @return Número de ofertas
+     */
+    public synchronized int totalOfertas() {
+        return todas.size();
+    }
+    
+    /**
+     * Retorna a posição de um valor no ranking de todas as ofertas ativas,
+     * isto é, a quantidade de ofertas com valor menor mais um.
+     * 
+     * @param valor Valor do lance
+     * @return Posição no ranking (1 é a melhor posição)
+     */
+    public synchronized int posicaoValor(BigDecimal valor) {
+        // Oferta de referência que fica antes de todas as ofertas com o mesmo valor
+        Oferta referencia = new Oferta(Long.MIN_VALUE, null, valor, Long.MIN_VALUE);
+        return todas.rank(referencia) + 1;
+    }
+}
@@ -0,0 +1,337 @@
+package service;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import model.Lance;
+import model.Leilao;
+
+/**
+ * Serviço responsável por manter os livros de ofertas dos leilões abertos em memória.
+ * Os livros são carregados do banco quando o leilão abre (ou no primeiro acesso, após um
+ * reinício da aplicação) e descartados quando o encerramento ou o cancelamento do leilão é
+ * confirmado. Um livro só é carregado se o leilão ainda estiver aberto no banco, e um leilão
+ * encerrado há pouco não tem o livro recarregado por pedidos que ainda o veem aberto.
+ * As alterações nos livros são feitas pela faixa do leilão no {@link SequenciadorLances}.
+ */
+@ApplicationScoped
+public class LivroOfertasService {
+    
+    private static final Logger LOGGER = Logger.getLogger(LivroOfertasService.class.getName());
+    
+    @Inject
+    TransacoesService transacoes;
+    
+    @Inject
+    SequenciadorLances sequenciador;
+    
+    @Inject
+    EventosLancesService eventosLances;
+    
+    @Inject
+    LancesAutomaticosService lancesAutomaticos;
+    
+    @Inject
+    IndiceFacetasLeiloesService indiceFacetas;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.leilao.prorrogacao.automatica", defaultValue = "true")
+    boolean prorrogacaoAutomatica;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.leilao.prorrogacao.janela-segundos", defaultValue = "120")
+    long janelaProrrogacaoSegundos;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.leilao.prorrogacao.extensao-segundos", defaultValue = "120")
+    long extensaoProrrogacaoSegundos;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.leilao.prorrogacao.gravacao-ms", defaultValue = "1000")
+    long atrasoGravacaoPrazoMs;
+    
+    private final Map<Long, LivroOfertas> livros = new ConcurrentHashMap<>();
+    
+    // Leilões encerrados recentemente; o prazo cobre os pedidos em andamento que ainda os veem abertos
+    private final Cache<Long, Boolean> encerrados = Caffeine.newBuilder()
+        .expireAfterWrite(10, TimeUnit.MINUTES)
+        .build();
+    
+    // Leilões com gravação da melhor oferta pendente
+    private final Set<Long> gravacoesPendentes = ConcurrentHashMap.newKeySet();
+    
+    // Prazo de encerramento a gravar, por leilão com gravação pendente
+    private final Map<Long, Long> prazosPendentes = new ConcurrentHashMap<>();
+    
+    private final ScheduledExecutorService gravador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+        Thread thread = new Thread(tarefa, "gravador-melhor-oferta");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * Abre o livro de ofertas de um leilão, carregando os lances ativos do banco.
+     * 
+     * @return Livro de ofertas do leilão, ou null se o leilão não estiver aberto no banco
+     */
+    public LivroOfertas abrir(Leilao leilao) {
+        LivroOfertas livro = carregar(leilao);
+        if (livro != null) {
+            livros.put(leilao.id, livro);
+        }
+        return livro;
+    }
+    
+    /**
+     * Obtém o livro de ofertas de um leilão aberto, carregando-o se necessário.
+     * 
+     * @param leilao Leilão
+     * @return Livro de ofertas ou null se o leilão não estiver aberto
+     */
+    public LivroOfertas obter(Leilao leilao) {
+        if (leilao == null || leilao.id == null || leilao.status != Leilao.Status.ABERTO) {
+            return null;
+        }
+        
+        LivroOfertas livro = livros.get(leilao.id);
+        if (livro == null) {
+            if (encerrados.getIfPresent(leilao.id) != null) {
+                return null;
+            }
+            LivroOfertas carregado = carregar(leilao);
+            if (carregado == null) {
+                return null;
+            }
+            livro = livros.putIfAbsent(leilao.id, carregado);
+            if (livro == null) {
+                livro = carregado;
+                // O encerramento pode ter sido confirmado durante a carga
+                if (encerrados.getIfPresent(leilao.id) != null) {
+                    livros.remove(leilao.id, carregado);
+                    return null;
+                }
+            }
+        }
+        return livro;
+    }
+    
+    /**
+     * Obtém o livro de ofertas de um leilão, apenas se já estiver carregado em memória.
+     * 
+     * @param leilaoId ID do leilão
+     * @return Livro de ofertas ou null se não estiver carregado
+     */
+    public LivroOfertas obterCarregado(Long leilaoId) {
+        return leilaoId != null ? livros.get(leilaoId) : null;
+    }
+    
+    /**
+     * Descarta o livro de ofertas de um leilão (encerrado, cancelado ou com estado inconsistente).
+     * Se o leilão continuar aberto, o livro será recarregado do banco no próximo acesso.
+     * 
+     * @param leilaoId ID do leilão
+     */
+    public void descartar(Long leilaoId) {
+        if (leilaoId != null && livros.remove(leilaoId) != null) {
+            LOGGER.fine("Livro de ofertas descartado. Leilão: " + leilaoId);
+        }
+    }
+    
+    /**
+     * Encerra o livro de ofertas de um leilão que deixou de aceitar lances (encerrado,
+     * concluído ou cancelado), finalizando também a transmissão ao vivo dos lances.
+     * Dentro de uma transação, o livro só é encerrado após a confirmação: até lá o leilão
+     * continua aberto no banco e o livro seria recarregado.
+     * 
+     * @param leilaoId ID do leilão
+     */
+    public void encerrar(Long leilaoId) {
+        transacoes.aposConfirmar(() -> {
+            encerrados.put(leilaoId, Boolean.TRUE);
+            descartar(leilaoId);
+            eventosLances.encerrar(leilaoId);
+            lancesAutomaticos.encerrar(leilaoId);
+        });
+    }
+    
+    /**
+     * Registra o que fazer ao final da transação que alterou o livro de ofertas.
+     * Se a transação for revertida, a alteração é desfeita na faixa do leilão; se for confirmada,
+     * a melhor oferta é gravada no leilão de forma assíncrona, fora da transação do lance, a
+     * alteração é publicada para os assinantes do leilão e os lances automáticos são resolvidos.
+     * 
+     * @param livro Livro de ofertas alterado
+     * @param desfazer Ação que desfaz a alteração no livro
+     */
+    public void aoFinalizarTransacao(LivroOfertas livro, Runnable desfazer) {
+        Long leilaoId = livro.getLeilaoId();
+        
+        if (!transacoes.ativa()) {
+            agendarGravacaoMelhorOferta(leilaoId);
+            eventosLances.publicar(livro);
+            lancesAutomaticos.agendar(leilaoId);
+            return;
+        }
+        
+        transacoes.aoFinalizar(status -> {
+            try {
+                if (livros.get(leilaoId) != livro) {
+                    // O livro foi substituído durante a transação; recarrega no próximo acesso
+                    descartar(leilaoId);
+                } else if (status != Status.STATUS_COMMITTED) {
+                    sequenciador.executar(leilaoId, () -> {
+                        desfazer.run();
+                        return null;
+                    });
+                }
+                
+                if (status == Status.STATUS_COMMITTED) {
+                    agendarGravacaoMelhorOferta(leilaoId);
+                    eventosLances.publicar(livro);
+                    lancesAutomaticos.agendar(leilaoId);
+                }
+            } catch (Exception e) {
+                LOGGER.severe("Erro ao finalizar alteração do livro de ofertas: " + e.getMessage());
+                descartar(leilaoId);
+            }
+        });
+    }
+    
+    /**
+     * Agenda a gravação da melhor oferta do livro no leilão.
+     * Pedidos para o mesmo leilão feitos enquanto a gravação está pendente são agrupados em uma só.
+     * 
+     * @param leilaoId ID do leilão
+     */
+    void agendarGravacaoMelhorOferta(Long leilaoId) {
+        if (!gravacoesPendentes.add(leilaoId)) {
+            return;
+        }
+        
+        gravador.execute(() -> {
+            gravacoesPendentes.remove(leilaoId);
+            
+            LivroOfertas livro = livros.get(leilaoId);
+            if (livro == null) {
+                return;
+            }
+            
+            LivroOfertas.Oferta melhor = livro.melhorOferta();
+            BigDecimal melhorOferta = melhor != null ? melhor.valor() : null;
+            try {
+                QuarkusTransaction.requiringNew().run(() ->
+                    Leilao.update("melhorOferta = ?1 WHERE id = ?2 AND status = ?3",
+                        melhorOferta, leilaoId, Leilao.Status.ABERTO));
+            } catch (Exception e) {
+                LOGGER.severe("Erro ao gravar melhor oferta do leilão " + leilaoId + ": " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Aplica o fechamento suave (soft close): um lance aceito na janela final do leilão
+     * prorroga o prazo de encerramento. A prorrogação vale na hora para as verificações de
+     * prazo, que leem o livro; a gravação de {@code dataFim} no banco é agrupada e feita
+     * com atraso, para não reescrever o leilão a cada lance.
+     * Deve ser chamado pela faixa do leilão, junto com a aceitação do lance.
+     * 
+     * @param livro Livro de ofertas do leilão
+     * @param instante Instante do lance (em milissegundos)
+     */
+    void prorrogar(LivroOfertas livro, long instante) {
+        if (prorrogacaoAutomatica && livro.prorrogar(instante,
+                TimeUnit.SECONDS.toMillis(janelaProrrogacaoSegundos),
+                TimeUnit.SECONDS.toMillis(extensaoProrrogacaoSegundos))) {
+            LOGGER.fine("Leilão " + livro.getLeilaoId() + " prorrogado até " + new Date(livro.getPrazoEncerramento()));
+            agendarGravacaoPrazo(livro.getLeilaoId(), livro.getPrazoEncerramento());
+        }
+    }
+    
+    /**
+     * Agenda a gravação do prazo de encerramento vigente no leilão.
+     * Prorrogações feitas enquanto a gravação está pendente são gravadas de uma só vez, com o maior prazo.
+     * 
+     * @param leilaoId ID do leilão
+     * @param prazoEncerramento Prazo de encerramento (em milissegundos)
+     */
+    private void agendarGravacaoPrazo(Long leilaoId, long prazoEncerramento) {
+        // Só a primeira prorrogação pendente agenda a gravação; as seguintes apenas atualizam o prazo
+        boolean[] agendar = new boolean[1];
+        prazosPendentes.compute(leilaoId, (id, atual) -> {
+            agendar[0] = atual == null;
+            return atual == null ? prazoEncerramento : Math.max(atual, prazoEncerramento);
+        });
+        if (!agendar[0]) {
+            return;
+        }
+        
+        gravador.schedule(() -> {
+            Long pendente = prazosPendentes.remove(leilaoId);
+            if (pendente == null) {
+                return;
+            }
+            
+            Date prazo = new Date(pendente);
+            try {
+                int alterados = QuarkusTransaction.requiringNew().call(() ->
+                    Leilao.update("dataFim = ?1 WHERE id = ?2 AND status = ?3 AND dataFim < ?1",
+                        prazo, leilaoId, Leilao.Status.ABERTO));
+                if (alterados > 0) {
+                    indiceFacetas.atualizarFechamento(leilaoId, prazo);
+                }
+            } catch (Exception e) {
+                LOGGER.severe("Erro ao gravar prazo de encerramento do leilão " + leilaoId + ": " + e.getMessage());
+            }
+        }, atrasoGravacaoPrazoMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    void finalizar() {
+        gravador.shutdown();
+    }
+    
+    /**
+     * Carrega do banco os lances ativos de um leilão em um novo livro de ofertas.
+     * O status é relido do banco: a entidade do chamador pode estar desatualizada.
+     * 
+     * @param leilao Leilão
+     * @return Livro de ofertas carregado, ou null se o leilão não estiver mais aberto
+     */
+    private LivroOfertas carregar(Leilao leilao) {
+        List<Leilao.Status> status = Leilao.getEntityManager()
+            .createQuery("SELECT l.status FROM Leilao l WHERE l.id = ?1", Leilao.Status.class)
+            .setParameter(1, leilao.id)
+            .getResultList();
+        if (status.isEmpty() || status.get(0) != Leilao.Status.ABERTO) {
+            LOGGER.fine("Livro de ofertas não carregado: leilão " + leilao.id + " não está aberto");
+            return null;
+        }
+        
+        LivroOfertas livro = new LivroOfertas(leilao.id);
+        livro.setPrazoEncerramento(leilao.dataFim.getTime());
+        List<Lance> lances = Lance.find("leilao = ?1 AND cancelado = false AND status <> ?2",
+            leilao, Lance.Status.CANCELADO).list();
+        for (Lance lance : lances) {
+            livro.registrar(LivroOfertas.Oferta.de(lance));
+        }
+        LOGGER.info("Livro de ofertas carregado. Leilão: " + leilao.id + ", Lances: " + lances.size());
+        return livro;
+    }
+}
@@ -25,6 +25,9 @@ public class MensagemService {
     @Inject
     NotificacaoService notificacaoService;
     
+    @Inject
+    LeilaoService leilaoService;
+    
     /**
      * Busca uma mensagem pelo ID.
      * 
@@ -67,7 +70,7 @@ public class MensagemService {
             if (usuario.tipoUsuario == Usuario.TipoUsuario.FORNECEDOR) {
                 // Fornecedor só pode perguntar em leilões abertos ou se foi convidado
                 return leilao.status == Leilao.Status.ABERTO && 
-                       (leilao.tipoLeilao == Leilao.TipoLeilao.ABERTO || leilao.isConvidado(usuario));
+                       (leilao.tipoLeilao == Leilao.TipoLeilao.ABERTO || leilaoService.isConvidado(leilao, usuario));
             } else {
                 // Comprador só pode perguntar se for o criador do Leilão
                 return usuario.equals(leilao.criador);
@@ -98,7 +101,7 @@ public class MensagemService {
                 // Apenas fornecedores participantes podem responder perguntas de compradores
                 return usuario.tipoUsuario == Usuario.TipoUsuario.FORNECEDOR &&
                        (mensagem.leilao.tipoLeilao == Leilao.TipoLeilao.ABERTO || 
-                        mensagem.leilao.isConvidado(usuario));
+                        leilaoService.isConvidado(mensagem.leilao, usuario));
             }
             
             return false;
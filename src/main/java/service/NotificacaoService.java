@@ -1,12 +1,19 @@
 package service;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.logging.Logger;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 
+import dto.NotificacaoDTO;
+import dto.PaginaNotificacoesDTO;
+import exception.BusinessException;
+import model.EventoCaixaSaida;
+import model.LeituraNotificacoes;
 import model.Mensagem;
 import model.Notificacao;
 import model.Usuario;
@@ -19,36 +26,51 @@ public class NotificacaoService {
     
     private static final Logger LOGGER = Logger.getLogger(NotificacaoService.class.getName());
     
+    @Inject
+    CacheNotificacoesService cacheNotificacoes;
+    
+    @Inject
+    RetencaoNotificacoesService retencaoNotificacoes;
+    
+    @Inject
+    CaixaSaidaService caixaSaidaService;
+    
     /**
      * Notifica o destinatário sobre uma nova pergunta.
+     * Perguntas de fornecedor vão para o comprador; perguntas do comprador vão para todos os
+     * fornecedores participantes do leilão, por meio de um evento na caixa de saída, expandido
+     * em lotes fora da requisição.
      * 
      * @param mensagem Mensagem contendo a pergunta
      */
     @Transactional
     public void notificarNovaPergunta(Mensagem mensagem) {
         try {
-            Usuario destinatario;
-            String titulo;
+            String conteudo = "Nova pergunta de " + mensagem.autor.nomeFantasia + ": " + 
+                (mensagem.conteudo.length() > 100 ? mensagem.conteudo.substring(0, 97) + "..." : mensagem.conteudo);
+            String link = "/mensagens/leilao/" + mensagem.leilao.id;
             
-            // Determina o destinatário da notificação
-            if (mensagem.tipo == Mensagem.Tipo.PERGUNTA_FORNECEDOR) {
-                // Pergunta de fornecedor vai para o comprador (dono do leilão)
-                destinatario = mensagem.leilao.criador;
-                titulo = "Nova pergunta no seu leilão: " + mensagem.leilao.titulo;
-            } else {
-                // Pergunta do comprador vai para todos os fornecedores participantes do leilão
-                // Mas esta implementação enviaria para todos. Seria necessário um mecanismo
-                // para enviar para todos os fornecedores. Por enquanto, não enviamos notificação
-                LOGGER.info("Notificação para pergunta de comprador não implementada");
+            if (mensagem.tipo == Mensagem.Tipo.PERGUNTA_COMPRADOR) {
+                // Pergunta do comprador vai para os fornecedores com lance ou convite aceito no leilão
+                caixaSaidaService.registrar(
+                    EventoCaixaSaida.Tipo.PERGUNTA_COMPRADOR,
+                    mensagem.leilao,
+                    "Nova pergunta do comprador no leilão: " + mensagem.leilao.titulo,
+                    conteudo,
+                    link
+                );
+                
+                LOGGER.info("Notificação de nova pergunta do comprador registrada para o leilão " + mensagem.leilao.id);
                 return;
             }
             
+            // Pergunta de fornecedor vai para o comprador (dono do leilão)
+            Usuario destinatario = mensagem.leilao.criador;
             criarNotificacao(
                 destinatario,
-                titulo,
-                "Nova pergunta de " + mensagem.autor.nomeFantasia + ": " + 
-                (mensagem.conteudo.length() > 100 ? mensagem.conteudo.substring(0, 97) + "..." : mensagem.conteudo),
-                "/mensagens/leilao/" + mensagem.leilao.id
+                "Nova pergunta no seu leilão: " + mensagem.leilao.titulo,
+                conteudo,
+                link
             );
             
             LOGGER.info("Notificação de nova pergunta enviada para " + destinatario.nomeFantasia);
@@ -104,27 +126,106 @@ public class NotificacaoService {
         notificacao.lida = false;
         
         notificacao.persist();
+        cacheNotificacoes.aoCriar(List.of(notificacao));
         return notificacao;
     }
     
     /**
-     * Busca as notificações não lidas de um usuário.
+     * Busca as notificações não lidas de um usuário na janela recente da caixa.
      * 
      * @param usuario Usuário
      * @return Lista de notificações não lidas
      */
     public List<Notificacao> buscarNotificacoesNaoLidas(Usuario usuario) {
-        return Notificacao.find("usuario = ?1 AND lida = false ORDER BY dataEnvio DESC", usuario).list();
+        return Notificacao.find(LeituraNotificacoes.NAO_LIDAS + " AND dataEnvio >= ?2 ORDER BY dataEnvio DESC",
+            usuario.id, retencaoNotificacoes.inicioJanela()).list();
     }
     
     /**
-     * Busca todas as notificações de um usuário.
+     * Obtém o número de notificações não lidas e as mais recentes de um usuário, a partir do cache.
      * 
      * @param usuario Usuário
-     * @return Lista de notificações
+     * @return Resumo das notificações não lidas
      */
-    public List<Notificacao> buscarNotificacoes(Usuario usuario) {
-        return Notificacao.find("usuario = ?1 ORDER BY dataEnvio DESC", usuario).list();
+    public CacheNotificacoesService.Resumo resumoNaoLidas(Usuario usuario) {
+        return cacheNotificacoes.obter(usuario.id);
+    }
+    
+    /**
+     * Busca uma página da caixa de notificações de um usuário, em ordem decrescente de data de envio,
+     * a partir de um cursor (keyset). Cada página é uma busca por índice posicionada no cursor, sem
+     * OFFSET, com o mesmo custo qualquer que seja a profundidade. Por padrão a busca se limita à
+     * janela recente da caixa ({@link RetencaoNotificacoesService#inicioJanela()}), alcançando só as
+     * partições recentes; ao fim da janela, se houver notificações anteriores, a página indica
+     * ({@code anteriores}) e o cursor retornado leva a elas, buscadas sem o limite da janela.
+     * 
+     * @param usuario Usuário
+     * @param cursor Cursor da página anterior ({@code proximo}), ou nulo para a primeira página
+     * @param tamanho Número máximo de notificações da página
+     * @param apenasNaoLidas Se true, busca apenas as notificações não lidas
+     * @return Página de notificações e cursor da página seguinte
+     * @throws BusinessException se o cursor for inválido
+     */
+    public PaginaNotificacoesDTO buscarPagina(Usuario usuario, String cursor, int tamanho, boolean apenasNaoLidas) {
+        String filtro = apenasNaoLidas ? LeituraNotificacoes.NAO_LIDAS : "usuario.id = ?1";
+        StringBuilder query = new StringBuilder(filtro);
+        List<Object> parametros = new ArrayList<>(List.of(usuario.id));
+        Date inicioJanela = retencaoNotificacoes.inicioJanela();
+        
+        Date dataCursor = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] partes = cursor.split("\\.");
+            try {
+                if (partes.length != 2) {
+                    throw new NumberFormatException(cursor);
+                }
+                dataCursor = new Date(Long.parseLong(partes[0]));
+                parametros.add(dataCursor);
+                parametros.add(Long.parseLong(partes[1]));
+            } catch (NumberFormatException e) {
+                throw BusinessException.validationError("cursor", "Cursor de paginação inválido");
+            }
+            query.append(" AND (dataEnvio, id) < (?").append(parametros.size() - 1)
+                .append(", ?").append(parametros.size()).append(")");
+        }
+        
+        // Um cursor anterior à janela é um pedido explícito pelas notificações antigas
+        boolean naJanela = dataCursor == null || dataCursor.after(inicioJanela);
+        if (naJanela) {
+            parametros.add(inicioJanela);
+            query.append(" AND dataEnvio >= ?").append(parametros.size());
+        }
+        query.append(" ORDER BY dataEnvio DESC, id DESC");
+        
+        // Uma notificação a mais indica se há página seguinte
+        List<Notificacao> notificacoes = Notificacao.find(query.toString(), parametros.toArray())
+            .range(0, tamanho)
+            .list();
+        String proximo = null;
+        boolean anteriores = false;
+        if (notificacoes.size() > tamanho) {
+            notificacoes = notificacoes.subList(0, tamanho);
+            Notificacao ultima = notificacoes.get(tamanho - 1);
+            proximo = ultima.dataEnvio.getTime() + "." + ultima.id;
+        } else if (naJanela && Notificacao.find(filtro + " AND dataEnvio < ?2", usuario.id, inicioJanela)
+                .firstResult() != null) {
+            // Fim da janela: o cursor posicionado no seu início continua pelas notificações anteriores
+            proximo = inicioJanela.getTime() + "." + Long.MIN_VALUE;
+            anteriores = true;
+        }
+        
+        // Notificações abaixo da marca de leitura são exibidas como lidas, sem alterar o banco
+        List<NotificacaoDTO> pagina = new ArrayList<>(notificacoes.size());
+        LeituraNotificacoes leitura = LeituraNotificacoes.findById(usuario.id);
+        for (Notificacao notificacao : notificacoes) {
+            NotificacaoDTO dto = NotificacaoDTO.fromEntity(notificacao);
+            if (leitura != null && !notificacao.lida && leitura.cobre(notificacao)) {
+                dto = new NotificacaoDTO(dto.id(), dto.titulo(), dto.mensagem(), dto.link(), dto.dataEnvio(),
+                    true, leitura.dataLeitura, dto.tipo());
+            }
+            pagina.add(dto);
+        }
+        return new PaginaNotificacoesDTO(pagina, proximo, anteriores);
     }
     
     /**
@@ -144,9 +245,19 @@ public class NotificacaoService {
                 return false;
             }
             
-            notificacao.lida = true;
-            notificacao.dataLeitura = new Date();
-            notificacao.persist();
+            // Abaixo da marca de leitura a notificação já está lida; acima, a leitura é registrada na própria notificação
+            LeituraNotificacoes leitura = LeituraNotificacoes.findById(usuario.id);
+            boolean abaixoDaMarca = leitura != null && leitura.cobre(notificacao);
+            
+            if (!notificacao.lida && !abaixoDaMarca) {
+                notificacao.lida = true;
+                notificacao.dataLeitura = new Date();
+                notificacao.persist();
+                // O contador considera só a janela recente da caixa
+                if (!notificacao.dataEnvio.before(retencaoNotificacoes.inicioJanela())) {
+                    cacheNotificacoes.aoMarcarComoLida(usuario.id, notificacao.id);
+                }
+            }
             
             return true;
         } catch (Exception e) {
@@ -156,24 +267,46 @@ public class NotificacaoService {
     }
     
     /**
-     * Marca todas as notificações de um usuário como lidas.
+     * Marca como lidas as notificações de um usuário até a mais recente exibida a ele.
+     * A marca de leitura avança até a data de envio dessa notificação, e não até a mais recente
+     * gravada: a data de envio é definida na criação, antes da confirmação, e uma notificação
+     * confirmada depois de a página ser exibida ficaria coberta pela marca sem ter sido vista.
      * 
      * @param usuario Usuário
-     * @return Número de notificações marcadas como lidas
+     * @param notificacaoId ID da notificação mais recente exibida
+     * @param dataEnvio Data de envio dessa notificação (restringe a busca à sua partição)
+     * @return Número de notificações da janela recente da caixa marcadas como lidas
      */
     @Transactional
-    public int marcarTodasComoLidas(Usuario usuario) {
+    public int marcarTodasComoLidas(Usuario usuario, Long notificacaoId, Date dataEnvio) {
         try {
-            List<Notificacao> notificacoes = buscarNotificacoesNaoLidas(usuario);
+            Notificacao exibida = Notificacao.find("id = ?1 AND usuario.id = ?2 AND dataEnvio = ?3",
+                notificacaoId, usuario.id, dataEnvio).firstResult();
+            if (exibida == null) {
+                return 0;
+            }
+            Date ate = exibida.dataEnvio;
             
-            Date dataLeitura = new Date();
-            for (Notificacao notificacao : notificacoes) {
-                notificacao.lida = true;
-                notificacao.dataLeitura = dataLeitura;
-                notificacao.persist();
+            LeituraNotificacoes leitura = LeituraNotificacoes.findById(usuario.id);
+            if (leitura != null && leitura.lidasAte != null && !ate.after(leitura.lidasAte)) {
+                return 0;
+            }
+            
+            // A contagem se limita à janela da caixa, como o contador; a marca cobre também as anteriores
+            Date inicioJanela = retencaoNotificacoes.inicioJanela();
+            long marcadas = ate.before(inicioJanela) ? 0 : Notificacao.count(LeituraNotificacoes.NAO_LIDAS
+                + " AND dataEnvio <= ?2 AND dataEnvio >= ?3", usuario.id, ate, inicioJanela);
+            
+            if (leitura == null) {
+                leitura = new LeituraNotificacoes();
+                leitura.usuarioId = usuario.id;
             }
+            leitura.lidasAte = ate;
+            leitura.dataLeitura = new Date();
+            leitura.persist();
+            cacheNotificacoes.aoMarcarTodasComoLidas(usuario.id, ate, marcadas);
             
-            return notificacoes.size();
+            return (int) marcadas;
         } catch (Exception e) {
             LOGGER.severe("Erro ao marcar todas notificações como lidas: " + e.getMessage());
             return 0;
@@ -1,5 +1,12 @@
 package service;
 
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.quarkus.hibernate.orm.panache.Panache;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
@@ -7,6 +14,10 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 /**
  * Serviço para gerenciar configurações de paginação.
  * Centraliza as configurações e lógica relacionada à paginação.
+ * Além da paginação por número de página, suporta a paginação por cursor (keyset), cujo total
+ * de itens vem de uma estimativa: as estatísticas do planejador do PostgreSQL para tabelas
+ * inteiras (listagem geral de leilões), ou uma contagem mantida em cache por alguns segundos
+ * para consultas filtradas (leilões de um criador, avaliações de um usuário).
  */
 @ApplicationScoped
 public class PaginationService {
@@ -31,6 +42,24 @@ public class PaginationService {
     @ConfigProperty(name = "pagination.header.size", defaultValue = "X-Size")
     String sizeHeaderName;
     
+    @Inject
+    @ConfigProperty(name = "pagination.header.cursor", defaultValue = "X-Cursor")
+    String cursorHeaderName;
+    
+    @Inject
+    @ConfigProperty(name = "pagination.count.cache-seconds", defaultValue = "60")
+    long countCacheSeconds;
+    
+    private Cache<String, Long> counts;
+    
+    @PostConstruct
+    void iniciar() {
+        counts = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(countCacheSeconds, TimeUnit.SECONDS)
+            .build();
+    }
+    
     /**
      * Retorna o tamanho padrão de página.
      * 
@@ -76,6 +105,52 @@ public class PaginationService {
         return sizeHeaderName;
     }
     
+    /**
+     * Retorna o nome do header para o cursor da paginação por chave.
+     * 
+     * @return Nome do header para o cursor
+     */
+    public String getCursorHeaderName() {
+        return cursorHeaderName;
+    }
+    
+    /**
+     * Estima o número de linhas de uma tabela pelas estatísticas do planejador ({@code pg_class.reltuples}),
+     * sem percorrer a tabela. Se a tabela ainda não foi analisada, usa uma contagem em cache.
+     * 
+     * @param table Nome da tabela
+     * @return Número estimado de linhas
+     */
+    public long estimatedCount(String table) {
+        Number estimativa = (Number) Panache.getEntityManager()
+            .createNativeQuery("SELECT CAST(reltuples AS BIGINT) FROM pg_class WHERE relname = :tabela AND relkind IN ('r', 'p')")
+            .setParameter("tabela", table)
+            .getResultStream()
+            .findFirst()
+            .orElse(-1L);
+        if (estimativa.longValue() >= 0) {
+            return estimativa.longValue();
+        }
+        
+        return cachedCount("tabela:" + table, () -> ((Number) Panache.getEntityManager()
+            .createNativeQuery("SELECT COUNT(*) FROM " + table)
+            .getSingleResult()).longValue());
+    }
+    
+    /**
+     * Retorna uma contagem mantida em cache por {@code pagination.count.cache-seconds}, executando-a
+     * apenas quando não estiver em cache. Usada no total da paginação por cursor das consultas
+     * filtradas, para que as páginas seguintes não repitam o COUNT, e por {@link #estimatedCount}
+     * quando a tabela ainda não tem estatísticas.
+     * 
+     * @param key Chave da contagem (consulta e parâmetros)
+     * @param counter Contagem exata
+     * @return Contagem, possivelmente desatualizada em até o tempo do cache
+     */
+    public long cachedCount(String key, Supplier<Long> counter) {
+        return counts.get(key, chave -> counter.get());
+    }
+    
     /**
      * Calcula o tamanho efetivo da página com base no tamanho solicitado.
      * Garante que o tamanho esteja dentro dos limites permitidos.
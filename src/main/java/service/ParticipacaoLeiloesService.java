@@ -0,0 +1,334 @@
+package service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.roaringbitmap.RoaringBitmap;
+
+import model.Convite;
+import model.Lance;
+import util.BitmapUtil;
+
+/**
+ * Conjuntos de participação de cada leilão, em bitmaps comprimidos ({@link RoaringBitmap})
+ * indexados pelo ID do fornecedor: convidados, convites aceitos, fornecedores com algum lance e
+ * fornecedores com lance válido (não cancelado). Pertinência e cardinalidade não consultam o banco,
+ * e os participantes podem ser percorridos em ordem de ID para a distribuição de notificações.
+ * 
+ * Os conjuntos de um leilão são carregados do banco no primeiro acesso e mantidos em cache; os
+ * convites, lances e cancelamentos de lance confirmados os atualizam no lugar. Os bitmaps não são
+ * alterados depois de publicados: as alterações de uma transação são acumuladas e, após a
+ * confirmação, cada conjunto alterado é substituído por uma única cópia.
+ * Os bitmaps só representam IDs de fornecedor até {@link Integer#MAX_VALUE}: ao encontrar um
+ * fornecedor com ID maior, os conjuntos são desativados, {@link #obter(Long)} retorna nulo e as
+ * verificações de pertinência passam a consultar o banco.
+ */
+@ApplicationScoped
+public class ParticipacaoLeiloesService {
+    
+    private static final Logger LOGGER = Logger.getLogger(ParticipacaoLeiloesService.class.getName());
+    
+    // Chave das alterações pendentes na transação atual
+    private static final Object ALTERACOES = new Object();
+    
+    // Índices dos conjuntos nas alterações pendentes
+    private static final int CONVIDADOS = 0;
+    private static final int ACEITOS = 1;
+    private static final int OFERTANTES = 2;
+    private static final int OFERTANTES_VALIDOS = 3;
+    
+    @Inject
+    TransacoesService transacoes;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.leiloes.participacao.cache", defaultValue = "10000")
+    long maximoLeiloes;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.leiloes.participacao.expiracao-minutos", defaultValue = "60")
+    long expiracaoMinutos;
+    
+    /**
+     * Conjuntos de participação de um leilão. Os bitmaps não devem ser alterados.
+     */
+    public record Participacao(RoaringBitmap convidados, RoaringBitmap aceitos, RoaringBitmap ofertantes,
+                               RoaringBitmap ofertantesValidos) {
+        
+        /**
+         * Fornecedores convidados ou com algum lance no leilão.
+         * 
+         * @return Bitmap dos IDs (cópia, pode ser alterada pelo chamador)
+         */
+        public RoaringBitmap participantes() {
+            return RoaringBitmap.or(convidados, ofertantes);
+        }
+        
+        /**
+         * Fornecedores com convite aceito ou com algum lance no leilão.
+         * 
+         * @return Bitmap dos IDs (cópia, pode ser alterada pelo chamador)
+         */
+        public RoaringBitmap interessados() {
+            return RoaringBitmap.or(aceitos, ofertantes);
+        }
+        
+        Participacao alterar(UnaryOperator<RoaringBitmap> convidados, UnaryOperator<RoaringBitmap> aceitos,
+                             UnaryOperator<RoaringBitmap> ofertantes, UnaryOperator<RoaringBitmap> ofertantesValidos) {
+            return new Participacao(convidados.apply(this.convidados), aceitos.apply(this.aceitos),
+                ofertantes.apply(this.ofertantes), ofertantesValidos.apply(this.ofertantesValidos));
+        }
+    }
+    
+    /**
+     * Alterações pendentes nos conjuntos de um leilão: fornecedores a incluir e a remover de cada
+     * conjunto. Vale a última alteração de cada fornecedor.
+     */
+    private static final class Alteracoes {
+        private final RoaringBitmap[] incluidos = novos();
+        private final RoaringBitmap[] removidos = novos();
+        
+        private static RoaringBitmap[] novos() {
+            RoaringBitmap[] bitmaps = new RoaringBitmap[OFERTANTES_VALIDOS + 1];
+            for (int i = 0; i < bitmaps.length; i++) {
+                bitmaps[i] = new RoaringBitmap();
+            }
+            return bitmaps;
+        }
+        
+        void alterar(int conjunto, int fornecedorId, boolean incluir) {
+            (incluir ? incluidos : removidos)[conjunto].add(fornecedorId);
+            (incluir ? removidos : incluidos)[conjunto].remove(fornecedorId);
+        }
+        
+        Participacao aplicar(Participacao participacao) {
+            return participacao.alterar(
+                b -> aplicar(b, CONVIDADOS),
+                b -> aplicar(b, ACEITOS),
+                b -> aplicar(b, OFERTANTES),
+                b -> aplicar(b, OFERTANTES_VALIDOS));
+        }
+        
+        /**
+         * Cópia do bitmap com as alterações do conjunto; o próprio bitmap se nada muda.
+         */
+        private RoaringBitmap aplicar(RoaringBitmap bitmap, int conjunto) {
+            if (RoaringBitmap.andNot(incluidos[conjunto], bitmap).isEmpty()
+                    && !RoaringBitmap.intersects(removidos[conjunto], bitmap)) {
+                return bitmap;
+            }
+            RoaringBitmap copia = RoaringBitmap.or(bitmap, incluidos[conjunto]);
+            copia.andNot(removidos[conjunto]);
+            return copia;
+        }
+    }
+    
+    private Cache<Long, Participacao> participacoes;
+    
+    // Algum fornecedor tem ID fora do intervalo dos bitmaps; os conjuntos não são mais usados
+    private volatile boolean desativado;
+    
+    @PostConstruct
+    void iniciar() {
+        participacoes = Caffeine.newBuilder()
+            .maximumSize(maximoLeiloes)
+            .expireAfterAccess(expiracaoMinutos, TimeUnit.MINUTES)
+            .build();
+    }
+    
+    /**
+     * Obtém os conjuntos de participação de um leilão, carregando-os do banco se necessário.
+     * 
+     * @param leilaoId ID do leilão
+     * @return Conjuntos de participação, ou nulo se os conjuntos estiverem desativados
+     */
+    public Participacao obter(Long leilaoId) {
+        if (desativado) {
+            return null;
+        }
+        Participacao participacao = participacoes.get(leilaoId, this::carregar);
+        return desativado ? null : participacao;
+    }
+    
+    /**
+     * Indica se o fornecedor já deu algum lance no leilão.
+     * 
+     * @param leilaoId ID do leilão
+     * @param fornecedorId ID do fornecedor
+     * @return true se há um lance do fornecedor, mesmo cancelado
+     */
+    public boolean temLance(Long leilaoId, Long fornecedorId) {
+        Participacao participacao = BitmapUtil.representavel(fornecedorId) ? obter(leilaoId) : null;
+        if (participacao == null) {
+            return Lance.count("leilao.id = ?1 AND fornecedor.id = ?2", leilaoId, fornecedorId) > 0;
+        }
+        return participacao.ofertantes().contains(BitmapUtil.posicao(fornecedorId));
+    }
+    
+    /**
+     * Indica se o fornecedor foi convidado para o leilão.
+     * 
+     * @param leilaoId ID do leilão
+     * @param fornecedorId ID do fornecedor
+     * @return true se há um convite do fornecedor para o leilão
+     */
+    public boolean isConvidado(Long leilaoId, Long fornecedorId) {
+        Participacao participacao = BitmapUtil.representavel(fornecedorId) ? obter(leilaoId) : null;
+        if (participacao == null) {
+            return Convite.count("leilao.id = ?1 AND fornecedor.id = ?2", leilaoId, fornecedorId) > 0;
+        }
+        return participacao.convidados().contains(BitmapUtil.posicao(fornecedorId));
+    }
+    
+    /**
+     * Registra um convite novo ou respondido, após a confirmação da transação atual.
+     * 
+     * @param convite Convite enviado, aceito ou recusado
+     */
+    public void registrarConvite(Convite convite) {
+        if (!BitmapUtil.representavel(convite.fornecedor.id)) {
+            transacoes.aposConfirmar(() -> desativar(convite.fornecedor.id));
+            return;
+        }
+        int fornecedorId = BitmapUtil.posicao(convite.fornecedor.id);
+        boolean aceito = convite.status == Convite.Status.ACEITO;
+        
+        atualizar(convite.leilao.id, alteracoes -> {
+            alteracoes.alterar(CONVIDADOS, fornecedorId, true);
+            alteracoes.alterar(ACEITOS, fornecedorId, aceito);
+        });
+    }
+    
+    /**
+     * Registra um lance novo, após a confirmação da transação atual.
+     * 
+     * @param lance Lance gravado
+     */
+    public void registrarLance(Lance lance) {
+        if (!BitmapUtil.representavel(lance.fornecedor.id)) {
+            transacoes.aposConfirmar(() -> desativar(lance.fornecedor.id));
+            return;
+        }
+        int fornecedorId = BitmapUtil.posicao(lance.fornecedor.id);
+        
+        atualizar(lance.leilao.id, alteracoes -> {
+            alteracoes.alterar(OFERTANTES, fornecedorId, true);
+            alteracoes.alterar(OFERTANTES_VALIDOS, fornecedorId, true);
+        });
+    }
+    
+    /**
+     * Registra o cancelamento de um lance, após a confirmação da transação atual: o fornecedor sai
+     * dos ofertantes válidos se não tiver outro lance válido no leilão. O lance já deve estar
+     * gravado como cancelado na transação atual.
+     * 
+     * @param lance Lance cancelado
+     */
+    public void registrarCancelamento(Lance lance) {
+        if (!BitmapUtil.representavel(lance.fornecedor.id)) {
+            transacoes.aposConfirmar(() -> desativar(lance.fornecedor.id));
+            return;
+        }
+        long validos = Lance.count("leilao.id = ?1 AND fornecedor.id = ?2 AND cancelado = false AND status <> ?3",
+            lance.leilao.id, lance.fornecedor.id, Lance.Status.CANCELADO);
+        if (validos > 0) {
+            return;
+        }
+        int fornecedorId = BitmapUtil.posicao(lance.fornecedor.id);
+        
+        atualizar(lance.leilao.id, alteracoes -> alteracoes.alterar(OFERTANTES_VALIDOS, fornecedorId, false));
+    }
+    
+    /**
+     * Acumula uma alteração nos conjuntos de um leilão, aplicada com as demais alterações da
+     * transação após a confirmação; sem transação, a alteração é aplicada imediatamente.
+     */
+    private void atualizar(Long leilaoId, Consumer<Alteracoes> alteracao) {
+        if (!transacoes.ativa()) {
+            Alteracoes alteracoes = new Alteracoes();
+            alteracao.accept(alteracoes);
+            aplicar(Map.of(leilaoId, alteracoes));
+            return;
+        }
+        Map<Long, Alteracoes> pendentes = transacoes.daTransacao(ALTERACOES, HashMap::new, this::aplicar);
+        alteracao.accept(pendentes.computeIfAbsent(leilaoId, id -> new Alteracoes()));
+    }
+    
+    /**
+     * Aplica as alterações aos conjuntos dos leilões em cache.
+     * Um leilão fora do cache não é alterado: a carga do banco, no próximo acesso, já inclui as
+     * alterações; uma carga em andamento é concluída antes que as alterações sejam aplicadas.
+     */
+    private void aplicar(Map<Long, Alteracoes> alteracoes) {
+        alteracoes.forEach((leilaoId, alteracao) ->
+            participacoes.asMap().computeIfPresent(leilaoId, (id, participacao) -> alteracao.aplicar(participacao)));
+    }
+    
+    private Participacao carregar(Long leilaoId) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            RoaringBitmap convidados = new RoaringBitmap();
+            RoaringBitmap aceitos = new RoaringBitmap();
+            Convite.getEntityManager()
+                .createQuery("SELECT c.fornecedor.id, c.status FROM Convite c WHERE c.leilao.id = ?1", Object[].class)
+                .setParameter(1, leilaoId)
+                .getResultStream()
+                .forEach(linha -> {
+                    if (!BitmapUtil.representavel((Long) linha[0])) {
+                        desativar((Long) linha[0]);
+                        return;
+                    }
+                    int fornecedorId = BitmapUtil.posicao((Long) linha[0]);
+                    convidados.add(fornecedorId);
+                    if (linha[1] == Convite.Status.ACEITO) {
+                        aceitos.add(fornecedorId);
+                    }
+                });
+            
+            RoaringBitmap ofertantes = new RoaringBitmap();
+            RoaringBitmap ofertantesValidos = new RoaringBitmap();
+            Lance.getEntityManager()
+                .createQuery("SELECT l.fornecedor.id, MIN(CASE WHEN l.cancelado = false AND l.status <> ?2 THEN 0 ELSE 1 END) "
+                    + "FROM Lance l WHERE l.leilao.id = ?1 GROUP BY l.fornecedor.id", Object[].class)
+                .setParameter(1, leilaoId)
+                .setParameter(2, Lance.Status.CANCELADO)
+                .getResultStream()
+                .forEach(linha -> {
+                    if (!BitmapUtil.representavel((Long) linha[0])) {
+                        desativar((Long) linha[0]);
+                        return;
+                    }
+                    int fornecedorId = BitmapUtil.posicao((Long) linha[0]);
+                    ofertantes.add(fornecedorId);
+                    if (((Number) linha[1]).intValue() == 0) {
+                        ofertantesValidos.add(fornecedorId);
+                    }
+                });
+            
+            LOGGER.fine("Participação do leilão " + leilaoId + " carregada. Convidados: " + convidados.getCardinality()
+                + ", Ofertantes: " + ofertantes.getCardinality());
+            return new Participacao(convidados, aceitos, ofertantes, ofertantesValidos);
+        });
+    }
+    
+    /**
+     * Desativa os conjuntos ao encontrar um fornecedor com ID fora do intervalo dos bitmaps.
+     */
+    private void desativar(Long fornecedorId) {
+        if (!desativado) {
+            desativado = true;
+            participacoes.invalidateAll();
+            LOGGER.warning("Conjuntos de participação dos leilões desativados: ID " + fornecedorId
+                + " fora do intervalo dos bitmaps. As participações passam a ser consultadas no banco.");
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import model.Notificacao;
+
+/**
+ * Serviço de manutenção da tabela de notificações, particionada por mês de {@code data_envio}.
+ * Periodicamente cria as partições dos próximos meses, move para {@code notificacao_arquivo} as
+ * notificações lidas mais antigas que a janela de retenção e remove as partições antigas que ficaram
+ * vazias. Notificações não lidas só são arquivadas se {@code rev3rso.notificacoes.retencao.arquivar-nao-lidas}
+ * estiver ativo (desativado por padrão): o usuário que ainda não as leu continua a vê-las.
+ * A caixa de notificações consulta por padrão apenas a janela recente ({@link #inicioJanela()}),
+ * alcançando só as partições dos últimos meses; as notificações anteriores são buscadas sob demanda.
+ */
+@ApplicationScoped
+public class RetencaoNotificacoesService {
+    
+    private static final Logger LOGGER = Logger.getLogger(RetencaoNotificacoesService.class.getName());
+    
+    private static final String PREFIXO_PARTICAO = "notificacao_p";
+    
+    private static final DateTimeFormatter FORMATO_PARTICAO = DateTimeFormatter.ofPattern("yyyyMM");
+    
+    // Espera máxima pelo lock da tabela notificacao ao desanexar uma partição
+    private static final String TIMEOUT_LOCK = "2s";
+    
+    // Move um lote de notificações para o arquivo; as lidas são as marcadas ou abaixo da marca de leitura
+    private static final String SQL_ARQUIVAR =
+        "WITH movidas AS ("
+        + " DELETE FROM notificacao n USING ("
+        + "  SELECT a.id, a.data_envio FROM notificacao a"
+        + "  LEFT JOIN notificacoes_leitura l ON l.usuario_id = a.usuario_id"
+        + "  WHERE (:arquivarNaoLidas AND a.data_envio < :limiteNaoLidas)"
+        + "  OR (a.data_envio < :limiteLidas AND (a.lida OR a.data_envio <= l.lidas_ate))"
+        + "  LIMIT :lote) alvo"
+        + " WHERE n.id = alvo.id AND n.data_envio = alvo.data_envio"
+        + " RETURNING n.id, n.titulo, n.mensagem, n.tipo, n.data_envio, n.data_leitura, n.lida, n.link,"
+        + " n.usuario_id, n.leilao_id, n.ocorrencias)"
+        + " INSERT INTO notificacao_arquivo (id, titulo, mensagem, tipo, data_envio, data_leitura, lida, link,"
+        + " usuario_id, leilao_id, ocorrencias, data_arquivamento)"
+        + " SELECT id, titulo, mensagem, tipo, data_envio, data_leitura, lida, link,"
+        + " usuario_id, leilao_id, ocorrencias, :agora FROM movidas";
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.notificacoes.retencao.lidas-dias", defaultValue = "30")
+    int diasLidas;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.notificacoes.retencao.arquivar-nao-lidas", defaultValue = "false")
+    boolean arquivarNaoLidas;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.notificacoes.retencao.nao-lidas-dias", defaultValue = "180")
+    int diasNaoLidas;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.notificacoes.retencao.caixa-dias", defaultValue = "60")
+    int diasCaixa;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.notificacoes.retencao.meses-adiante", defaultValue = "3")
+    int mesesAdiante;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.notificacoes.retencao.lote", defaultValue = "5000")
+    int tamanhoLote;
+    
+    @Inject
+    @ConfigProperty(name = "rev3rso.notificacoes.retencao.intervalo-minutos", defaultValue = "60")
+    long intervaloMinutos;
+    
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+        Thread thread = new Thread(tarefa, "retencao-notificacoes");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    void aoIniciar(@Observes StartupEvent ev) {
+        executor.scheduleWithFixedDelay(this::executar, 1, intervaloMinutos, TimeUnit.MINUTES);
+    }
+    
+    void aoEncerrar(@Observes ShutdownEvent ev) {
+        executor.shutdownNow();
+    }
+    
+    /**
+     * Início da janela padrão da caixa de notificações. As consultas da caixa e do contador de não
+     * lidas se limitam a esta janela, para alcançar apenas as partições recentes; notificações
+     * anteriores só são consultadas quando o usuário as pede explicitamente.
+     * 
+     * @return Data de envio mais antiga da janela
+     */
+    public Date inicioJanela() {
+        return new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(diasCaixa));
+    }
+    
+    private void executar() {
+        try {
+            criarParticoes();
+            arquivar();
+            removerParticoesVazias();
+        } catch (Exception e) {
+            LOGGER.severe("Erro na manutenção das notificações: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Cria as partições mensais do mês atual e dos próximos meses, se ainda não existirem.
+     */
+    private void criarParticoes() {
+        YearMonth atual = YearMonth.now();
+        for (int i = 0; i <= mesesAdiante; i++) {
+            YearMonth mes = atual.plusMonths(i);
+            String sql = "CREATE TABLE IF NOT EXISTS " + PREFIXO_PARTICAO + mes.format(FORMATO_PARTICAO)
+                + " PARTITION OF notificacao FOR VALUES FROM ('" + mes.atDay(1) + "') TO ('"
+                + mes.plusMonths(1).atDay(1) + "')";
+            QuarkusTransaction.requiringNew().run(() ->
+                Notificacao.getEntityManager().createNativeQuery(sql).executeUpdate());
+        }
+    }
+    
+    /**
+     * Move as notificações fora da janela de retenção para o arquivo, em lotes.
+     */
+    private void arquivar() {
+        long agora = System.currentTimeMillis();
+        Date limiteLidas = new Date(agora - TimeUnit.DAYS.toMillis(diasLidas));
+        Date limiteNaoLidas = new Date(agora - TimeUnit.DAYS.toMillis(diasNaoLidas));
+        
+        long total = 0;
+        int movidas;
+        do {
+            movidas = QuarkusTransaction.requiringNew().call(() ->
+                Notificacao.getEntityManager().createNativeQuery(SQL_ARQUIVAR)
+                    .setParameter("limiteLidas", limiteLidas)
+                    .setParameter("arquivarNaoLidas", arquivarNaoLidas)
+                    .setParameter("limiteNaoLidas", limiteNaoLidas)
+                    .setParameter("lote", tamanhoLote)
+                    .setParameter("agora", new Date(agora))
+                    .executeUpdate());
+            total += movidas;
+        } while (movidas == tamanhoLote);
+        
+        if (total > 0) {
+            LOGGER.info("Notificações arquivadas: " + total);
+        }
+    }
+    
+    /**
+     * Remove as partições mensais vazias anteriores à janela de retenção.
+     * A partição é desanexada antes de ser removida: o DETACH só altera o catálogo e segura o lock
+     * exclusivo de {@code notificacao} por um instante, enquanto o DROP, que apaga os arquivos, roda
+     * depois sobre a tabela já desanexada, sem travar a tabela principal. O DETACH CONCURRENTLY não é
+     * usado porque a tabela tem partição padrão ({@code notificacao_padrao}). O lock é pedido com
+     * timeout, para não enfileirar as consultas da caixa atrás de uma transação longa; se expirar,
+     * a partição é removida na execução seguinte.
+     */
+    @SuppressWarnings("unchecked")
+    private void removerParticoesVazias() {
+        LocalDate limite = LocalDate.now(ZoneId.systemDefault()).minusDays(diasLidas);
+        
+        List<String> particoes = QuarkusTransaction.requiringNew().call(() ->
+            Notificacao.getEntityManager().createNativeQuery(
+                    "SELECT c.relname FROM pg_inherits i "
+                    + "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent "
+                    + "WHERE p.relname = 'notificacao' AND c.relname LIKE '" + PREFIXO_PARTICAO + "%'")
+                .getResultList());
+        
+        for (String particao : particoes) {
+            YearMonth mes = YearMonth.parse(particao.substring(PREFIXO_PARTICAO.length()), FORMATO_PARTICAO);
+            if (!mes.plusMonths(1).atDay(1).isBefore(limite)) {
+                continue;
+            }
+            
+            boolean desanexada;
+            try {
+                desanexada = QuarkusTransaction.requiringNew().call(() -> {
+                    EntityManager em = Notificacao.getEntityManager();
+                    em.createNativeQuery("SET LOCAL lock_timeout = '" + TIMEOUT_LOCK + "'").executeUpdate();
+                    
+                    // Só partições vazias são desanexadas: as demais não precisam do lock da tabela notificacao
+                    boolean vazia = (Boolean) em.createNativeQuery(
+                            "SELECT NOT EXISTS (SELECT 1 FROM " + particao + ")")
+                        .getSingleResult();
+                    if (vazia) {
+                        em.createNativeQuery("ALTER TABLE notificacao DETACH PARTITION " + particao).executeUpdate();
+                    }
+                    return vazia;
+                });
+            } catch (Exception e) {
+                LOGGER.warning("Partição de notificações não desanexada: " + particao + " (" + e.getMessage() + ")");
+                continue;
+            }
+            if (!desanexada) {
+                continue;
+            }
+            
+            // Desanexada (e vazia), a remoção não trava mais a tabela notificacao
+            QuarkusTransaction.requiringNew().run(() ->
+                Notificacao.getEntityManager().createNativeQuery("DROP TABLE " + particao).executeUpdate());
+            LOGGER.info("Partição de notificações removida: " + particao);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import exception.BusinessException;
+
+/**
+ * Sequenciador de lances por leilão.
+ * Todas as alterações no livro de ofertas de um leilão passam por uma única faixa de execução
+ * (um único escritor), escolhida pelo ID do leilão. Leilões em faixas diferentes são
+ * processados em paralelo, um por núcleo.
+ */
+@ApplicationScoped
+public class SequenciadorLances {
+    
+    private static final Logger LOGGER = Logger.getLogger(SequenciadorLances.class.getName());
+    
+    // Número de faixas; 0 usa o número de processadores disponíveis
+    @Inject
+    @ConfigProperty(name = "rev3rso.lances.sequenciador.faixas", defaultValue = "0")
+    int quantidadeFaixas;
+    
+    private ExecutorService[] faixas;
+    
+    // Indica, para a thread atual, a faixa que ela executa (evita deadlock em chamadas reentrantes)
+    private final ThreadLocal<Integer> faixaAtual = new ThreadLocal<>();
+    
+    @PostConstruct
+    void iniciar() {
+        int total = quantidadeFaixas > 0 ? quantidadeFaixas : Runtime.getRuntime().availableProcessors();
+        faixas = new ExecutorService[total];
+        for (int i = 0; i < total; i++) {
+            final int indice = i;
+            faixas[i] = Executors.newSingleThreadExecutor(tarefa -> {
+                Thread thread = new Thread(() -> {
+                    faixaAtual.set(indice);
+                    tarefa.run();
+                }, "sequenciador-lances-" + indice);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        LOGGER.info("Sequenciador de lances iniciado com " + total + " faixas");
+    }
+    
+    @PreDestroy
+    void encerrar() {
+        if (faixas != null) {
+            for (ExecutorService faixa : faixas) {
+                faixa.shutdown();
+            }
+        }
+    }
+    
+    /**
+     * Executa uma tarefa na faixa do leilão e aguarda o resultado.
+     * Tarefas de um mesmo leilão são executadas uma de cada vez, na ordem de chegada.
+     * A tarefa deve operar apenas sobre estado em memória (livro de ofertas), nunca sobre
+     * a sessão do Hibernate da requisição.
+     * 
+     * @param <T> Tipo do resultado
+     * @param leilaoId ID do leilão
+     * @param tarefa Tarefa a executar
+     * @return Resultado da tarefa
+     */
+    public <T> T executar(Long leilaoId, Callable<T> tarefa) {
+        int indice = Math.floorMod(Long.hashCode(leilaoId), faixas.length);
+        
+        try {
+            // Já estamos na faixa do leilão: executa diretamente
+            Integer atual = faixaAtual.get();
+            if (atual != null && atual == indice) {
+                return tarefa.call();
+            }
+            
+            Future<T> resultado = faixas[indice].submit(tarefa);
+            return resultado.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new BusinessException("Erro ao processar lance", causa);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("Processamento do lance interrompido", e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BusinessException("Erro ao processar lance", e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package service;
+
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Registro de ações a executar ao final da transação atual, usado pelos serviços que mantêm
+ * estado em memória (índices, caches, filas) e só podem refleti-lo depois da confirmação.
+ */
+@ApplicationScoped
+public class TransacoesService {
+    
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+    
+    /**
+     * Verifica se há uma transação na thread atual, ativa ou já marcada para reversão.
+     * 
+     * @return true se houver uma transação
+     */
+    public boolean ativa() {
+        return transactionRegistry.getTransactionStatus() != Status.STATUS_NO_TRANSACTION;
+    }
+    
+    /**
+     * Executa a ação depois da confirmação da transação atual; se ela for revertida, a ação é
+     * descartada. Sem transação, ou depois que a transação já foi confirmada, a ação é executada
+     * imediatamente; se a transação já estiver marcada para reversão, a ação é descartada.
+     * 
+     * @param acao Ação a executar
+     */
+    public void aposConfirmar(Runnable acao) {
+        int status = transactionRegistry.getTransactionStatus();
+        if (status == Status.STATUS_NO_TRANSACTION || status == Status.STATUS_COMMITTED) {
+            acao.run();
+            return;
+        }
+        if (status != Status.STATUS_ACTIVE) {
+            return;
+        }
+        
+        aoFinalizar(statusFinal -> {
+            if (statusFinal == Status.STATUS_COMMITTED) {
+                acao.run();
+            }
+        });
+    }
+    
+    /**
+     * Obtém o objeto associado à transação atual pela chave, criando-o na primeira chamada da
+     * transação. Depois da confirmação, o objeto é entregue à ação informada; se a transação for
+     * revertida, ele é descartado. Permite acumular as alterações de uma transação e aplicá-las de
+     * uma só vez. Exige uma transação.
+     * 
+     * @param chave Chave do objeto na transação
+     * @param criar Criação do objeto
+     * @param aoConfirmar Ação executada com o objeto após a confirmação
+     * @return Objeto associado à transação atual
+     */
+    public <T> T daTransacao(Object chave, Supplier<T> criar, Consumer<T> aoConfirmar) {
+        @SuppressWarnings("unchecked")
+        T objeto = (T) transactionRegistry.getResource(chave);
+        if (objeto == null) {
+            T novo = criar.get();
+            transactionRegistry.putResource(chave, novo);
+            aposConfirmar(() -> aoConfirmar.accept(novo));
+            objeto = novo;
+        }
+        return objeto;
+    }
+    
+    /**
+     * Executa a ação ao final da transação atual, confirmada ou não, com o seu status
+     * ({@link Status#STATUS_COMMITTED} ou {@link Status#STATUS_ROLLEDBACK}). Exige uma transação.
+     * Se o resultado da transação já for conhecido (confirmada, ou marcada para reversão), a ação
+     * é executada imediatamente com esse resultado.
+     * 
+     * @param acao Ação a executar com o status final da transação
+     */
+    public void aoFinalizar(IntConsumer acao) {
+        int status = transactionRegistry.getTransactionStatus();
+        if (status == Status.STATUS_COMMITTED) {
+            acao.accept(Status.STATUS_COMMITTED);
+            return;
+        }
+        if (status == Status.STATUS_MARKED_ROLLBACK || status == Status.STATUS_ROLLING_BACK
+                || status == Status.STATUS_ROLLEDBACK) {
+            acao.accept(Status.STATUS_ROLLEDBACK);
+            return;
+        }
+        
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+            
+            @Override
+            public void afterCompletion(int status) {
+                acao.accept(status);
+            }
+        });
+    }
+}
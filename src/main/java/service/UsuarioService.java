@@ -13,6 +13,7 @@ import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import jakarta.persistence.EntityManager;
 
+import model.EmailPendente;
 import model.TokenRecuperacao;
 import model.Usuario;
 import util.ExceptionUtil;
@@ -38,6 +39,9 @@ public class UsuarioService {
     @Inject
     EntityManager entityManager;
     
+    @Inject
+    IndiceFornecedoresService indiceFornecedores;
+    
     /**
      * Concluir o processo de recuperação de senha, definindo uma nova senha.
      * 
@@ -334,7 +338,8 @@ public class UsuarioService {
             emailService.enviarEmail(
                 usuario.email,
                 assunto,
-                corpo.toString()
+                corpo.toString(),
+                EmailPendente.Prioridade.ALTA
             );
         } catch (Exception e) {
             LOGGER.severe("Erro ao enviar email de alteração de senha: " + e.getMessage());
@@ -368,7 +373,8 @@ public class UsuarioService {
             emailService.enviarEmail(
                 usuario.email,
                 assunto,
-                corpo.toString()
+                corpo.toString(),
+                EmailPendente.Prioridade.ALTA
             );
         } catch (Exception e) {
             LOGGER.severe("Erro ao enviar email de recuperação de senha: " + e.getMessage());
@@ -398,7 +404,8 @@ public class UsuarioService {
             emailService.enviarEmail(
                 usuario.email,
                 assunto,
-                corpo.toString()
+                corpo.toString(),
+                EmailPendente.Prioridade.ALTA
             );
         } catch (Exception e) {
             LOGGER.severe("Erro ao enviar email de confirmação de recuperação de senha: " + e.getMessage());
@@ -579,16 +586,23 @@ public class UsuarioService {
         return Usuario.findById(id);
     }
     
+    /**
+     * Grava um usuário novo ou alterado e reflete suas áreas e seu status no índice de fornecedores
+     * por área, após a confirmação da transação.
+     * 
+     * @param usuario Usuário a gravar
+     */
     @Transactional
     public void salvar(Usuario usuario) {
         usuario.persist();
+        indiceFornecedores.atualizar(usuario);
     }
     
     @Transactional
     public void atualizar(Usuario usuario) {
         Usuario usuarioExistente = buscarPorId(usuario.id);
         if (usuarioExistente != null) {
-            usuario.persist();
+            salvar(usuario);
         }
     }
     
@@ -0,0 +1,36 @@
+package util;
+
+/**
+ * Classe utilitária para os índices em memória que guardam IDs em bitmaps de 32 bits
+ * ({@code RoaringBitmap}).
+ * 
+ * Os IDs das tabelas são {@code bigint}, mas os bitmaps só representam IDs de 0 a
+ * {@link Integer#MAX_VALUE}. Um índice que encontra um ID fora desse intervalo deixa de ser usado,
+ * e as consultas voltam a ser feitas no banco.
+ */
+public class BitmapUtil {
+    
+    /**
+     * Verifica se um ID pode ser guardado em um bitmap.
+     * 
+     * @param id ID da entidade
+     * @return true se o ID estiver entre 0 e {@link Integer#MAX_VALUE}
+     */
+    public static boolean representavel(Long id) {
+        return id != null && id >= 0 && id <= Integer.MAX_VALUE;
+    }
+    
+    /**
+     * Posição de um ID no bitmap. O chamador deve verificar antes com {@link #representavel(Long)}.
+     * 
+     * @param id ID da entidade
+     * @return Posição do ID no bitmap
+     * @throws IllegalArgumentException Se o ID estiver fora do intervalo dos bitmaps
+     */
+    public static int posicao(Long id) {
+        if (!representavel(id)) {
+            throw new IllegalArgumentException("ID fora do intervalo dos índices em memória: " + id);
+        }
+        return id.intValue();
+    }
+}
@@ -0,0 +1,252 @@
+package util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Árvore ordenada com estatística de ordem (treap com tamanho de subárvore).
+ * Permite inserir, remover, consultar a posição de um elemento e obter o
+ * k-ésimo elemento em O(log n).
+ * 
+ * Nota: a classe não é thread-safe; o sincronismo fica a cargo de quem a utiliza.
+ * 
+ * @param <T> Tipo dos elementos
+ */
+public class OrderStatisticTree<T> {
+    
+    private static final class No<T> {
+        final T valor;
+        final int prioridade;
+        int tamanho = 1;
+        No<T> esquerda;
+        No<T> direita;
+        
+        No(T valor, int prioridade) {
+            this.valor = valor;
+            this.prioridade = prioridade;
+        }
+    }
+    
+    private final Comparator<? super T> comparator;
+    private final SplittableRandom random = new SplittableRandom();
+    private No<T> raiz;
+    
+    /**
+     * Construtor com o comparador que define a ordem dos elementos.
+     * 
+     * @param comparator Comparador dos elementos
+     */
+    public OrderStatisticTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+    
+    /**
+     * Retorna o número de elementos na árvore.
+     * 
+     * @return Número de elementos
+     */
+    public int size() {
+        return tamanho(raiz);
+    }
+    
+    /**
+     * Verifica se a árvore está vazia.
+     * 
+     * @return true se não houver elementos
+     */
+    public boolean isEmpty() {
+        return raiz == null;
+    }
+    
+    /**
+     * Verifica se um elemento equivalente existe na árvore.
+     * 
+     * @param valor Elemento a verificar
+     * @return true se existir
+     */
+    public boolean contains(T valor) {
+        No<T> no = raiz;
+        while (no != null) {
+            int cmp = comparator.compare(valor, no.valor);
+            if (cmp == 0) {
+                return true;
+            }
+            no = cmp < 0 ? no.esquerda : no.direita;
+        }
+        return false;
+    }
+    
+    /**
+     * Insere um elemento na árvore.
+     * 
+     * @param valor Elemento a inserir
+     * @return true se inserido, false se já existia um elemento equivalente
+     */
+    public boolean add(T valor) {
+        if (contains(valor)) {
+            return false;
+        }
+        No<T>[] partes = dividir(raiz, valor, false);
+        raiz = unir(unir(partes[0], new No<>(valor, random.nextInt())), partes[1]);
+        return true;
+    }
+    
+    /**
+     * Remove um elemento da árvore.
+     * 
+     * @param valor Elemento a remover
+     * @return true se removido, false se não existia
+     */
+    public boolean remove(T valor) {
+        No<T>[] menores = dividir(raiz, valor, false);
+        No<T>[] iguais = dividir(menores[1], valor, true);
+        raiz = unir(menores[0], iguais[1]);
+        return iguais[0] != null;
+    }
+    
+    /**
+     * Retorna a quantidade de elementos estritamente menores que o valor informado.
+     * O valor não precisa existir na árvore.
+     * 
+     * @param valor Valor de referência
+     * @return Quantidade de elementos menores
+     */
+    public int rank(T valor) {
+        int contagem = 0;
+        No<T> no = raiz;
+        while (no != null) {
+            if (comparator.compare(valor, no.valor) <= 0) {
+                no = no.esquerda;
+            } else {
+                contagem += tamanho(no.esquerda) + 1;
+                no = no.direita;
+            }
+        }
+        return contagem;
+    }
+    
+    /**
+     * Retorna o elemento na posição informada (começando em 0).
+     * 
+     * @param indice Posição do elemento
+     * @return Elemento na posição
+     * @throws IndexOutOfBoundsException Se a posição for inválida
+     */
+    public T get(int indice) {
+        if (indice < 0 || indice >= size()) {
+            throw new IndexOutOfBoundsException("Índice: " + indice + ", tamanho: " + size());
+        }
+        No<T> no = raiz;
+        while (true) {
+            int esquerda = tamanho(no.esquerda);
+            if (indice < esquerda) {
+                no = no.esquerda;
+            } else if (indice == esquerda) {
+                return no.valor;
+            } else {
+                indice -= esquerda + 1;
+                no = no.direita;
+            }
+        }
+    }
+    
+    /**
+     * Retorna o menor elemento da árvore.
+     * 
+     * @return Menor elemento ou null se a árvore estiver vazia
+     */
+    public T first() {
+        No<T> no = raiz;
+        if (no == null) {
+            return null;
+        }
+        while (no.esquerda != null) {
+            no = no.esquerda;
+        }
+        return no.valor;
+    }
+    
+    /**
+     * Retorna os primeiros elementos da árvore, em ordem.
+     * 
+     * @param limite Quantidade máxima de elementos
+     * @return Lista com até {@code limite} elementos
+     */
+    public List<T> first(int limite) {
+        List<T> resultado = new ArrayList<>(Math.max(0, Math.min(limite, size())));
+        Deque<No<T>> pilha = new ArrayDeque<>();
+        No<T> no = raiz;
+        while ((no != null || !pilha.isEmpty()) && resultado.size() < limite) {
+            while (no != null) {
+                pilha.push(no);
+                no = no.esquerda;
+            }
+            no = pilha.pop();
+            resultado.add(no.valor);
+            no = no.direita;
+        }
+        return resultado;
+    }
+    
+    /**
+     * Remove todos os elementos da árvore.
+     */
+    public void clear() {
+        raiz = null;
+    }
+    
+    /**
+     * Divide a subárvore em duas: elementos menores que o valor (ou menores ou iguais,
+     * quando {@code inclusivo}) e os demais.
+     */
+    @SuppressWarnings("unchecked")
+    private No<T>[] dividir(No<T> no, T valor, boolean inclusivo) {
+        if (no == null) {
+            return new No[] { null, null };
+        }
+        int cmp = comparator.compare(no.valor, valor);
+        if (cmp < 0 || (inclusivo && cmp == 0)) {
+            No<T>[] partes = dividir(no.direita, valor, inclusivo);
+            no.direita = partes[0];
+            atualizar(no);
+            return new No[] { no, partes[1] };
+        }
+        No<T>[] partes = dividir(no.esquerda, valor, inclusivo);
+        no.esquerda = partes[1];
+        atualizar(no);
+        return new No[] { partes[0], no };
+    }
+    
+    /**
+     * Une duas subárvores, assumindo que todos os elementos da primeira
+     * são menores que os da segunda.
+     */
+    private No<T> unir(No<T> esquerda, No<T> direita) {
+        if (esquerda == null) {
+            return direita;
+        }
+        if (direita == null) {
+            return esquerda;
+        }
+        if (esquerda.prioridade > direita.prioridade) {
+            esquerda.direita = unir(esquerda.direita, direita);
+            atualizar(esquerda);
+            return esquerda;
+        }
+        direita.esquerda = unir(esquerda, direita.esquerda);
+        atualizar(direita);
+        return direita;
+    }
+    
+    private void atualizar(No<T> no) {
+        no.tamanho = 1 + tamanho(no.esquerda) + tamanho(no.direita);
+    }
+    
+    private int tamanho(No<T> no) {
+        return no == null ? 0 : no.tamanho;
+    }
+}
@@ -0,0 +1,99 @@
+package util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import exception.BusinessException;
+
+/**
+ * Cursor opaco da paginação por chave (keyset).
+ * Guarda os valores das chaves de ordenação do último item de uma página (por exemplo, data de
+ * criação e ID); a página seguinte é buscada a partir desses valores, sem OFFSET. O cursor é
+ * codificado em Base64 (URL-safe) e não deve ser interpretado pelo cliente.
+ * As chaves suportadas são números e datas.
+ */
+public final class PageCursor {
+    
+    private static final String SEPARADOR = "|";
+    
+    private final List<String> keys;
+    
+    private PageCursor(List<String> keys) {
+        this.keys = keys;
+    }
+    
+    /**
+     * Cria um cursor a partir dos valores das chaves de ordenação.
+     * 
+     * @param keys Valores das chaves (números ou datas), na ordem da ordenação
+     * @return Cursor
+     */
+    public static PageCursor of(Object... keys) {
+        List<String> valores = new ArrayList<>(keys.length);
+        for (Object key : keys) {
+            valores.add(key instanceof Date data ? String.valueOf(data.getTime()) : String.valueOf(key));
+        }
+        return new PageCursor(valores);
+    }
+    
+    /**
+     * Decodifica um cursor recebido do cliente.
+     * 
+     * @param cursor Cursor codificado
+     * @return Cursor, ou null se o cursor for vazio (primeira página)
+     * @throws BusinessException se o cursor for inválido
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return new PageCursor(List.of(valor.split("\\" + SEPARADOR, -1)));
+        } catch (IllegalArgumentException e) {
+            throw BusinessException.validationError("cursor", "Cursor de paginação inválido");
+        }
+    }
+    
+    /**
+     * Codifica o cursor para envio ao cliente.
+     * 
+     * @return Cursor codificado
+     */
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(String.join(SEPARADOR, keys).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Valor numérico de uma chave.
+     * 
+     * @param index Posição da chave
+     * @return Valor da chave
+     * @throws BusinessException se a chave não existir ou não for numérica
+     */
+    public long getLong(int index) {
+        if (index >= keys.size()) {
+            throw BusinessException.validationError("cursor", "Cursor de paginação inválido");
+        }
+        try {
+            return Long.parseLong(keys.get(index));
+        } catch (NumberFormatException e) {
+            throw BusinessException.validationError("cursor", "Cursor de paginação inválido");
+        }
+    }
+    
+    /**
+     * Valor de data de uma chave.
+     * 
+     * @param index Posição da chave
+     * @return Valor da chave
+     * @throws BusinessException se a chave não existir ou não for uma data
+     */
+    public Date getDate(int index) {
+        return new Date(getLong(index));
+    }
+}
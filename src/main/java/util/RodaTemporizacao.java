@@ -0,0 +1,194 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Roda de temporização hierárquica.
+ * Cada nível tem um número fixo de baldes; um prazo que não cabe no intervalo de um nível
+ * vai para o nível superior (criado sob demanda), cujo tick é o intervalo inteiro do nível
+ * de baixo. Apenas os baldes ocupados entram na fila de vencimento, de modo que quem usa a
+ * roda só precisa acordar no vencimento do próximo balde, e não a cada tick. Quando um balde
+ * de nível superior vence, seus itens descem para os níveis inferiores ou disparam.
+ * 
+ * Nota: a classe não é thread-safe; o sincronismo fica a cargo de quem a utiliza.
+ * 
+ * @param <T> Tipo dos itens agendados
+ */
+public class RodaTemporizacao<T> {
+    
+    private record Entrada<T>(long prazo, T item) {
+    }
+    
+    private static final class Balde<T> {
+        long expiracao = -1;
+        final List<Entrada<T>> entradas = new ArrayList<>();
+    }
+    
+    private final class Nivel {
+        final long tick;
+        final int tamanho;
+        final long intervalo;
+        final List<Balde<T>> baldes;
+        long atual;
+        Nivel superior;
+        
+        Nivel(long tick, int tamanho, long inicio) {
+            this.tick = tick;
+            this.tamanho = tamanho;
+            this.intervalo = tick * tamanho;
+            this.atual = inicio - (inicio % tick);
+            this.baldes = new ArrayList<>(tamanho);
+            for (int i = 0; i < tamanho; i++) {
+                baldes.add(new Balde<>());
+            }
+        }
+        
+        boolean adicionar(Entrada<T> entrada) {
+            if (entrada.prazo() < atual + tick) {
+                return false;
+            }
+            
+            if (entrada.prazo() < atual + intervalo) {
+                long virtual = entrada.prazo() / tick;
+                Balde<T> balde = baldes.get((int) (virtual % tamanho));
+                balde.entradas.add(entrada);
+                
+                long expiracao = virtual * tick;
+                if (balde.expiracao != expiracao) {
+                    balde.expiracao = expiracao;
+                    fila.add(balde);
+                }
+                return true;
+            }
+            
+            if (superior == null) {
+                superior = new Nivel(intervalo, tamanho, atual);
+            }
+            return superior.adicionar(entrada);
+        }
+        
+        boolean remover(Entrada<T> entrada) {
+            // O balde de um prazo em cada nível é identificado pela sua expiração
+            long virtual = entrada.prazo() / tick;
+            Balde<T> balde = baldes.get((int) (virtual % tamanho));
+            if (balde.expiracao != virtual * tick || !balde.entradas.remove(entrada)) {
+                return false;
+            }
+            
+            if (balde.entradas.isEmpty()) {
+                fila.remove(balde);
+                balde.expiracao = -1;
+            }
+            return true;
+        }
+        
+        void avancarRelogio(long tempo) {
+            if (tempo >= atual + tick) {
+                atual = tempo - (tempo % tick);
+                if (superior != null) {
+                    superior.avancarRelogio(atual);
+                }
+            }
+        }
+    }
+    
+    private final PriorityQueue<Balde<T>> fila = new PriorityQueue<>(Comparator.comparingLong(b -> b.expiracao));
+    private final Nivel raiz;
+    private int quantidade;
+    
+    /**
+     * Construtor.
+     * 
+     * @param tick Duração do tick do nível mais baixo (em milissegundos)
+     * @param baldes Número de baldes por nível
+     * @param inicio Instante inicial da roda (em milissegundos)
+     */
+    public RodaTemporizacao(long tick, int baldes, long inicio) {
+        if (tick <= 0 || baldes <= 1) {
+            throw new IllegalArgumentException("Tick e número de baldes inválidos");
+        }
+        this.raiz = new Nivel(tick, baldes, inicio);
+    }
+    
+    /**
+     * Agenda um item para o prazo informado.
+     * 
+     * @param prazo Instante de disparo (em milissegundos)
+     * @param item Item agendado
+     * @return false se o prazo já venceu; nesse caso o item não é agendado e deve ser disparado por quem chamou
+     */
+    public boolean agendar(long prazo, T item) {
+        if (!raiz.adicionar(new Entrada<>(prazo, item))) {
+            return false;
+        }
+        quantidade++;
+        return true;
+    }
+    
+    /**
+     * Cancela um item agendado.
+     * 
+     * @param prazo Prazo informado no agendamento (em milissegundos)
+     * @param item Item agendado
+     * @return true se o item estava agendado e ainda não havia disparado
+     */
+    public boolean cancelar(long prazo, T item) {
+        Entrada<T> entrada = new Entrada<>(prazo, item);
+        for (Nivel nivel = raiz; nivel != null; nivel = nivel.superior) {
+            if (nivel.remover(entrada)) {
+                quantidade--;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Avança a roda até o instante informado, disparando os itens vencidos.
+     * 
+     * @param agora Instante atual (em milissegundos)
+     * @param disparar Ação executada para cada item vencido
+     */
+    public void avancar(long agora, Consumer<T> disparar) {
+        Balde<T> balde;
+        while ((balde = fila.peek()) != null && balde.expiracao <= agora) {
+            fila.poll();
+            raiz.avancarRelogio(balde.expiracao);
+            
+            List<Entrada<T>> entradas = new ArrayList<>(balde.entradas);
+            balde.entradas.clear();
+            balde.expiracao = -1;
+            
+            // Itens de níveis superiores descem de nível; os vencidos disparam
+            for (Entrada<T> entrada : entradas) {
+                if (!raiz.adicionar(entrada)) {
+                    quantidade--;
+                    disparar.accept(entrada.item());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Obtém o instante em que o próximo balde vence.
+     * 
+     * @return Instante (em milissegundos) ou {@link Long#MAX_VALUE} se a roda estiver vazia
+     */
+    public long proximoVencimento() {
+        Balde<T> balde = fila.peek();
+        return balde != null ? balde.expiracao : Long.MAX_VALUE;
+    }
+    
+    /**
+     * Obtém a quantidade de itens agendados.
+     * 
+     * @return Quantidade de itens
+     */
+    public int tamanho() {
+        return quantidade;
+    }
+}
@@ -0,0 +1,23 @@
+-- Script de criação da tabela de lances automáticos
+-- Cada fornecedor pode ter um lance automático ativo por leilão
+
+-- Criação da sequence
+CREATE SEQUENCE IF NOT EXISTS lances_automaticos_seq START 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS lances_automaticos (
+    id BIGINT PRIMARY KEY,
+    leilao_id BIGINT NOT NULL,
+    fornecedor_id BIGINT NOT NULL,
+    valor_minimo NUMERIC(38,2) NOT NULL,
+    decremento NUMERIC(38,2) NOT NULL,
+    condicoes_entrega VARCHAR(255),
+    prazo_entrega INTEGER,
+    prazo_pagamento INTEGER,
+    ativo BOOLEAN NOT NULL DEFAULT TRUE,
+    data_criacao TIMESTAMP NOT NULL,
+    data_atualizacao TIMESTAMP,
+    FOREIGN KEY (leilao_id) REFERENCES leiloes(id),
+    FOREIGN KEY (fornecedor_id) REFERENCES usuarios(id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_lances_automaticos_leilao ON lances_automaticos (leilao_id) WHERE ativo;
@@ -0,0 +1,22 @@
+-- Script de criação da caixa de saída (outbox) de eventos
+-- Cada evento é gravado na mesma transação que o originou e expandido depois em notificações;
+-- a coluna ultimo_destinatario guarda o último destinatário processado, para retomar a expansão após um reinício
+
+-- Criação da sequence
+CREATE SEQUENCE IF NOT EXISTS caixa_saida_seq START 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS caixa_saida (
+    id BIGINT PRIMARY KEY,
+    tipo VARCHAR(50) NOT NULL,
+    leilao_id BIGINT NOT NULL,
+    titulo VARCHAR(255) NOT NULL,
+    mensagem VARCHAR(1000) NOT NULL,
+    link VARCHAR(255),
+    ultimo_destinatario BIGINT NOT NULL DEFAULT 0,
+    total_enviados INTEGER NOT NULL DEFAULT 0,
+    data_criacao TIMESTAMP NOT NULL,
+    data_processamento TIMESTAMP,
+    FOREIGN KEY (leilao_id) REFERENCES leiloes(id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_caixa_saida_pendentes ON caixa_saida (id) WHERE data_processamento IS NULL;
@@ -0,0 +1,13 @@
+-- Script de criação da marca de leitura das notificações
+-- Cada usuário tem uma marca "lidas até": notificações com ID menor ou igual à marca são lidas;
+-- acima dela, apenas as marcadas individualmente (coluna lida) são lidas
+
+CREATE TABLE IF NOT EXISTS notificacoes_leitura (
+    usuario_id BIGINT PRIMARY KEY,
+    lidas_ate BIGINT NOT NULL,
+    data_leitura TIMESTAMP NOT NULL,
+    FOREIGN KEY (usuario_id) REFERENCES usuarios(id)
+);
+
+-- Notificações não lidas de um usuário acima da marca
+CREATE INDEX IF NOT EXISTS idx_notificacao_usuario_nao_lidas ON notificacao (usuario_id, id) WHERE lida = false;
@@ -0,0 +1,10 @@
+-- Script de agrupamento dos avisos de lance superado
+-- Cada fornecedor tem no máximo um aviso de lance superado pendente por leilão, atualizado
+-- no lugar a cada novo lance; ocorrencias conta os lances agrupados no aviso
+
+ALTER TABLE notificacao ADD COLUMN IF NOT EXISTS leilao_id BIGINT REFERENCES leiloes(id);
+ALTER TABLE notificacao ADD COLUMN IF NOT EXISTS ocorrencias INTEGER NOT NULL DEFAULT 1;
+
+-- Avisos pendentes de um leilão
+CREATE INDEX IF NOT EXISTS idx_notificacao_leilao_pendentes ON notificacao (leilao_id, tipo, usuario_id)
+    WHERE lida = false AND leilao_id IS NOT NULL;
@@ -0,0 +1,10 @@
+-- Script de criação das áreas de atuação dos leilões
+-- Leilões abertos com áreas informadas são divulgados apenas aos fornecedores dessas áreas
+
+CREATE TABLE IF NOT EXISTS leilao_areas (
+    leilao_id BIGINT NOT NULL,
+    area_id BIGINT NOT NULL,
+    PRIMARY KEY (leilao_id, area_id),
+    FOREIGN KEY (leilao_id) REFERENCES leiloes(id),
+    FOREIGN KEY (area_id) REFERENCES areas_atuacao(id)
+);
@@ -0,0 +1,23 @@
+-- Script de criação da fila de emails
+-- Os emails são gravados na transação da operação que os originou e enviados depois por um
+-- conjunto de workers, em ordem de prioridade; emails enviados são removidos da fila e os que
+-- esgotam as tentativas ficam com status FALHOU
+
+-- Criação da sequence
+CREATE SEQUENCE IF NOT EXISTS fila_emails_seq START 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS fila_emails (
+    id BIGINT PRIMARY KEY,
+    destinatario VARCHAR(255) NOT NULL,
+    assunto VARCHAR(255) NOT NULL,
+    corpo TEXT NOT NULL,
+    prioridade SMALLINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    tentativas INTEGER NOT NULL DEFAULT 0,
+    proxima_tentativa TIMESTAMP NOT NULL,
+    ultimo_erro VARCHAR(1000),
+    data_criacao TIMESTAMP NOT NULL
+);
+
+-- Próximos emails a enviar, por prioridade e ordem de chegada
+CREATE INDEX IF NOT EXISTS idx_fila_emails_pendentes ON fila_emails (prioridade, id) WHERE status = 'PENDENTE';
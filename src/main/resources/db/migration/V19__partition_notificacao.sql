@@ -0,0 +1,70 @@
+-- Script de particionamento e arquivamento das notificações
+-- A tabela notificacao passa a ser particionada por mês de data_envio (partições notificacao_pAAAAMM,
+-- criadas com antecedência pela aplicação). Notificações lidas antigas são movidas para
+-- notificacao_arquivo, e as partições antigas que ficam vazias são removidas
+
+ALTER TABLE notificacao RENAME TO notificacao_legado;
+DROP INDEX IF EXISTS idx_notificacao_usuario_nao_lidas;
+DROP INDEX IF EXISTS idx_notificacao_leilao_pendentes;
+
+-- A chave primária de uma tabela particionada precisa incluir a coluna de particionamento;
+-- os IDs continuam únicos pela sequence
+CREATE TABLE notificacao (
+    id BIGINT NOT NULL,
+    titulo VARCHAR(255) NOT NULL,
+    mensagem VARCHAR(1000) NOT NULL,
+    tipo SMALLINT,
+    data_envio TIMESTAMP NOT NULL,
+    data_leitura TIMESTAMP,
+    lida BOOLEAN NOT NULL,
+    link VARCHAR(255),
+    usuario_id BIGINT NOT NULL REFERENCES usuarios(id),
+    leilao_id BIGINT REFERENCES leiloes(id),
+    ocorrencias INTEGER NOT NULL DEFAULT 1,
+    PRIMARY KEY (id, data_envio)
+) PARTITION BY RANGE (data_envio);
+
+-- Recebe notificações fora das partições mensais (não deve acontecer com as partições criadas com antecedência)
+CREATE TABLE notificacao_padrao PARTITION OF notificacao DEFAULT;
+
+-- Partições mensais desde a notificação mais antiga até três meses à frente
+DO $$
+DECLARE
+    mes DATE := date_trunc('month', COALESCE((SELECT MIN(data_envio) FROM notificacao_legado), now()));
+BEGIN
+    WHILE mes <= date_trunc('month', now()) + INTERVAL '3 months' LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF notificacao FOR VALUES FROM (%L) TO (%L)',
+            'notificacao_p' || to_char(mes, 'YYYYMM'), mes, mes + INTERVAL '1 month');
+        mes := mes + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO notificacao (id, titulo, mensagem, tipo, data_envio, data_leitura, lida, link, usuario_id, leilao_id, ocorrencias)
+SELECT id, titulo, mensagem, tipo, data_envio, data_leitura, lida, link, usuario_id, leilao_id, ocorrencias
+FROM notificacao_legado;
+
+DROP TABLE notificacao_legado;
+
+-- Índices criados em todas as partições
+CREATE INDEX IF NOT EXISTS idx_notificacao_usuario_data ON notificacao (usuario_id, data_envio DESC);
+CREATE INDEX IF NOT EXISTS idx_notificacao_usuario_nao_lidas ON notificacao (usuario_id, id) WHERE lida = false;
+CREATE INDEX IF NOT EXISTS idx_notificacao_leilao_pendentes ON notificacao (leilao_id, tipo, usuario_id)
+    WHERE lida = false AND leilao_id IS NOT NULL;
+
+-- Notificações arquivadas
+CREATE TABLE IF NOT EXISTS notificacao_arquivo (
+    id BIGINT PRIMARY KEY,
+    titulo VARCHAR(255) NOT NULL,
+    mensagem VARCHAR(1000) NOT NULL,
+    tipo SMALLINT,
+    data_envio TIMESTAMP NOT NULL,
+    data_leitura TIMESTAMP,
+    lida BOOLEAN NOT NULL,
+    link VARCHAR(255),
+    usuario_id BIGINT NOT NULL,
+    leilao_id BIGINT,
+    ocorrencias INTEGER NOT NULL DEFAULT 1,
+    data_arquivamento TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_notificacao_arquivo_usuario ON notificacao_arquivo (usuario_id, data_envio DESC);
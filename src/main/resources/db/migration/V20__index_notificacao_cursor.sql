@@ -0,0 +1,9 @@
+-- Script de índice da caixa de notificações paginada por cursor
+-- A página seguinte é buscada por (data_envio, id) < (cursor), em ordem decrescente; o índice segue a
+-- mesma ordem e inclui a coluna lida, de modo que a busca posiciona diretamente no cursor e o filtro
+-- de não lidas é avaliado no índice, com custo constante qualquer que seja a profundidade da página
+
+DROP INDEX IF EXISTS idx_notificacao_usuario_data;
+
+CREATE INDEX IF NOT EXISTS idx_notificacao_usuario_cursor
+    ON notificacao (usuario_id, data_envio DESC, id DESC) INCLUDE (lida);
@@ -0,0 +1,12 @@
+-- Script de busca textual nos leilões
+-- A coluna busca é um tsvector gerado a partir do título (peso A), da descrição (peso B) e das
+-- especificações técnicas (peso C), mantido pelo próprio banco a cada INSERT e UPDATE do leilão.
+-- O índice GIN cobre apenas os leilões abertos, que são os alcançados pela busca dos fornecedores
+
+ALTER TABLE leiloes ADD COLUMN IF NOT EXISTS busca tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('portuguese', coalesce(titulo, '')), 'A') ||
+    setweight(to_tsvector('portuguese', coalesce(descricao, '')), 'B') ||
+    setweight(to_tsvector('portuguese', coalesce(especificacoes_tecnicas, '')), 'C')
+) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_leiloes_busca_abertos ON leiloes USING GIN (busca) WHERE status = 'ABERTO';
@@ -0,0 +1,19 @@
+-- Script de conversão da marca de leitura das notificações para data de envio
+-- A marca "lidas até" passa a ser a data de envio da notificação mais recente lida, e não o seu ID:
+-- os IDs são reservados antes da confirmação, e uma notificação confirmada depois da marca podia ter
+-- ID menor que ela. As marcas existentes são convertidas na data de envio da notificação da marca
+
+ALTER TABLE notificacoes_leitura ADD COLUMN lidas_ate_data TIMESTAMP;
+
+UPDATE notificacoes_leitura l
+SET lidas_ate_data = COALESCE(
+    (SELECT MAX(n.data_envio) FROM notificacao n WHERE n.usuario_id = l.usuario_id AND n.id <= l.lidas_ate),
+    l.data_leitura);
+
+ALTER TABLE notificacoes_leitura DROP COLUMN lidas_ate;
+ALTER TABLE notificacoes_leitura RENAME COLUMN lidas_ate_data TO lidas_ate;
+ALTER TABLE notificacoes_leitura ALTER COLUMN lidas_ate SET NOT NULL;
+
+-- Notificações não lidas de um usuário depois da marca
+DROP INDEX IF EXISTS idx_notificacao_usuario_nao_lidas;
+CREATE INDEX IF NOT EXISTS idx_notificacao_usuario_nao_lidas ON notificacao (usuario_id, data_envio) WHERE lida = false;
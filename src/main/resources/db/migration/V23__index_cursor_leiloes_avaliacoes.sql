@@ -0,0 +1,12 @@
+-- Script de índices das listagens paginadas por cursor de leilões do criador e de avaliações
+-- A página seguinte é buscada por (data, id) < (cursor), em ordem decrescente; os índices seguem a
+-- mesma ordem, de modo que a busca posiciona diretamente no cursor qualquer que seja a profundidade
+
+CREATE INDEX IF NOT EXISTS idx_leiloes_criador_cursor
+    ON leiloes (criador_id, data_criacao DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_avaliacoes_avaliador_cursor
+    ON avaliacoes (avaliador_id, data_avaliacao DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_avaliacoes_avaliado_cursor
+    ON avaliacoes (avaliado_id, data_avaliacao DESC, id DESC);
@@ -0,0 +1,12 @@
+-- Script de novas tentativas dos eventos da caixa de saída
+-- Um evento cuja expansão falha é adiado com espera exponencial, sem bloquear os eventos seguintes;
+-- ao esgotar as tentativas fica marcado como falho, com o último erro, e deixa de ser processado
+
+ALTER TABLE caixa_saida ADD COLUMN IF NOT EXISTS tentativas INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE caixa_saida ADD COLUMN IF NOT EXISTS proxima_tentativa TIMESTAMP;
+ALTER TABLE caixa_saida ADD COLUMN IF NOT EXISTS ultimo_erro VARCHAR(1000);
+ALTER TABLE caixa_saida ADD COLUMN IF NOT EXISTS falhou BOOLEAN NOT NULL DEFAULT FALSE;
+
+DROP INDEX IF EXISTS idx_caixa_saida_pendentes;
+CREATE INDEX IF NOT EXISTS idx_caixa_saida_pendentes ON caixa_saida (id)
+    WHERE data_processamento IS NULL AND NOT falhou;
@@ -0,0 +1,79 @@
+package resource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.websockets.next.BasicWebSocketConnector;
+import io.quarkus.websockets.next.CloseReason;
+import io.quarkus.websockets.next.WebSocketClientConnection;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import model.Usuario;
+import service.AcessoWebSocketService;
+
+/**
+ * Testes do canal WebSocket de lances ({@link LancesWebSocket}) com um cliente real.
+ * Usa o fornecedor 4 dos dados iniciais.
+ */
+@QuarkusTest
+class LancesWebSocketTest {
+    
+    private static final long FORNECEDOR_ID = 4L;
+    
+    @TestHTTPResource("/")
+    URI base;
+    
+    @Inject
+    AcessoWebSocketService acessoWebSocketService;
+    
+    private String bilhete() {
+        Usuario fornecedor = new Usuario();
+        fornecedor.id = FORNECEDOR_ID;
+        return acessoWebSocketService.emitirBilhete(fornecedor);
+    }
+    
+    @Test
+    void bilheteInvalidoFechaAConexao() throws Exception {
+        CompletableFuture<CloseReason> fechamento = new CompletableFuture<>();
+        BasicWebSocketConnector.create()
+            .baseUri(base)
+            .path("/ws/lances/invalido")
+            .onClose((conexao, motivo) -> fechamento.complete(motivo))
+            .connectAndAwait();
+        
+        assertEquals(1008, fechamento.get(10, TimeUnit.SECONDS).getCode());
+    }
+    
+    @Test
+    void fornecedorConectaEOsComandosConsultamOBanco() throws Exception {
+        BlockingQueue<String> mensagens = new LinkedBlockingQueue<>();
+        WebSocketClientConnection conexao = BasicWebSocketConnector.create()
+            .baseUri(base)
+            .path("/ws/lances/" + bilhete())
+            .onTextMessage((c, mensagem) -> mensagens.add(mensagem))
+            .connectAndAwait();
+        
+        try {
+            // A abertura busca o fornecedor no banco; sem contexto de requisição a conexão seria fechada
+            conexao.sendTextAndAwait("{\"id\":\"c1\",\"acao\":\"DAR\",\"leilaoId\":-1,\"valor\":100}");
+            String resposta = mensagens.poll(10, TimeUnit.SECONDS);
+            
+            assertNotNull(resposta, "sem resposta ao comando");
+            assertTrue(resposta.contains("\"id\":\"c1\""), resposta);
+            assertTrue(resposta.contains("Leilão não encontrado"), resposta);
+            assertTrue(conexao.isOpen());
+        } finally {
+            conexao.closeAndAwait();
+        }
+    }
+}
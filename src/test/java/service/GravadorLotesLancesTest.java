@@ -0,0 +1,322 @@
+package service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import exception.BusinessException;
+import model.Lance;
+import model.Usuario;
+
+/**
+ * Testes da gravação de lances em lotes ({@link GravadorLotesLances}).
+ * O banco é substituído por uma transação simulada: o persist atribui IDs em sequência e a
+ * confirmação falha quando o lote contém um lance marcado com erro.
+ */
+class GravadorLotesLancesTest {
+    
+    private static final Long LEILAO_ID = 1L;
+    
+    private final TransacaoSimulada transacao = new TransacaoSimulada();
+    
+    private final LivroOfertas livro = new LivroOfertas(LEILAO_ID);
+    
+    // Lances cuja gravação falha na confirmação da transação (por identidade: o ID muda no persist)
+    private final Set<Lance> comErro = Collections.newSetFromMap(new IdentityHashMap<>());
+    
+    // Lances cujo persist falha, com a oferta ainda reservada no livro
+    private final Set<Lance> comErroNoPersist = Collections.newSetFromMap(new IdentityHashMap<>());
+    
+    private final Set<Long> leiloesEncerrados = new HashSet<>();
+    
+    private final AtomicLong sequence = new AtomicLong(100);
+    
+    private SequenciadorLances sequenciador;
+    
+    private GravadorSimulado gravador;
+    
+    /**
+     * Transação simulada: guarda as sincronizações registradas e as executa ao final da tarefa.
+     */
+    private static final class TransacaoSimulada implements TransactionSynchronizationRegistry {
+        private final List<Synchronization> sincronizacoes = new ArrayList<>();
+        private final Map<Object, Object> recursos = new HashMap<>();
+        private int status = Status.STATUS_NO_TRANSACTION;
+        private boolean falhar;
+        private int execucoes;
+        
+        void executar(Runnable tarefa) {
+            status = Status.STATUS_ACTIVE;
+            falhar = false;
+            execucoes++;
+            RuntimeException erro = null;
+            try {
+                tarefa.run();
+            } catch (RuntimeException e) {
+                erro = e;
+            }
+            
+            int fim = erro == null && !falhar ? Status.STATUS_COMMITTED : Status.STATUS_ROLLEDBACK;
+            status = Status.STATUS_NO_TRANSACTION;
+            for (Synchronization sincronizacao : sincronizacoes) {
+                sincronizacao.afterCompletion(fim);
+            }
+            sincronizacoes.clear();
+            recursos.clear();
+            
+            if (erro != null) {
+                throw erro;
+            }
+            if (fim == Status.STATUS_ROLLEDBACK) {
+                throw new IllegalStateException("Violação de restrição simulada");
+            }
+        }
+        
+        @Override
+        public Object getTransactionKey() {
+            return status == Status.STATUS_NO_TRANSACTION ? null : this;
+        }
+        
+        @Override
+        public void putResource(Object chave, Object valor) {
+            recursos.put(chave, valor);
+        }
+        
+        @Override
+        public Object getResource(Object chave) {
+            return recursos.get(chave);
+        }
+        
+        @Override
+        public void registerInterposedSynchronization(Synchronization sincronizacao) {
+            sincronizacoes.add(sincronizacao);
+        }
+        
+        @Override
+        public int getTransactionStatus() {
+            return status;
+        }
+        
+        @Override
+        public void setRollbackOnly() {
+            falhar = true;
+        }
+        
+        @Override
+        public boolean getRollbackOnly() {
+            return falhar;
+        }
+    }
+    
+    /**
+     * Gravador com o banco substituído pela transação simulada.
+     */
+    private final class GravadorSimulado extends GravadorLotesLances {
+        
+        @Override
+        void executarTransacao(Runnable tarefa) {
+            transacao.executar(tarefa);
+        }
+        
+        @Override
+        Set<Long> travarAbertos(List<Pedido> lote) {
+            Set<Long> abertos = new HashSet<>();
+            for (Pedido pedido : lote) {
+                abertos.add(pedido.livro().getLeilaoId());
+            }
+            abertos.removeAll(leiloesEncerrados);
+            return abertos;
+        }
+        
+        @Override
+        void persistir(Lance lance) {
+            if (comErroNoPersist.contains(lance)) {
+                // A oferta está reservada no livro com um ID provisório até a reversão
+                assertTrue(livro.melhorOferta().lanceId() < 0, "oferta provisória ausente do livro");
+                throw new IllegalStateException("Erro simulado no persist");
+            }
+            lance.id = sequence.incrementAndGet();
+            if (comErro.contains(lance)) {
+                transacao.falhar = true;
+            }
+        }
+    }
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void preparar() throws Exception {
+        sequenciador = new SequenciadorLances();
+        sequenciador.quantidadeFaixas = 1;
+        sequenciador.iniciar();
+        
+        TransacoesService transacoes = new TransacoesService();
+        transacoes.transactionRegistry = transacao;
+        
+        LivroOfertasService livroOfertasService = new LivroOfertasService() {
+            @Override
+            void agendarGravacaoMelhorOferta(Long leilaoId) {
+            }
+        };
+        livroOfertasService.transacoes = transacoes;
+        livroOfertasService.sequenciador = sequenciador;
+        livroOfertasService.eventosLances = new EventosLancesService();
+        livroOfertasService.lancesAutomaticos = new LancesAutomaticosService() {
+            @Override
+            void agendar(Long leilaoId) {
+            }
+        };
+        
+        // O livro precisa ser o livro carregado do leilão para que as reversões sejam desfeitas nele
+        Field livros = LivroOfertasService.class.getDeclaredField("livros");
+        livros.setAccessible(true);
+        ((Map<Long, LivroOfertas>) livros.get(livroOfertasService)).put(LEILAO_ID, livro);
+        
+        gravador = new GravadorSimulado();
+        gravador.tamanhoLote = 64;
+        gravador.sequenciador = sequenciador;
+        gravador.livroOfertasService = livroOfertasService;
+        gravador.registry = new SimpleMeterRegistry();
+        gravador.iniciar();
+    }
+    
+    @AfterEach
+    void finalizar() {
+        gravador.encerrar();
+        sequenciador.encerrar();
+    }
+    
+    private static GravadorLotesLances.Pedido pedido(LivroOfertas livro, long fornecedorId, String valor) {
+        Usuario fornecedor = new Usuario();
+        fornecedor.id = fornecedorId;
+        
+        Lance lance = new Lance();
+        lance.fornecedor = fornecedor;
+        lance.valor = new BigDecimal(valor);
+        lance.dataCriacao = new Date();
+        return new GravadorLotesLances.Pedido(lance, livro, new CompletableFuture<>());
+    }
+    
+    private static Throwable erro(GravadorLotesLances.Pedido pedido) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> pedido.resultado().get());
+        return e.getCause();
+    }
+    
+    private List<Long> lancesNoLivro() {
+        return livro.melhoresOfertas(10).stream().map(LivroOfertas.Oferta::lanceId).toList();
+    }
+    
+    @Test
+    void loteConfirmadoRegistraAsOfertasDefinitivas() throws Exception {
+        GravadorLotesLances.Pedido a = pedido(livro, 10, "100");
+        GravadorLotesLances.Pedido b = pedido(livro, 20, "90");
+        GravadorLotesLances.Pedido c = pedido(livro, 30, "80");
+        
+        gravador.gravarLote(List.of(a, b, c));
+        
+        assertEquals(1, transacao.execucoes);
+        assertSame(a.lance(), a.resultado().get());
+        assertSame(c.lance(), c.resultado().get());
+        assertEquals(List.of(c.lance().id, b.lance().id, a.lance().id), lancesNoLivro());
+        assertEquals(3, livro.totalOfertas());
+    }
+    
+    @Test
+    void lanceRecusadoNaoDerrubaOLote() throws Exception {
+        GravadorLotesLances.Pedido a = pedido(livro, 10, "100");
+        GravadorLotesLances.Pedido b = pedido(livro, 20, "120");
+        
+        gravador.gravarLote(List.of(a, b));
+        
+        assertSame(a.lance(), a.resultado().get());
+        assertTrue(erro(b) instanceof BusinessException);
+        assertNull(b.lance().id);
+        assertEquals(List.of(a.lance().id), lancesNoLivro());
+    }
+    
+    @Test
+    void leilaoEncerradoNoBancoRecusaOsLances() {
+        leiloesEncerrados.add(LEILAO_ID);
+        GravadorLotesLances.Pedido a = pedido(livro, 10, "100");
+        
+        gravador.gravarLote(List.of(a));
+        
+        assertEquals("O leilão não está mais aberto para lances", erro(a).getMessage());
+        assertEquals(0, livro.totalOfertas());
+    }
+    
+    @Test
+    void falhaDoLoteRegravaOsLancesUmAUm() throws Exception {
+        GravadorLotesLances.Pedido a = pedido(livro, 10, "100");
+        GravadorLotesLances.Pedido b = pedido(livro, 20, "90");
+        GravadorLotesLances.Pedido c = pedido(livro, 30, "80");
+        comErro.add(b.lance());
+        
+        gravador.gravarLote(List.of(a, b, c));
+        
+        // Uma transação para o lote e uma para cada lance regravado
+        assertEquals(4, transacao.execucoes);
+        assertSame(a.lance(), a.resultado().get());
+        assertSame(c.lance(), c.resultado().get());
+        assertTrue(erro(b) instanceof BusinessException);
+        assertNull(b.lance().id);
+        
+        // Só as ofertas dos lances regravados ficam no livro, com os IDs da segunda gravação
+        assertEquals(List.of(c.lance().id, a.lance().id), lancesNoLivro());
+        assertNotNull(a.lance().id);
+        assertTrue(a.lance().id > 103, "ID da transação desfeita reaproveitado: " + a.lance().id);
+    }
+    
+    @Test
+    void reversaoRemoveAOfertaProvisoria() {
+        GravadorLotesLances.Pedido a = pedido(livro, 10, "100");
+        comErroNoPersist.add(a.lance());
+        
+        gravador.gravarLote(List.of(a));
+        
+        assertTrue(erro(a) instanceof BusinessException);
+        assertEquals(0, livro.totalOfertas());
+        assertNull(livro.melhorOferta());
+        assertEquals(0, livro.posicaoFornecedor(10L));
+    }
+    
+    @Test
+    void reversaoDeUmLoteNaoAfetaOfertasJaConfirmadas() throws Exception {
+        GravadorLotesLances.Pedido a = pedido(livro, 10, "100");
+        gravador.gravarLote(List.of(a));
+        
+        GravadorLotesLances.Pedido b = pedido(livro, 20, "90");
+        comErroNoPersist.add(b.lance());
+        gravador.gravarLote(List.of(b));
+        
+        assertSame(a.lance(), a.resultado().get());
+        assertTrue(erro(b) instanceof BusinessException);
+        assertEquals(List.of(a.lance().id), lancesNoLivro());
+        assertEquals(0, new BigDecimal("100").compareTo(livro.valorMelhorOferta()));
+    }
+}
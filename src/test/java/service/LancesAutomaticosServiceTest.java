@@ -0,0 +1,131 @@
+package service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import service.LancesAutomaticosService.LanceCalculado;
+import service.LancesAutomaticosService.Regra;
+
+/**
+ * Testes da resolução dos lances automáticos ({@link LancesAutomaticosService#calcular}).
+ */
+class LancesAutomaticosServiceTest {
+    
+    private static final Long FORNECEDOR_MANUAL = 1L;
+    
+    private static BigDecimal valor(String valor) {
+        return new BigDecimal(valor);
+    }
+    
+    private static LivroOfertas.Oferta oferta(Long fornecedorId, String valor) {
+        return new LivroOfertas.Oferta(10L, fornecedorId, valor(valor), 0L);
+    }
+    
+    private static Regra regra(long id, long fornecedorId, String valorMinimo, String decremento) {
+        return new Regra(id, fornecedorId, valor(valorMinimo), valor(decremento));
+    }
+    
+    private static void assertLance(LanceCalculado lance, long regraId, String valor) {
+        assertEquals(regraId, lance.regraId());
+        assertEquals(0, valor(valor).compareTo(lance.valor()), "valor do lance: " + lance.valor());
+    }
+    
+    @Test
+    void semRegrasNaoGeraLances() {
+        assertTrue(LancesAutomaticosService.calcular(oferta(FORNECEDOR_MANUAL, "100"), valor("100"), List.of()).isEmpty());
+    }
+    
+    @Test
+    void regraUnicaFicaUmDecrementoAbaixoDaMelhorOferta() {
+        List<LanceCalculado> lances = LancesAutomaticosService.calcular(oferta(FORNECEDOR_MANUAL, "100"), valor("120"),
+            List.of(regra(1, 2, "80", "5")));
+        
+        assertEquals(1, lances.size());
+        assertLance(lances.get(0), 1, "95");
+    }
+    
+    @Test
+    void regraUnicaNaoPassaDoValorMinimo() {
+        List<LanceCalculado> lances = LancesAutomaticosService.calcular(oferta(FORNECEDOR_MANUAL, "100"), valor("120"),
+            List.of(regra(1, 2, "98", "5")));
+        
+        assertEquals(1, lances.size());
+        assertLance(lances.get(0), 1, "98");
+    }
+    
+    @Test
+    void regraComValorMinimoAcimaDaMelhorOfertaNaoParticipa() {
+        assertTrue(LancesAutomaticosService.calcular(oferta(FORNECEDOR_MANUAL, "100"), valor("120"),
+            List.of(regra(1, 2, "100", "5"))).isEmpty());
+    }
+    
+    @Test
+    void segundoColocadoVaiAteOLimiteEVencedorFicaUmDecrementoAbaixo() {
+        List<LanceCalculado> lances = LancesAutomaticosService.calcular(oferta(FORNECEDOR_MANUAL, "100"), valor("120"),
+            List.of(regra(1, 2, "70", "5"), regra(2, 3, "80", "5")));
+        
+        assertEquals(2, lances.size());
+        assertLance(lances.get(0), 2, "80");
+        assertLance(lances.get(1), 1, "75");
+    }
+    
+    @Test
+    void liderComRegraDefendeAPosicao() {
+        List<LanceCalculado> lances = LancesAutomaticosService.calcular(oferta(2L, "100"), valor("120"),
+            List.of(regra(1, 2, "60", "5"), regra(2, 3, "80", "5")));
+        
+        assertEquals(2, lances.size());
+        assertLance(lances.get(0), 2, "80");
+        assertLance(lances.get(1), 1, "75");
+    }
+    
+    @Test
+    void liderComRegraNaoResponde() {
+        assertTrue(LancesAutomaticosService.calcular(oferta(2L, "100"), valor("120"),
+            List.of(regra(1, 2, "60", "5"))).isEmpty());
+    }
+    
+    @Test
+    void empateNosLimitesFicaComARegraMaisAntiga() {
+        List<LanceCalculado> lances = LancesAutomaticosService.calcular(oferta(FORNECEDOR_MANUAL, "100"), valor("120"),
+            List.of(regra(2, 3, "80", "5"), regra(1, 2, "80", "5")));
+        
+        assertEquals(1, lances.size());
+        assertLance(lances.get(0), 1, "80");
+    }
+    
+    @Test
+    void semOfertasRegraUnicaAbreNoValorDeReferencia() {
+        List<LanceCalculado> lances = LancesAutomaticosService.calcular(null, valor("100"),
+            List.of(regra(1, 2, "80", "5")));
+        
+        assertEquals(1, lances.size());
+        assertLance(lances.get(0), 1, "100");
+    }
+    
+    @Test
+    void semOfertasDisputaEntreRegrasAbreComOResultadoFinal() {
+        List<LanceCalculado> lances = LancesAutomaticosService.calcular(null, valor("100"),
+            List.of(regra(1, 2, "70", "5"), regra(2, 3, "80", "5")));
+        
+        assertEquals(2, lances.size());
+        assertLance(lances.get(0), 2, "80");
+        assertLance(lances.get(1), 1, "75");
+    }
+    
+    @Test
+    void semOfertasRegraAcimaDoValorDeReferenciaNaoParticipa() {
+        assertTrue(LancesAutomaticosService.calcular(null, valor("100"),
+            List.of(regra(1, 2, "120", "5"))).isEmpty());
+    }
+    
+    @Test
+    void semOfertasESemValorDeReferenciaRegraUnicaAguarda() {
+        assertTrue(LancesAutomaticosService.calcular(null, null, List.of(regra(1, 2, "80", "5"))).isEmpty());
+    }
+}
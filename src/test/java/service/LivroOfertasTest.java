@@ -0,0 +1,134 @@
+package service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testes do ranking do livro de ofertas ({@link LivroOfertas}).
+ */
+class LivroOfertasTest {
+    
+    private final LivroOfertas livro = new LivroOfertas(1L);
+    
+    private static LivroOfertas.Oferta oferta(long lanceId, long fornecedorId, String valor, long dataCriacao) {
+        return new LivroOfertas.Oferta(lanceId, fornecedorId, new BigDecimal(valor), dataCriacao);
+    }
+    
+    private static List<Long> lances(List<LivroOfertas.Oferta> ofertas) {
+        return ofertas.stream().map(LivroOfertas.Oferta::lanceId).toList();
+    }
+    
+    @Test
+    void livroVazio() {
+        assertNull(livro.melhorOferta());
+        assertNull(livro.valorMelhorOferta());
+        assertEquals(0, livro.totalOfertas());
+        assertEquals(0, livro.totalFornecedores());
+        assertEquals(0, livro.posicaoFornecedor(10L));
+        assertEquals(1, livro.posicaoValor(new BigDecimal("100")));
+    }
+    
+    @Test
+    void rankingTemUmaOfertaPorFornecedor() {
+        livro.registrar(oferta(1, 10, "100", 1));
+        livro.registrar(oferta(2, 20, "90", 2));
+        livro.registrar(oferta(3, 10, "80", 3));
+        livro.registrar(oferta(4, 30, "95", 4));
+        
+        assertEquals(4, livro.totalOfertas());
+        assertEquals(3, livro.totalFornecedores());
+        assertEquals(List.of(3L, 2L, 4L), lances(livro.melhoresOfertas(5)));
+        assertEquals(0, new BigDecimal("80").compareTo(livro.valorMelhorOferta()));
+        
+        assertEquals(1, livro.posicaoFornecedor(10L));
+        assertEquals(2, livro.posicaoFornecedor(20L));
+        assertEquals(3, livro.posicaoFornecedor(30L));
+        assertEquals(0, livro.posicaoFornecedor(40L));
+    }
+    
+    @Test
+    void posicaoValorConsideraTodasAsOfertas() {
+        livro.registrar(oferta(1, 10, "100", 1));
+        livro.registrar(oferta(2, 10, "90", 2));
+        livro.registrar(oferta(3, 20, "95", 3));
+        
+        assertEquals(1, livro.posicaoValor(new BigDecimal("80")));
+        assertEquals(2, livro.posicaoValor(new BigDecimal("92")));
+        assertEquals(4, livro.posicaoValor(new BigDecimal("120")));
+    }
+    
+    @Test
+    void empateDeValorFavoreceOLanceMaisAntigo() {
+        livro.registrar(oferta(2, 20, "100", 2000));
+        livro.registrar(oferta(1, 10, "100.00", 1000));
+        livro.registrar(oferta(3, 30, "100", 2000));
+        
+        assertEquals(List.of(1L, 2L, 3L), lances(livro.melhoresOfertas(3)));
+        assertEquals(1, livro.posicaoFornecedor(10L));
+        assertEquals(2, livro.posicaoFornecedor(20L));
+        assertEquals(3, livro.posicaoFornecedor(30L));
+        // Um novo lance com o mesmo valor fica atrás de todos os empatados
+        assertEquals(1, livro.posicaoValor(new BigDecimal("100")));
+        assertEquals(4, livro.posicaoValor(new BigDecimal("100.01")));
+    }
+    
+    @Test
+    void remocaoDaMelhorOfertaPromoveAOfertaSeguinteDoFornecedor() {
+        livro.registrar(oferta(1, 10, "100", 1));
+        livro.registrar(oferta(2, 10, "80", 2));
+        livro.registrar(oferta(3, 20, "90", 3));
+        
+        assertTrue(livro.remover(2L));
+        
+        assertEquals(2, livro.totalOfertas());
+        assertEquals(2, livro.totalFornecedores());
+        assertEquals(List.of(3L, 1L), lances(livro.melhoresOfertas(5)));
+        assertEquals(2, livro.posicaoFornecedor(10L));
+        assertEquals(1, livro.posicaoFornecedor(20L));
+        assertNull(livro.ofertaDoLance(2L));
+    }
+    
+    @Test
+    void remocaoDaUltimaOfertaTiraOFornecedorDoRanking() {
+        livro.registrar(oferta(1, 10, "100", 1));
+        livro.registrar(oferta(2, 20, "90", 2));
+        
+        assertTrue(livro.remover(2L));
+        assertFalse(livro.remover(2L));
+        
+        assertEquals(1, livro.totalFornecedores());
+        assertEquals(0, livro.posicaoFornecedor(20L));
+        assertNull(livro.ofertaDoFornecedor(20L));
+        assertEquals(1, livro.posicaoFornecedor(10L));
+    }
+    
+    @Test
+    void remocaoDeOfertaQueNaoEAMelhorMantemORanking() {
+        livro.registrar(oferta(1, 10, "80", 1));
+        livro.registrar(oferta(2, 10, "100", 2));
+        livro.registrar(oferta(3, 20, "90", 3));
+        
+        assertTrue(livro.remover(2L));
+        
+        assertEquals(2, livro.totalOfertas());
+        assertEquals(List.of(1L, 3L), lances(livro.melhoresOfertas(5)));
+    }
+    
+    @Test
+    void registrarOMesmoLanceSubstituiAOferta() {
+        livro.registrar(oferta(1, 10, "100", 1));
+        livro.registrar(oferta(2, 20, "90", 2));
+        livro.registrar(oferta(1, 10, "85", 1));
+        
+        assertEquals(2, livro.totalOfertas());
+        assertEquals(1, livro.posicaoFornecedor(10L));
+        assertEquals(0, new BigDecimal("85").compareTo(livro.ofertaDoLance(1L).valor()));
+    }
+}
@@ -0,0 +1,135 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testes da árvore com estatística de ordem ({@link OrderStatisticTree}).
+ */
+class OrderStatisticTreeTest {
+    
+    private static OrderStatisticTree<Integer> arvore(Integer... valores) {
+        OrderStatisticTree<Integer> arvore = new OrderStatisticTree<>(Comparator.naturalOrder());
+        for (Integer valor : valores) {
+            arvore.add(valor);
+        }
+        return arvore;
+    }
+    
+    @Test
+    void arvoreVazia() {
+        OrderStatisticTree<Integer> arvore = arvore();
+        
+        assertTrue(arvore.isEmpty());
+        assertEquals(0, arvore.size());
+        assertNull(arvore.first());
+        assertTrue(arvore.first(3).isEmpty());
+        assertEquals(0, arvore.rank(10));
+        assertThrows(IndexOutOfBoundsException.class, () -> arvore.get(0));
+    }
+    
+    @Test
+    void rankContaOsElementosEstritamenteMenores() {
+        OrderStatisticTree<Integer> arvore = arvore(50, 10, 40, 20, 30);
+        
+        assertEquals(0, arvore.rank(10));
+        assertEquals(2, arvore.rank(30));
+        assertEquals(4, arvore.rank(50));
+        // Valores que não estão na árvore
+        assertEquals(0, arvore.rank(5));
+        assertEquals(3, arvore.rank(35));
+        assertEquals(5, arvore.rank(60));
+    }
+    
+    @Test
+    void getRetornaOElementoNaPosicao() {
+        OrderStatisticTree<Integer> arvore = arvore(50, 10, 40, 20, 30);
+        
+        for (int i = 0; i < 5; i++) {
+            assertEquals((i + 1) * 10, arvore.get(i));
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> arvore.get(5));
+        assertThrows(IndexOutOfBoundsException.class, () -> arvore.get(-1));
+    }
+    
+    @Test
+    void elementoEquivalenteNaoEInseridoDuasVezes() {
+        OrderStatisticTree<Integer> arvore = arvore(10, 20);
+        
+        assertFalse(arvore.add(10));
+        assertEquals(2, arvore.size());
+        assertEquals(1, arvore.rank(20));
+    }
+    
+    @Test
+    void remocaoAtualizaRankETamanho() {
+        OrderStatisticTree<Integer> arvore = arvore(10, 20, 30, 40, 50);
+        
+        assertTrue(arvore.remove(10));
+        assertFalse(arvore.remove(10));
+        assertFalse(arvore.remove(25));
+        
+        assertEquals(4, arvore.size());
+        assertFalse(arvore.contains(10));
+        assertEquals(20, arvore.first());
+        assertEquals(0, arvore.rank(20));
+        assertEquals(2, arvore.rank(40));
+        assertEquals(List.of(20, 30, 40), arvore.first(3));
+    }
+    
+    @Test
+    void elementosEmpatadosNoComparadorPrincipalSaoOrdenadosPeloDesempate() {
+        // Pares (valor, ordem de chegada), como as ofertas do livro
+        Comparator<int[]> ordem = Comparator.<int[]>comparingInt(p -> p[0]).thenComparingInt(p -> p[1]);
+        OrderStatisticTree<int[]> arvore = new OrderStatisticTree<>(ordem);
+        int[] primeiro = { 100, 1 };
+        int[] segundo = { 100, 2 };
+        int[] menor = { 90, 3 };
+        arvore.add(segundo);
+        arvore.add(menor);
+        arvore.add(primeiro);
+        
+        assertEquals(3, arvore.size());
+        assertEquals(1, arvore.rank(primeiro));
+        assertEquals(2, arvore.rank(segundo));
+        assertEquals(1, arvore.rank(new int[] { 100, Integer.MIN_VALUE }));
+        
+        arvore.remove(primeiro);
+        assertEquals(1, arvore.rank(segundo));
+    }
+    
+    @Test
+    void operacoesAleatoriasConferemComTreeSet() {
+        Random random = new Random(42);
+        OrderStatisticTree<Integer> arvore = arvore();
+        TreeSet<Integer> referencia = new TreeSet<>();
+        
+        for (int i = 0; i < 5000; i++) {
+            int valor = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                assertEquals(referencia.remove(valor), arvore.remove(valor));
+            } else {
+                assertEquals(referencia.add(valor), arvore.add(valor));
+            }
+            assertEquals(referencia.headSet(valor).size(), arvore.rank(valor));
+        }
+        
+        assertEquals(referencia.size(), arvore.size());
+        assertEquals(new ArrayList<>(referencia), arvore.first(referencia.size() + 10));
+        int indice = 0;
+        for (Integer valor : referencia) {
+            assertEquals(valor, arvore.get(indice++));
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testes da roda de temporização hierárquica ({@link RodaTemporizacao}).
+ * As rodas usam tick de 10 ms e 4 baldes: o primeiro nível cobre 40 ms, o segundo 160 ms
+ * e o terceiro 640 ms.
+ */
+class RodaTemporizacaoTest {
+    
+    private final RodaTemporizacao<String> roda = new RodaTemporizacao<>(10, 4, 0);
+    
+    private final List<String> disparados = new ArrayList<>();
+    
+    private void avancar(long agora) {
+        roda.avancar(agora, disparados::add);
+    }
+    
+    @Test
+    void parametrosInvalidos() {
+        assertThrows(IllegalArgumentException.class, () -> new RodaTemporizacao<String>(0, 4, 0));
+        assertThrows(IllegalArgumentException.class, () -> new RodaTemporizacao<String>(10, 1, 0));
+    }
+    
+    @Test
+    void rodaVazia() {
+        assertEquals(Long.MAX_VALUE, roda.proximoVencimento());
+        assertEquals(0, roda.tamanho());
+        
+        avancar(1000);
+        assertTrue(disparados.isEmpty());
+    }
+    
+    @Test
+    void prazoJaVencidoNaoEAgendado() {
+        assertFalse(roda.agendar(5, "a"));
+        assertEquals(0, roda.tamanho());
+        assertEquals(Long.MAX_VALUE, roda.proximoVencimento());
+    }
+    
+    @Test
+    void itemDoPrimeiroNivelDisparaNoVencimentoDoBalde() {
+        assertTrue(roda.agendar(25, "a"));
+        assertEquals(20, roda.proximoVencimento());
+        
+        avancar(19);
+        assertTrue(disparados.isEmpty());
+        
+        avancar(20);
+        assertEquals(List.of("a"), disparados);
+        assertEquals(0, roda.tamanho());
+        assertEquals(Long.MAX_VALUE, roda.proximoVencimento());
+    }
+    
+    @Test
+    void itensDoMesmoBaldeDisparamJuntos() {
+        roda.agendar(21, "a");
+        roda.agendar(29, "b");
+        roda.agendar(35, "c");
+        
+        avancar(20);
+        assertEquals(List.of("a", "b"), disparados);
+        assertEquals(30, roda.proximoVencimento());
+        assertEquals(1, roda.tamanho());
+    }
+    
+    @Test
+    void itemDoNivelSuperiorDesceAntesDeDisparar() {
+        assertTrue(roda.agendar(100, "a"));
+        // Segundo nível: balde de 80 a 120
+        assertEquals(80, roda.proximoVencimento());
+        
+        avancar(80);
+        assertTrue(disparados.isEmpty());
+        assertEquals(1, roda.tamanho());
+        assertEquals(100, roda.proximoVencimento());
+        
+        avancar(100);
+        assertEquals(List.of("a"), disparados);
+    }
+    
+    @Test
+    void itemDoTerceiroNivelDesceEmCascata() {
+        assertTrue(roda.agendar(500, "a"));
+        // Terceiro nível: balde de 480 a 640
+        assertEquals(480, roda.proximoVencimento());
+        
+        avancar(479);
+        assertTrue(disparados.isEmpty());
+        
+        // O item passa pelo segundo nível e chega ao primeiro no mesmo avanço
+        avancar(480);
+        assertEquals(500, roda.proximoVencimento());
+        assertTrue(disparados.isEmpty());
+        
+        avancar(500);
+        assertEquals(List.of("a"), disparados);
+    }
+    
+    @Test
+    void avancoLongoDisparaTudoEmOrdemDeBalde() {
+        roda.agendar(500, "c");
+        roda.agendar(15, "a");
+        roda.agendar(100, "b");
+        
+        avancar(10_000);
+        assertEquals(List.of("a", "b", "c"), disparados);
+        assertEquals(0, roda.tamanho());
+    }
+    
+    @Test
+    void cancelamentoRemoveOItem() {
+        roda.agendar(25, "a");
+        roda.agendar(27, "b");
+        
+        assertTrue(roda.cancelar(25, "a"));
+        assertFalse(roda.cancelar(25, "a"));
+        assertEquals(1, roda.tamanho());
+        
+        avancar(30);
+        assertEquals(List.of("b"), disparados);
+    }
+    
+    @Test
+    void cancelamentoExigeOPrazoDoAgendamento() {
+        roda.agendar(25, "a");
+        
+        assertFalse(roda.cancelar(26, "a"));
+        assertFalse(roda.cancelar(100, "a"));
+        assertEquals(1, roda.tamanho());
+    }
+    
+    @Test
+    void cancelamentoDoUnicoItemEsvaziaOBalde() {
+        roda.agendar(25, "a");
+        
+        assertTrue(roda.cancelar(25, "a"));
+        assertEquals(Long.MAX_VALUE, roda.proximoVencimento());
+        assertEquals(0, roda.tamanho());
+    }
+    
+    @Test
+    void cancelamentoEmNivelSuperiorAntesEDepoisDaCascata() {
+        roda.agendar(500, "a");
+        roda.agendar(500, "b");
+        
+        assertTrue(roda.cancelar(500, "a"));
+        
+        avancar(480);
+        assertTrue(roda.cancelar(500, "b"));
+        assertEquals(0, roda.tamanho());
+        
+        avancar(10_000);
+        assertTrue(disparados.isEmpty());
+    }
+    
+    @Test
+    void itemDisparadoNaoPodeSerCancelado() {
+        roda.agendar(25, "a");
+        avancar(30);
+        
+        assertFalse(roda.cancelar(25, "a"));
+        assertEquals(0, roda.tamanho());
+    }
+    
+    @Test
+    void itensDisparamNoVencimentoDoBalde() {
+        Random random = new Random(7);
+        List<Long> prazos = new ArrayList<>();
+        RodaTemporizacao<Long> aleatoria = new RodaTemporizacao<>(10, 4, 0);
+        for (int i = 0; i < 500; i++) {
+            long prazo = 10 + random.nextInt(5000);
+            prazos.add(prazo);
+            aleatoria.agendar(prazo, prazo);
+        }
+        
+        List<Long> disparadosAte = new ArrayList<>();
+        for (long agora = 0; agora <= 5100; agora += 7) {
+            long instante = agora;
+            aleatoria.avancar(instante, prazo -> {
+                // O item dispara no primeiro avanço que alcança o início do tick do seu prazo
+                long vencimento = prazo - (prazo % 10);
+                assertTrue(vencimento <= instante, "disparou antes do vencimento: " + prazo);
+                assertTrue(vencimento > instante - 7, "disparou atrasado: " + prazo);
+                disparadosAte.add(prazo);
+            });
+        }
+        
+        assertEquals(prazos.size(), disparadosAte.size());
+        assertEquals(0, aleatoria.tamanho());
+    }
+}